@@ -0,0 +1,157 @@
+/**
+ * <pre>
+ * Copyright (C), 2026, 杭州共道科技
+ * FileName: Annotation
+ * Author:   LiHaiQing
+ * Date:     2026/10/19 22:00
+ * Description: 文件某个版本每一行最后修改的版本
+ * History:
+ * <author>          <time>          <version>          <desc>
+ * 作者姓名           修改时间           版本号              描述
+ * </pre>
+ */
+package com.snoopy.subversion.blame;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
+import java.util.Map;
+
+/**
+ * <pre>
+ * BlameService.blame 的结果, 创建后不再修改, 可以在线程之间共享.
+ * 行按 LF, CRLF, CR 分隔, getLine 返回的内容不含行尾符.
+ *
+ *  Annotation annotation = blameService.blame(repository, "trunk/Foo.java", -1);
+ *  for (int i = 0; i < annotation.getLineCount(); i++) {
+ *      System.out.println(annotation.getLineRevision(i) + " " + annotation.getLineAuthor(i) + " " + annotation.getLine(i));
+ *  }
+ * </pre>
+ *
+ * @ClassName: Annotation.java
+ * @author: LiHaiQing
+ * @date: 2026/10/19 22:00
+ * @version V1.0.0
+ */
+public class Annotation {
+
+    private String            myPath;
+    private long              myRevision;
+    private byte[]            myContent;
+    /**
+     * 每行的起始位置, 最后多一个元素为内容长度
+     */
+    private int[]             myLineStarts;
+    private long[]            myLineRevisions;
+    private Map<Long, String> myAuthors;
+    private Map<Long, Date>   myDates;
+
+    Annotation(String path, long revision, byte[] content, int[] lineStarts, long[] lineRevisions,
+               Map<Long, String> authors, Map<Long, Date> dates){
+        myPath = path;
+        myRevision = revision;
+        myContent = content;
+        myLineStarts = lineStarts;
+        myLineRevisions = lineRevisions;
+        myAuthors = authors;
+        myDates = dates;
+    }
+
+    /**
+     * 相对于仓库根的路径, 以 '/' 开头
+     */
+    public String getPath() {
+        return myPath;
+    }
+
+    /**
+     * 文件内容最后修改的版本
+     */
+    public long getRevision() {
+        return myRevision;
+    }
+
+    public int getLineCount() {
+        return myLineRevisions.length;
+    }
+
+    /**
+     * 第 index 行的内容(UTF-8 解码, 不含行尾符)
+     */
+    public String getLine(int index) {
+        int start = myLineStarts[index];
+        int end = myLineStarts[index + 1];
+        if (end > start && myContent[end - 1] == '\n') {
+            end--;
+        }
+        if (end > start && myContent[end - 1] == '\r') {
+            end--;
+        }
+        return new String(myContent, start, end - start, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * 最后修改第 index 行的版本
+     */
+    public long getLineRevision(int index) {
+        return myLineRevisions[index];
+    }
+
+    public String getLineAuthor(int index) {
+        return myAuthors.get(myLineRevisions[index]);
+    }
+
+    public Date getLineDate(int index) {
+        return myDates.get(myLineRevisions[index]);
+    }
+
+    byte[] getContent() {
+        return myContent;
+    }
+
+    long[] getLineRevisions() {
+        return myLineRevisions;
+    }
+
+    Map<Long, String> getAuthors() {
+        return myAuthors;
+    }
+
+    Map<Long, Date> getDates() {
+        return myDates;
+    }
+
+    /**
+     * 按 LF, CRLF, CR 切分行, 返回每行起始位置, 最后多一个元素为 length
+     */
+    static int[] splitLines(byte[] content) {
+        int[] starts = new int[16];
+        int count = 0;
+        int from = 0;
+        for (int i = 0; i < content.length; i++) {
+            byte b = content[i];
+            if (b == '\n' || (b == '\r' && (i + 1 == content.length || content[i + 1] != '\n'))) {
+                if (count + 2 > starts.length) {
+                    starts = grow(starts);
+                }
+                starts[count++] = from;
+                from = i + 1;
+            }
+        }
+        if (count + 2 > starts.length) {
+            starts = grow(starts);
+        }
+        if (from < content.length) {
+            starts[count++] = from;
+        }
+        starts[count] = content.length;
+        int[] result = new int[count + 1];
+        System.arraycopy(starts, 0, result, 0, count + 1);
+        return result;
+    }
+
+    private static int[] grow(int[] array) {
+        int[] grown = new int[array.length * 2];
+        System.arraycopy(array, 0, grown, 0, array.length);
+        return grown;
+    }
+}
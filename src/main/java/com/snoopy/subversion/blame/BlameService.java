@@ -0,0 +1,356 @@
+/**
+ * <pre>
+ * Copyright (C), 2026, 杭州共道科技
+ * FileName: BlameService
+ * Author:   LiHaiQing
+ * Date:     2026/10/19 22:00
+ * Description: 带缓存的增量 blame
+ * History:
+ * <author>          <time>          <version>          <desc>
+ * 作者姓名           修改时间           版本号              描述
+ * </pre>
+ */
+package com.snoopy.subversion.blame;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.tmatesoft.svn.core.SVNDirEntry;
+import org.tmatesoft.svn.core.SVNErrorCode;
+import org.tmatesoft.svn.core.SVNErrorMessage;
+import org.tmatesoft.svn.core.SVNException;
+import org.tmatesoft.svn.core.SVNNodeKind;
+import org.tmatesoft.svn.core.SVNProperties;
+import org.tmatesoft.svn.core.SVNRevisionProperty;
+import org.tmatesoft.svn.core.internal.util.SVNDate;
+import org.tmatesoft.svn.core.internal.wc.SVNFileUtil;
+import org.tmatesoft.svn.core.io.ISVNFileRevisionHandler;
+import org.tmatesoft.svn.core.io.ISVNLocationEntryHandler;
+import org.tmatesoft.svn.core.io.SVNFileRevision;
+import org.tmatesoft.svn.core.io.SVNLocationEntry;
+import org.tmatesoft.svn.core.io.SVNRepository;
+import org.tmatesoft.svn.core.io.diff.SVNDeltaProcessor;
+import org.tmatesoft.svn.core.io.diff.SVNDiffWindow;
+
+import de.regnis.q.sequence.QSequenceDifferenceBlock;
+import de.regnis.q.sequence.core.QSequenceException;
+import de.regnis.q.sequence.line.QSequenceLineMedia;
+import de.regnis.q.sequence.line.QSequenceLineRAByteData;
+import de.regnis.q.sequence.line.QSequenceLineResult;
+
+/**
+ * <pre>
+ * 基于 SVNRepository.getFileRevisions 的 blame, 结果按 (仓库, 路径, 内容最后修改的版本) 缓存.
+ *
+ * blame 一个版本时:
+ *  1. 先用 info 找到文件内容最后修改的版本, 缓存里有就直接返回, 只有一次往返;
+ *  2. 否则找同一路径缓存中最新的更早版本, 用 getLocations 确认它在这个文件的历史上(中间没有被替换),
+ *     然后只从这个版本开始取 getFileRevisions, 在缓存的行归属上应用之后的 delta;
+ *  3. 都没有时从头走完整的历史.
+ * 第 2 步服务器仍然会把起始版本作为全文发送一次(getFileRevisions 的第一个 delta 总是相对空内容), 内容被丢弃.
+ *
+ * 行的对比使用 SVNKit 自带的 sequence 库(与 svn blame 相同), 一个文件同时只保存上一个版本的内容.
+ * 缓存按行数限制, 超过时淘汰最久没有用过的结果. 线程安全, 同一个 service 可以给多个 repository 共用.
+ *
+ *  BlameService blameService = new BlameService(1000000);
+ *  Annotation annotation = blameService.blame(repository, "trunk/Foo.java", -1);
+ * </pre>
+ *
+ * @ClassName: BlameService.java
+ * @author: LiHaiQing
+ * @date: 2026/10/19 22:00
+ * @version V1.0.0
+ */
+public class BlameService {
+
+    private static Logger logger = LoggerFactory.getLogger(BlameService.class);
+
+    private long myMaxLines;
+    private long myTotalLines;
+    /**
+     * uuid:路径@版本 -> 结果, 按访问顺序排列, 第一个是最久没有用过的
+     */
+    private LinkedHashMap<String, Annotation> myCache = new LinkedHashMap<String, Annotation>(16, 0.75f, true);
+    /**
+     * uuid:路径 -> 已缓存的版本, 用来找最新的更早版本
+     */
+    private Map<String, TreeMap<Long, Annotation>> myHistories = new HashMap<String, TreeMap<Long, Annotation>>();
+
+    private AtomicLong myHits = new AtomicLong();
+    private AtomicLong myIncrementals = new AtomicLong();
+    private AtomicLong myFullWalks = new AtomicLong();
+
+    /**
+     * @param maxLines 缓存的结果总行数上限
+     */
+    public BlameService(long maxLines){
+        myMaxLines = maxLines;
+    }
+
+    /**
+     * 直接从缓存返回的次数
+     */
+    public long getHitCount() {
+        return myHits.get();
+    }
+
+    /**
+     * 从缓存中更早的版本开始计算的次数
+     */
+    public long getIncrementalCount() {
+        return myIncrementals.get();
+    }
+
+    /**
+     * 走完整历史的次数
+     */
+    public long getFullWalkCount() {
+        return myFullWalks.get();
+    }
+
+    public synchronized long getTotalLines() {
+        return myTotalLines;
+    }
+
+    /**
+     * 计算 path(相对于 repository 的位置) 在 revision(负数为 HEAD) 每一行最后修改的版本. <br>
+     */
+    public Annotation blame(SVNRepository repository, String path, long revision) throws SVNException {
+        if (revision < 0) {
+            revision = repository.getLatestRevision();
+        }
+        SVNDirEntry entry = repository.info(path, revision);
+        if (entry == null || entry.getKind() != SVNNodeKind.FILE) {
+            SVNErrorMessage err = SVNErrorMessage.create(SVNErrorCode.FS_NOT_FILE,
+                                                         "error: ''{0}'' is not a file in revision {1}", path,
+                                                         String.valueOf(revision));
+            throw new SVNException(err);
+        }
+        long changedRevision = entry.getRevision();
+        String repositoryPath = repository.getRepositoryPath(path);
+        String historyKey = repository.getRepositoryUUID(true) + ":" + repositoryPath;
+
+        Annotation base;
+        synchronized (this) {
+            Annotation cached = myCache.get(historyKey + "@" + changedRevision);
+            if (cached != null) {
+                myHits.incrementAndGet();
+                return cached;
+            }
+            TreeMap<Long, Annotation> history = myHistories.get(historyKey);
+            Map.Entry<Long, Annotation> floor = history == null ? null : history.lowerEntry(changedRevision);
+            base = floor == null ? null : myCache.get(historyKey + "@" + floor.getKey());
+        }
+        if (base != null && !isAncestor(repository, path, changedRevision, base)) {
+            base = null;
+        }
+        AnnotationBuilder builder = new AnnotationBuilder(repositoryPath, base);
+        if (base != null) {
+            logger.debug("blame {}@{} from cached revision {}", repositoryPath, changedRevision, base.getRevision());
+            myIncrementals.incrementAndGet();
+            repository.getFileRevisions(path, base.getRevision(), changedRevision, builder);
+        } else {
+            myFullWalks.incrementAndGet();
+            repository.getFileRevisions(path, 0, changedRevision, builder);
+        }
+        Annotation annotation = builder.build(changedRevision);
+        put(historyKey, annotation);
+        return annotation;
+    }
+
+    /**
+     * path@revision 的历史在 base 的版本上是否就是 base 的路径
+     */
+    private static boolean isAncestor(SVNRepository repository, String path, long revision, Annotation base)
+                                                                                                            throws SVNException {
+        final String[] location = new String[1];
+        repository.getLocations(path, revision, new long[] { base.getRevision() }, new ISVNLocationEntryHandler() {
+
+            @Override
+            public void handleLocationEntry(SVNLocationEntry locationEntry) throws SVNException {
+                location[0] = locationEntry.getPath();
+            }
+        });
+        return base.getPath().equals(location[0]);
+    }
+
+    private synchronized void put(String historyKey, Annotation annotation) {
+        String key = historyKey + "@" + annotation.getRevision();
+        if (myCache.put(key, annotation) != null) {
+            return;
+        }
+        TreeMap<Long, Annotation> history = myHistories.get(historyKey);
+        if (history == null) {
+            history = new TreeMap<Long, Annotation>();
+            myHistories.put(historyKey, history);
+        }
+        history.put(annotation.getRevision(), annotation);
+        myTotalLines += weight(annotation);
+
+        Iterator<Map.Entry<String, Annotation>> entries = myCache.entrySet().iterator();
+        while (myTotalLines > myMaxLines && myCache.size() > 1 && entries.hasNext()) {
+            Map.Entry<String, Annotation> eldest = entries.next();
+            entries.remove();
+            myTotalLines -= weight(eldest.getValue());
+            String eldestKey = eldest.getKey();
+            String eldestHistoryKey = eldestKey.substring(0, eldestKey.lastIndexOf('@'));
+            TreeMap<Long, Annotation> eldestHistory = myHistories.get(eldestHistoryKey);
+            eldestHistory.remove(eldest.getValue().getRevision());
+            if (eldestHistory.isEmpty()) {
+                myHistories.remove(eldestHistoryKey);
+            }
+        }
+    }
+
+    private static long weight(Annotation annotation) {
+        return Math.max(1, annotation.getLineCount());
+    }
+
+    /**
+     * 依次应用每个版本的 delta, 只保留上一个版本的内容和行归属
+     */
+    private static class AnnotationBuilder implements ISVNFileRevisionHandler {
+
+        private String              myPath;
+        private Annotation          myBase;
+        private byte[]              myContent;
+        private long[]              myLineRevisions;
+        private Map<Long, String>   myAuthors;
+        private Map<Long, Date>     myDates;
+
+        private long                myRevision;
+        private boolean             mySkip;
+        private ByteArrayOutputStream myTarget;
+        private SVNDeltaProcessor   myDeltaProcessor = new SVNDeltaProcessor();
+
+        AnnotationBuilder(String path, Annotation base){
+            myPath = path;
+            myBase = base;
+            if (base != null) {
+                myContent = base.getContent();
+                myLineRevisions = base.getLineRevisions();
+                myAuthors = new HashMap<Long, String>(base.getAuthors());
+                myDates = new HashMap<Long, Date>(base.getDates());
+            } else {
+                myContent = new byte[0];
+                myLineRevisions = new long[0];
+                myAuthors = new HashMap<Long, String>();
+                myDates = new HashMap<Long, Date>();
+            }
+        }
+
+        @Override
+        public void openRevision(SVNFileRevision fileRevision) throws SVNException {
+            myRevision = fileRevision.getRevision();
+            /**
+             * 起始版本就是缓存的版本, 全文已经有了
+             */
+            mySkip = myBase != null && myRevision == myBase.getRevision();
+            SVNProperties revisionProperties = fileRevision.getRevisionProperties();
+            if (revisionProperties != null) {
+                myAuthors.put(myRevision, revisionProperties.getStringValue(SVNRevisionProperty.AUTHOR));
+                String date = revisionProperties.getStringValue(SVNRevisionProperty.DATE);
+                if (date != null) {
+                    myDates.put(myRevision, SVNDate.parseDate(date));
+                }
+            }
+        }
+
+        @Override
+        public void applyTextDelta(String path, String baseChecksum) throws SVNException {
+            if (mySkip) {
+                myDeltaProcessor.applyTextDelta(SVNFileUtil.DUMMY_IN, SVNFileUtil.DUMMY_OUT, false);
+                return;
+            }
+            myTarget = new ByteArrayOutputStream(Math.max(32, myContent.length));
+            myDeltaProcessor.applyTextDelta(new ByteArrayInputStream(myContent), myTarget, false);
+        }
+
+        @Override
+        public OutputStream textDeltaChunk(String path, SVNDiffWindow diffWindow) throws SVNException {
+            return myDeltaProcessor.textDeltaChunk(diffWindow);
+        }
+
+        @Override
+        public void textDeltaEnd(String path) throws SVNException {
+            myDeltaProcessor.textDeltaEnd();
+            if (mySkip) {
+                return;
+            }
+            byte[] content = myTarget.toByteArray();
+            myTarget = null;
+            myLineRevisions = annotate(myContent, myLineRevisions, content, myRevision);
+            myContent = content;
+        }
+
+        @Override
+        public void closeRevision(String token) throws SVNException {
+        }
+
+        Annotation build(long revision) {
+            return new Annotation(myPath, revision, myContent, Annotation.splitLines(myContent), myLineRevisions,
+                                  myAuthors, myDates);
+        }
+    }
+
+    /**
+     * 新内容中没有变化的行沿用旧的归属, 其余行归属 revision
+     */
+    private static long[] annotate(byte[] oldContent, long[] oldRevisions, byte[] newContent, long revision)
+                                                                                                            throws SVNException {
+        long[] revisions = new long[Annotation.splitLines(newContent).length - 1];
+        if (oldRevisions.length == 0) {
+            Arrays.fill(revisions, revision);
+            return revisions;
+        }
+        QSequenceLineResult result = null;
+        try {
+            result = QSequenceLineMedia.createBlocks(new QSequenceLineRAByteData(oldContent),
+                                                     new QSequenceLineRAByteData(newContent));
+            int left = 0;
+            int right = 0;
+            for (Object object : result.getBlocks()) {
+                QSequenceDifferenceBlock block = (QSequenceDifferenceBlock) object;
+                while (right < block.getRightFrom()) {
+                    revisions[right++] = oldRevisions[left++];
+                }
+                left = block.getLeftFrom() + block.getLeftSize();
+                while (right < block.getRightFrom() + block.getRightSize()) {
+                    revisions[right++] = revision;
+                }
+            }
+            while (right < revisions.length) {
+                revisions[right++] = oldRevisions[left++];
+            }
+            return revisions;
+        } catch (IOException e) {
+            SVNErrorMessage err = SVNErrorMessage.create(SVNErrorCode.IO_ERROR, "error: diff failed in revision {0}",
+                                                         String.valueOf(revision));
+            throw new SVNException(err, e);
+        } catch (QSequenceException e) {
+            SVNErrorMessage err = SVNErrorMessage.create(SVNErrorCode.IO_ERROR, "error: diff failed in revision {0}",
+                                                         String.valueOf(revision));
+            throw new SVNException(err, e);
+        } finally {
+            if (result != null) {
+                try {
+                    result.close();
+                } catch (IOException e) {
+                    logger.warn("failed to close diff result", e);
+                }
+            }
+        }
+    }
+}
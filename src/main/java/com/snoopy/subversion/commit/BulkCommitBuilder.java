@@ -0,0 +1,621 @@
+/**
+ * <pre>
+ * Copyright (C), 2026, 杭州共道科技
+ * FileName: BulkCommitBuilder
+ * Author:   LiHaiQing
+ * Date:     2026/10/20 01:40
+ * Description: 在一个提交事务中流式提交大量文件
+ * History:
+ * <author>          <time>          <version>          <desc>
+ * 作者姓名           修改时间           版本号              描述
+ * </pre>
+ */
+package com.snoopy.subversion.commit;
+
+import java.io.File;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.io.input.CountingInputStream;
+import org.apache.commons.io.input.TeeInputStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.tmatesoft.svn.core.SVNCommitInfo;
+import org.tmatesoft.svn.core.SVNDirEntry;
+import org.tmatesoft.svn.core.SVNErrorCode;
+import org.tmatesoft.svn.core.SVNErrorMessage;
+import org.tmatesoft.svn.core.SVNException;
+import org.tmatesoft.svn.core.SVNNodeKind;
+import org.tmatesoft.svn.core.SVNProperties;
+import org.tmatesoft.svn.core.SVNProperty;
+import org.tmatesoft.svn.core.internal.util.SVNDate;
+import org.tmatesoft.svn.core.internal.wc.SVNFileUtil;
+import org.tmatesoft.svn.core.io.ISVNDeltaConsumer;
+import org.tmatesoft.svn.core.io.ISVNEditor;
+import org.tmatesoft.svn.core.io.SVNRepository;
+import org.tmatesoft.svn.core.io.SVNRepositoryFactory;
+import org.tmatesoft.svn.core.io.diff.SVNDeltaGenerator;
+import org.tmatesoft.svn.core.io.diff.SVNDiffWindow;
+
+import com.snoopy.subversion.file.FileContentCache;
+
+/**
+ * <pre>
+ * Commit 示例中每次提交只有一个文件, 内容放在 byte[] 中. 这里把成千上万个文件放进同一个 ISVNEditor 事务:
+ * 条目必须按路径顺序(逐段比较)加入, 每个目录只 open/add 一次并在离开时 close 一次,
+ * 文件内容由 SVNDeltaGenerator 按窗口从流中读出发送, 内存占用与文件大小无关, 最后只有一次 closeEdit.
+ *
+ * 仓库中已有的路径用另一个会话在提交开始时的版本上逐个目录 getDir 查出(提交编辑器打开时原会话不能再用),
+ * 已有的目录 openDir, 已有的文件以全文替换; 新增目录下的条目不需要查询. 类型不同的已有条目先删除再添加.
+ * 没有加入的已有条目保持不变.
+ *
+ * 设置了 base 缓存(FileContentCache)时, 已有文件以缓存中它最后修改版本的内容为 base 发送真正的二进制 delta,
+ * 大文件改一行只上传几个字节; 本地文件内容与 base 相同时整个跳过. 提交的内容同时写进缓存,
+ * 提交成功后按 (路径, 新版本, 校验和) 放入, 下一次提交不用再下载 base. 缓存中没有的 base 先下载一次.
+ *
+ *  BulkCommitBuilder builder = new BulkCommitBuilder(repository, "generated sources");
+ *  builder.setBaseCache(FileContentCache.open(BulkCommitBuilder.getDefaultBaseCacheDirectory(), 1L &lt;&lt; 30));
+ *  builder.addTree("generated", new File("target/generated"));
+ *  builder.addFile("generated/VERSION", new ByteArrayInputStream(version));
+ *  SVNCommitInfo info = builder.commit();
+ * </pre>
+ *
+ * @ClassName: BulkCommitBuilder.java
+ * @author: LiHaiQing
+ * @date: 2026/10/20 01:40
+ * @version V1.0.0
+ */
+public class BulkCommitBuilder {
+
+    private static Logger logger = LoggerFactory.getLogger(BulkCommitBuilder.class);
+
+    private SVNRepository           myRepository;
+    private String                  myMessage;
+    private SVNRepository           myLookupRepository;
+    private boolean                 myOwnsLookupRepository;
+    private long                    myBaseRevision = -1;
+    private ISVNEditor              myEditor;
+    private SVNDeltaGenerator       myDeltaGenerator = new SVNDeltaGenerator();
+    private DeltaCounter            myDeltaCounter   = new DeltaCounter();
+    private LinkedList<OpenDir>     myOpenDirs       = new LinkedList<OpenDir>();
+    private String                  myLastPath;
+    private boolean                 myFinished;
+    private FileContentCache        myBaseCache;
+    /**
+     * 提交成功后要放入 base 缓存的内容
+     */
+    private List<CommittedContent>  myCommittedContents = new ArrayList<CommittedContent>();
+
+    private AtomicLong myAddedDirs    = new AtomicLong();
+    private AtomicLong myAddedFiles   = new AtomicLong();
+    private AtomicLong myChangedFiles = new AtomicLong();
+    private AtomicLong myUnchangedFiles = new AtomicLong();
+    private AtomicLong myDeletedEntries = new AtomicLong();
+    private AtomicLong mySentBytes    = new AtomicLong();
+    private AtomicLong myDeltaBytes   = new AtomicLong();
+
+    /**
+     * @param repository 提交的根目录, 条目路径相对它的位置; 提交结束前不能用它做其他操作
+     * @param message    提交日志
+     */
+    public BulkCommitBuilder(SVNRepository repository, String message){
+        this(repository, null, message);
+    }
+
+    /**
+     * @param lookupRepository 查询已有条目的会话, 位置与 repository 相同, 由调用方关闭;
+     *                         为 null 时每次提交创建一个. 连续提交很多次时复用可以省掉建立连接
+     */
+    public BulkCommitBuilder(SVNRepository repository, SVNRepository lookupRepository, String message){
+        myRepository = repository;
+        myLookupRepository = lookupRepository;
+        myMessage = message;
+    }
+
+    /**
+     * <pre>
+     * 默认的 base 缓存目录: ${user.home}/.svnkit/commit-base-cache.
+     * 不和读取用的 FileContentCache.getDefaultDirectory() 共用: 打开缓存时按各自的 maxBytes 删除内容,
+     * 小容量的读取缓存会把提交需要的 base 删掉.
+     * </pre>
+     */
+    public static File getDefaultBaseCacheDirectory() {
+        return new File(System.getProperty("user.home"), ".svnkit" + File.separator + "commit-base-cache");
+    }
+
+    /**
+     * 已有文件以缓存中的内容为 base 发送 delta, 提交的内容也放进这个缓存; 要在加入条目之前设置 <br>
+     */
+    public void setBaseCache(FileContentCache cache) {
+        myBaseCache = cache;
+    }
+
+    /**
+     * 加入目录, 目录已存在时只是打开它. 缺少的上级目录自动加入. <br>
+     */
+    public BulkCommitBuilder addDirectory(String path) throws SVNException {
+        path = normalize(path);
+        try {
+            begin(path);
+            if (path.length() > 0) {
+                openParents(path);
+                enterDirectory(path);
+            }
+        } catch (SVNException e) {
+            abort();
+            throw e;
+        }
+        return this;
+    }
+
+    /**
+     * 加入文件, 已存在时替换它的内容. contents 读完后关闭. <br>
+     */
+    public BulkCommitBuilder addFile(String path, InputStream contents) throws SVNException {
+        return addFile(path, contents, null);
+    }
+
+    /**
+     * 加入本地文件; 有 base 缓存时内容与 base 相同的文件被跳过 <br>
+     */
+    public BulkCommitBuilder addFile(String path, File file) throws SVNException {
+        return addFile(path, SVNFileUtil.openFileForReading(file), file);
+    }
+
+    private BulkCommitBuilder addFile(String path, InputStream contents, File file) throws SVNException {
+        path = normalize(path);
+        try {
+            begin(path);
+            if (path.length() == 0) {
+                SVNErrorMessage err = SVNErrorMessage.create(SVNErrorCode.ILLEGAL_TARGET, "error: a file cannot be committed as the root directory");
+                throw new SVNException(err);
+            }
+            openParents(path);
+            sendFile(path, contents, file);
+        } catch (SVNException e) {
+            abort();
+            throw e;
+        } finally {
+            SVNFileUtil.closeFile(contents);
+        }
+        return this;
+    }
+
+    /**
+     * 删除已有的文件或目录, 不存在时什么也不做 <br>
+     */
+    public BulkCommitBuilder deleteEntry(String path) throws SVNException {
+        path = normalize(path);
+        try {
+            begin(path);
+            if (path.length() == 0) {
+                SVNErrorMessage err = SVNErrorMessage.create(SVNErrorCode.ILLEGAL_TARGET, "error: the root directory cannot be deleted");
+                throw new SVNException(err);
+            }
+            /**
+             * 先确认存在, 以免为了删除一个不存在的路径而添加它的上级目录
+             */
+            if (myLookupRepository.checkPath(path, myBaseRevision) != SVNNodeKind.NONE) {
+                openParents(path);
+                myEditor.deleteEntry(path, -1);
+                myDeletedEntries.incrementAndGet();
+            }
+        } catch (SVNException e) {
+            abort();
+            throw e;
+        }
+        return this;
+    }
+
+    /**
+     * 按名称排序深度优先遍历本地目录, 把其中的目录和文件加入到 path 下 <br>
+     */
+    public BulkCommitBuilder addTree(String path, File directory) throws SVNException {
+        path = normalize(path);
+        addDirectory(path);
+        File[] children = directory.listFiles();
+        if (children == null) {
+            abort();
+            SVNErrorMessage err = SVNErrorMessage.create(SVNErrorCode.IO_ERROR, "error: cannot list directory ''{0}''", directory);
+            throw new SVNException(err);
+        }
+        Arrays.sort(children, new Comparator<File>() {
+
+            @Override
+            public int compare(File file1, File file2) {
+                return file1.getName().compareTo(file2.getName());
+            }
+        });
+        for (File child : children) {
+            String childPath = path.length() == 0 ? child.getName() : path + "/" + child.getName();
+            if (child.isDirectory()) {
+                addTree(childPath, child);
+            } else if (child.isFile()) {
+                addFile(childPath, child);
+            }
+        }
+        return this;
+    }
+
+    /**
+     * 关闭所有目录并 closeEdit, 一个条目都没有加入时也会产生一个空提交 <br>
+     */
+    public SVNCommitInfo commit() throws SVNException {
+        begin(null);
+        try {
+            while (!myOpenDirs.isEmpty()) {
+                myEditor.closeDir();
+                myOpenDirs.removeLast();
+            }
+            SVNCommitInfo info = myEditor.closeEdit();
+            myFinished = true;
+            logger.info("committed r{}: {} directories and {} files added, {} files changed, {} unchanged, {} bytes read, {} bytes sent",
+                        info.getNewRevision(), myAddedDirs.get(), myAddedFiles.get(), myChangedFiles.get(),
+                        myUnchangedFiles.get(), mySentBytes.get(), myDeltaBytes.get());
+            cacheCommittedContents(info);
+            return info;
+        } catch (SVNException e) {
+            abort();
+            throw e;
+        } finally {
+            closeLookupRepository();
+        }
+    }
+
+    /**
+     * 放弃提交, 已经结束时什么也不做 <br>
+     */
+    public void abort() {
+        if (myFinished) {
+            return;
+        }
+        myFinished = true;
+        if (myEditor != null) {
+            try {
+                myEditor.abortEdit();
+            } catch (SVNException e) {
+                logger.warn("abort commit failed", e);
+            }
+        }
+        for (CommittedContent content : myCommittedContents) {
+            content.myFile.delete();
+        }
+        myCommittedContents.clear();
+        closeLookupRepository();
+    }
+
+    public long getAddedDirectories() {
+        return myAddedDirs.get();
+    }
+
+    public long getAddedFiles() {
+        return myAddedFiles.get();
+    }
+
+    public long getChangedFiles() {
+        return myChangedFiles.get();
+    }
+
+    public long getDeletedEntries() {
+        return myDeletedEntries.get();
+    }
+
+    /**
+     * 内容与 base 相同而跳过的文件数 <br>
+     */
+    public long getUnchangedFiles() {
+        return myUnchangedFiles.get();
+    }
+
+    /**
+     * 送进 SVNDeltaGenerator 的新内容字节数; 有 base 时实际上传的只是 delta <br>
+     */
+    public long getSentBytes() {
+        return mySentBytes.get();
+    }
+
+    /**
+     * 交给提交编辑器的 delta 窗口(指令和新数据)字节数, 即实际上传的内容大小 <br>
+     */
+    public long getDeltaBytes() {
+        return myDeltaBytes.get();
+    }
+
+    /**
+     * 第一次调用时打开提交编辑器; path 不为 null 时检查它排在上一个条目之后
+     */
+    private void begin(String path) throws SVNException {
+        if (myFinished) {
+            SVNErrorMessage err = SVNErrorMessage.create(SVNErrorCode.ILLEGAL_TARGET, "error: the commit is already finished");
+            throw new SVNException(err);
+        }
+        if (path != null) {
+            if (myLastPath != null && comparePaths(myLastPath, path) >= 0) {
+                SVNErrorMessage err = SVNErrorMessage.create(SVNErrorCode.ILLEGAL_TARGET, "error: ''{0}'' is added after ''{1}'', entries must be added in path order",
+                                                             path, myLastPath);
+                throw new SVNException(err);
+            }
+            myLastPath = path;
+        }
+        if (myEditor != null) {
+            return;
+        }
+        myBaseRevision = myRepository.getLatestRevision();
+        if (myLookupRepository == null) {
+            myLookupRepository = SVNRepositoryFactory.create(myRepository.getLocation());
+            myLookupRepository.setAuthenticationManager(myRepository.getAuthenticationManager());
+            myOwnsLookupRepository = true;
+        }
+        myEditor = myRepository.getCommitEditor(myMessage, null);
+        myEditor.openRoot(-1);
+        myOpenDirs.addLast(new OpenDir("", false));
+    }
+
+    /**
+     * 关闭不包含 path 的目录, 再逐级进入 path 的上级目录
+     */
+    private void openParents(String path) throws SVNException {
+        while (!isAncestor(myOpenDirs.getLast().myPath, path)) {
+            myEditor.closeDir();
+            myOpenDirs.removeLast();
+        }
+        String parent = getParent(path);
+        while (!myOpenDirs.getLast().myPath.equals(parent)) {
+            String current = myOpenDirs.getLast().myPath;
+            int start = current.length() == 0 ? 0 : current.length() + 1;
+            int slash = parent.indexOf('/', start);
+            enterDirectory(slash < 0 ? parent : parent.substring(0, slash));
+        }
+    }
+
+    private void enterDirectory(String path) throws SVNException {
+        SVNNodeKind kind = getKind(myOpenDirs.getLast().getEntry(getName(path)));
+        if (kind == SVNNodeKind.DIR) {
+            myEditor.openDir(path, -1);
+            myOpenDirs.addLast(new OpenDir(path, false));
+            return;
+        }
+        if (kind == SVNNodeKind.FILE) {
+            myEditor.deleteEntry(path, -1);
+        }
+        myEditor.addDir(path, null, -1);
+        myAddedDirs.incrementAndGet();
+        myOpenDirs.addLast(new OpenDir(path, true));
+    }
+
+    private void sendFile(String path, InputStream contents, File file) throws SVNException {
+        SVNDirEntry existing = myOpenDirs.getLast().getEntry(getName(path));
+        SVNNodeKind kind = getKind(existing);
+        InputStream base = null;
+        SVNProperties baseProperties = null;
+        File committed = null;
+        try {
+            String baseChecksum = null;
+            if (kind == SVNNodeKind.FILE && myBaseCache != null) {
+                /**
+                 * 文件的内容在它最后修改的版本之后没有变过, 按那个版本在缓存中找 base. 缓存没有时从提交开始时的版本下载:
+                 * 所在目录在最后修改之后被复制过(比如 svn copy 出来的分支)时, path 在最后修改的版本还不存在
+                 */
+                baseProperties = new SVNProperties();
+                base = myBaseCache.open(myLookupRepository, path, existing.getRevision(), myBaseRevision,
+                                        baseProperties);
+                baseChecksum = baseProperties.getStringValue(SVNProperty.CHECKSUM);
+                if (file != null && baseChecksum != null && baseChecksum.equals(SVNFileUtil.computeChecksum(file))) {
+                    myUnchangedFiles.incrementAndGet();
+                    return;
+                }
+            }
+            if (kind == SVNNodeKind.FILE) {
+                myEditor.openFile(path, existing.getRevision());
+                myChangedFiles.incrementAndGet();
+            } else {
+                if (kind == SVNNodeKind.DIR) {
+                    myEditor.deleteEntry(path, -1);
+                }
+                myEditor.addFile(path, null, -1);
+                myAddedFiles.incrementAndGet();
+            }
+            myEditor.applyTextDelta(path, baseChecksum);
+            CountingInputStream counting = new CountingInputStream(contents);
+            InputStream target = counting;
+            if (myBaseCache != null) {
+                /**
+                 * 新内容读出发送的同时写进缓存目录, 提交成功后成为下一次的 base
+                 */
+                committed = myBaseCache.createTempFile();
+                target = new TeeInputStream(counting, SVNFileUtil.openFileForWriting(committed), true);
+            }
+            /**
+             * 没有 base 时以全文发送; 有 base 时 SVNDeltaGenerator 逐个窗口对比 base 与新内容,
+             * 只发送不同的部分. 每次只读一个窗口.
+             */
+            String checksum;
+            try {
+                checksum = base == null ? myDeltaGenerator.sendDelta(path, target, myDeltaCounter, true)
+                        : myDeltaGenerator.sendDelta(path, base, 0, target, myDeltaCounter, true);
+            } finally {
+                SVNFileUtil.closeFile(target);
+            }
+            mySentBytes.addAndGet(counting.getByteCount());
+            myEditor.closeFile(path, checksum);
+            if (committed != null) {
+                myCommittedContents.add(new CommittedContent(path, committed, checksum, baseProperties));
+                committed = null;
+            }
+        } finally {
+            SVNFileUtil.closeFile(base);
+            if (committed != null) {
+                committed.delete();
+            }
+        }
+    }
+
+    /**
+     * 把提交的内容以新版本放入 base 缓存. 文件属性取自 base(没有变), svn:entry 属性换成新版本的
+     */
+    private void cacheCommittedContents(SVNCommitInfo info) {
+        try {
+            String uuid = myLookupRepository.getRepositoryUUID(true);
+            String revision = String.valueOf(info.getNewRevision());
+            for (CommittedContent content : myCommittedContents) {
+                SVNProperties properties = new SVNProperties();
+                if (content.myBaseProperties != null) {
+                    properties.putAll(content.myBaseProperties);
+                }
+                properties.put(SVNProperty.REVISION, revision);
+                properties.put(SVNProperty.COMMITTED_REVISION, revision);
+                properties.put(SVNProperty.CHECKSUM, content.myChecksum);
+                properties.put(SVNProperty.UUID, uuid);
+                if (info.getDate() != null) {
+                    properties.put(SVNProperty.COMMITTED_DATE, SVNDate.formatDate(info.getDate()));
+                }
+                properties.put(SVNProperty.LAST_AUTHOR, info.getAuthor());
+                myBaseCache.add(myLookupRepository, content.myPath, info.getNewRevision(), content.myFile, properties);
+            }
+        } catch (SVNException e) {
+            /**
+             * 提交已经成功, 缓存失败只影响下一次提交
+             */
+            logger.warn("failed to cache the committed contents", e);
+            for (CommittedContent content : myCommittedContents) {
+                content.myFile.delete();
+            }
+        }
+        myCommittedContents.clear();
+    }
+
+    private void closeLookupRepository() {
+        if (myOwnsLookupRepository) {
+            myLookupRepository.closeSession();
+            myOwnsLookupRepository = false;
+        }
+    }
+
+    /**
+     * 逐段比较, 同一目录下的条目连续排列, 上级目录排在下级之前
+     */
+    static int comparePaths(String path1, String path2) {
+        int length = Math.min(path1.length(), path2.length());
+        for (int i = 0; i < length; i++) {
+            char c1 = path1.charAt(i);
+            char c2 = path2.charAt(i);
+            if (c1 != c2) {
+                if (c1 == '/') {
+                    return -1;
+                } else if (c2 == '/') {
+                    return 1;
+                }
+                return c1 - c2;
+            }
+        }
+        return path1.length() - path2.length();
+    }
+
+    private static boolean isAncestor(String directory, String path) {
+        return directory.length() == 0 || (path.startsWith(directory) && path.length() > directory.length()
+                                           && path.charAt(directory.length()) == '/');
+    }
+
+    private static String normalize(String path) {
+        String normalized = path.replace('\\', '/');
+        while (normalized.startsWith("/")) {
+            normalized = normalized.substring(1);
+        }
+        while (normalized.endsWith("/")) {
+            normalized = normalized.substring(0, normalized.length() - 1);
+        }
+        return normalized;
+    }
+
+    private static String getParent(String path) {
+        int slash = path.lastIndexOf('/');
+        return slash < 0 ? "" : path.substring(0, slash);
+    }
+
+    private static SVNNodeKind getKind(SVNDirEntry entry) {
+        return entry == null ? SVNNodeKind.NONE : entry.getKind();
+    }
+
+    private static String getName(String path) {
+        return path.substring(path.lastIndexOf('/') + 1);
+    }
+
+    /**
+     * 一个打开的目录. 新增的目录下没有已有条目; 已有目录的子条目在第一次用到时 getDir 取得
+     */
+    private class OpenDir {
+
+        private String                   myPath;
+        private boolean                  myAdded;
+        private Map<String, SVNDirEntry> myChildren;
+
+        OpenDir(String path, boolean added){
+            myPath = path;
+            myAdded = added;
+        }
+
+        /**
+         * 仓库中已有的子条目, 没有时返回 null
+         */
+        SVNDirEntry getEntry(String name) throws SVNException {
+            if (myAdded) {
+                return null;
+            }
+            if (myChildren == null) {
+                myChildren = new HashMap<String, SVNDirEntry>();
+                Collection<?> entries = myLookupRepository.getDir(myPath, myBaseRevision, null, (Collection<?>) null);
+                for (Object entry : entries) {
+                    SVNDirEntry dirEntry = (SVNDirEntry) entry;
+                    myChildren.put(dirEntry.getName(), dirEntry);
+                }
+            }
+            return myChildren.get(name);
+        }
+    }
+
+    /**
+     * 统计 delta 窗口的大小后交给提交编辑器
+     */
+    private class DeltaCounter implements ISVNDeltaConsumer {
+
+        @Override
+        public void applyTextDelta(String path, String baseChecksum) throws SVNException {
+            myEditor.applyTextDelta(path, baseChecksum);
+        }
+
+        @Override
+        public OutputStream textDeltaChunk(String path, SVNDiffWindow diffWindow) throws SVNException {
+            myDeltaBytes.addAndGet(diffWindow.getInstructionsLength() + diffWindow.getNewDataLength());
+            return myEditor.textDeltaChunk(path, diffWindow);
+        }
+
+        @Override
+        public void textDeltaEnd(String path) throws SVNException {
+            myEditor.textDeltaEnd(path);
+        }
+    }
+
+    private static class CommittedContent {
+
+        private String        myPath;
+        private File          myFile;
+        private String        myChecksum;
+        private SVNProperties myBaseProperties;
+
+        CommittedContent(String path, File file, String checksum, SVNProperties baseProperties){
+            myPath = path;
+            myFile = file;
+            myChecksum = checksum;
+            myBaseProperties = baseProperties;
+        }
+    }
+}
@@ -0,0 +1,445 @@
+/**
+ * <pre>
+ * Copyright (C), 2026, 杭州共道科技
+ * FileName: GroupCommitter
+ * Author:   LiHaiQing
+ * Date:     2026/10/20 02:30
+ * Description: 把短时间内的多个小提交合并成一个提交事务
+ * History:
+ * <author>          <time>          <version>          <desc>
+ * 作者姓名           修改时间           版本号              描述
+ * </pre>
+ */
+package com.snoopy.subversion.commit;
+
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.tmatesoft.svn.core.SVNCancelException;
+import org.tmatesoft.svn.core.SVNCommitInfo;
+import org.tmatesoft.svn.core.SVNErrorCode;
+import org.tmatesoft.svn.core.SVNErrorMessage;
+import org.tmatesoft.svn.core.SVNException;
+import org.tmatesoft.svn.core.io.SVNRepository;
+import org.tmatesoft.svn.core.io.SVNRepositoryFactory;
+
+/**
+ * <pre>
+ * 每秒提交好几次的小改动各自 getCommitEditor/closeEdit, 每次都是一个往返, 还在仓库的写锁上互相等待.
+ * GroupCommitter 由一个后台线程提交: 最早的请求到达后等待 windowMillis, 或者等到排队的路径数达到 maxChanges,
+ * 把这期间互不冲突的请求合并成一个提交(BulkCommitBuilder), 每个调用方都得到这个提交的版本号.
+ *
+ * 两个请求改到同一个路径(或者一个是另一个的上级目录)时冲突, 后到的请求留到以后的提交中,
+ * 与之冲突的更晚的请求也一起推迟, 所以同一路径上的改动总是按到达顺序分别提交.
+ * 合并的提交失败时退回逐个请求单独提交, 一个请求出错不影响其他请求.
+ *
+ * repository 交给 GroupCommitter 之后只能由它的线程使用. 改动在提交时覆盖仓库中的当前内容, 不检查过期.
+ *
+ *  GroupCommitter committer = new GroupCommitter(repository, 50, 500);
+ *  Map&lt;String, byte[]&gt; changes = new HashMap&lt;String, byte[]&gt;();
+ *  changes.put("config/service-a.properties", contents);
+ *  changes.put("config/obsolete.properties", null);
+ *  SVNCommitInfo info = committer.commit("update service-a", changes);
+ *  ...
+ *  committer.close();
+ * </pre>
+ *
+ * @ClassName: GroupCommitter.java
+ * @author: LiHaiQing
+ * @date: 2026/10/20 02:30
+ * @version V1.0.0
+ */
+public class GroupCommitter implements Closeable {
+
+    private static Logger logger = LoggerFactory.getLogger(GroupCommitter.class);
+
+    private SVNRepository          myRepository;
+    private SVNRepository          myLookupRepository;
+    private long                   myWindowMillis;
+    private int                    myMaxChanges;
+    private Thread                 myThread;
+    /**
+     * 按到达顺序排队的请求, 由 this 同步
+     */
+    private LinkedList<Request>    myQueue = new LinkedList<Request>();
+    private int                    myQueuedChanges;
+    private boolean                myClosed;
+    /**
+     * 后台线程异常结束的原因, 之后不再接受请求
+     */
+    private Throwable              myFailure;
+
+    private AtomicLong myRequests        = new AtomicLong();
+    private AtomicLong myCommits         = new AtomicLong();
+    private AtomicLong myFallbackCommits = new AtomicLong();
+
+    /**
+     * @param repository   提交的根目录, 路径相对它的位置
+     * @param windowMillis 最早的请求到达后最多等待的毫秒数
+     * @param maxChanges   一个提交最多包含的路径数, 排队的路径数达到它时立即提交
+     */
+    public GroupCommitter(SVNRepository repository, long windowMillis, int maxChanges){
+        myRepository = repository;
+        myWindowMillis = windowMillis;
+        myMaxChanges = Math.max(1, maxChanges);
+        myThread = new Thread(new Runnable() {
+
+            @Override
+            public void run() {
+                process();
+            }
+        }, "group-commit");
+        myThread.setDaemon(true);
+        myThread.start();
+    }
+
+    /**
+     * 排队一个请求: changes 为路径 -> 文件的新内容, 内容为 null 表示删除该路径.
+     * 同一个请求不能同时改一个路径和它下面的路径. 返回的 Future 在请求所在的提交完成后给出提交信息. <br>
+     */
+    public Future<SVNCommitInfo> submit(String message, Map<String, byte[]> changes) throws SVNException {
+        Request request = new Request(message, changes);
+        checkPaths(request);
+        synchronized (this) {
+            if (myFailure != null) {
+                SVNErrorMessage err = SVNErrorMessage.create(SVNErrorCode.ILLEGAL_TARGET,
+                                                             "error: the group commit thread has stopped");
+                throw new SVNException(err, myFailure);
+            }
+            if (myClosed) {
+                SVNErrorMessage err = SVNErrorMessage.create(SVNErrorCode.ILLEGAL_TARGET, "error: the group committer is closed");
+                throw new SVNException(err);
+            }
+            myQueue.addLast(request);
+            myQueuedChanges += request.myChanges.size();
+            notifyAll();
+        }
+        myRequests.incrementAndGet();
+        return request.myResult;
+    }
+
+    /**
+     * 同 submit, 等待提交完成 <br>
+     */
+    public SVNCommitInfo commit(String message, Map<String, byte[]> changes) throws SVNException {
+        Future<SVNCommitInfo> result = submit(message, changes);
+        try {
+            return result.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SVNCancelException();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof SVNException) {
+                throw (SVNException) e.getCause();
+            }
+            SVNErrorMessage err = SVNErrorMessage.create(SVNErrorCode.UNKNOWN, "error while committing ''{0}''",
+                                                         message);
+            throw new SVNException(err, e.getCause());
+        }
+    }
+
+    /**
+     * 提交所有已排队的请求后结束后台线程, 不再接受新的请求 <br>
+     */
+    @Override
+    public void close() {
+        synchronized (this) {
+            myClosed = true;
+            notifyAll();
+        }
+        try {
+            myThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * 提交的请求数 <br>
+     */
+    public long getRequestCount() {
+        return myRequests.get();
+    }
+
+    /**
+     * 完成的提交事务数, 包括退回单独提交的 <br>
+     */
+    public long getCommitCount() {
+        return myCommits.get();
+    }
+
+    /**
+     * 合并的提交失败后单独提交的请求数 <br>
+     */
+    public long getFallbackCommitCount() {
+        return myFallbackCommits.get();
+    }
+
+    private void process() {
+        List<Request> group = null;
+        Throwable failure = null;
+        try {
+            while (true) {
+                group = nextGroup();
+                if (group == null) {
+                    break;
+                }
+                commitGroup(group);
+                group = null;
+            }
+        } catch (RuntimeException e) {
+            failure = e;
+            throw e;
+        } catch (Error e) {
+            failure = e;
+            throw e;
+        } finally {
+            if (failure != null) {
+                terminate(group, failure);
+            }
+            if (myLookupRepository != null) {
+                myLookupRepository.closeSession();
+            }
+        }
+    }
+
+    /**
+     * 后台线程异常结束: 正在提交的和排队的请求都以失败结束, 否则调用方会一直等下去
+     */
+    private void terminate(List<Request> group, Throwable failure) {
+        List<Request> pending = new ArrayList<Request>();
+        if (group != null) {
+            pending.addAll(group);
+        }
+        synchronized (this) {
+            myFailure = failure;
+            myClosed = true;
+            pending.addAll(myQueue);
+            myQueue.clear();
+            myQueuedChanges = 0;
+        }
+        logger.error("group commit thread stopped, failing {} requests", pending.size(), failure);
+        SVNErrorMessage err = SVNErrorMessage.create(SVNErrorCode.UNKNOWN, "error: the group commit thread has stopped");
+        SVNException exception = new SVNException(err, failure);
+        for (Request request : pending) {
+            request.myResult.completeExceptionally(exception);
+        }
+    }
+
+    /**
+     * 等到窗口结束或路径数达到上限, 取出一组互不冲突的请求; 关闭后队列为空时返回 null
+     */
+    private synchronized List<Request> nextGroup() {
+        while (myQueue.isEmpty()) {
+            if (myClosed) {
+                return null;
+            }
+            waitQuietly(0);
+        }
+        long deadline = myQueue.getFirst().myArrival + myWindowMillis;
+        long now;
+        while (!myClosed && myQueuedChanges < myMaxChanges && (now = System.currentTimeMillis()) < deadline) {
+            waitQuietly(deadline - now);
+        }
+        List<Request> group = new ArrayList<Request>();
+        Set<String> paths = new HashSet<String>();
+        Set<String> ancestors = new HashSet<String>();
+        Set<String> deferredPaths = new HashSet<String>();
+        Set<String> deferredAncestors = new HashSet<String>();
+        int changes = 0;
+        for (Iterator<Request> iterator = myQueue.iterator(); iterator.hasNext();) {
+            Request request = iterator.next();
+            boolean fits = group.isEmpty() || changes + request.myChanges.size() <= myMaxChanges;
+            if (fits && !conflicts(request, paths, ancestors) && !conflicts(request, deferredPaths, deferredAncestors)) {
+                group.add(request);
+                changes += request.myChanges.size();
+                addPaths(request, paths, ancestors);
+                iterator.remove();
+                myQueuedChanges -= request.myChanges.size();
+            } else {
+                /**
+                 * 更晚的请求不能越过它改同一个路径
+                 */
+                addPaths(request, deferredPaths, deferredAncestors);
+            }
+        }
+        return group;
+    }
+
+    private void waitQuietly(long millis) {
+        try {
+            wait(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            myClosed = true;
+        }
+    }
+
+    /**
+     * 同一路径, 或者一方是另一方的上级目录
+     */
+    private static boolean conflicts(Request request, Set<String> paths, Set<String> ancestors) {
+        for (String path : request.myChanges.keySet()) {
+            if (paths.contains(path) || ancestors.contains(path)) {
+                return true;
+            }
+            for (String ancestor = getParent(path); ancestor.length() > 0; ancestor = getParent(ancestor)) {
+                if (paths.contains(ancestor)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 一个请求里同时有某个路径和它下面的路径时, 提交中先删除/替换它再打开它下面的路径, 总是失败
+     */
+    private static void checkPaths(Request request) throws SVNException {
+        for (String path : request.myChanges.keySet()) {
+            for (String ancestor = getParent(path); ancestor.length() > 0; ancestor = getParent(ancestor)) {
+                if (request.myChanges.containsKey(ancestor)) {
+                    SVNErrorMessage err = SVNErrorMessage.create(SVNErrorCode.ILLEGAL_TARGET,
+                                                                 "error: ''{0}'' and ''{1}'' under it cannot be changed in the same request",
+                                                                 ancestor, path);
+                    throw new SVNException(err);
+                }
+            }
+        }
+    }
+
+    private static void addPaths(Request request, Set<String> paths, Set<String> ancestors) {
+        for (String path : request.myChanges.keySet()) {
+            paths.add(path);
+            for (String ancestor = getParent(path); ancestor.length() > 0; ancestor = getParent(ancestor)) {
+                ancestors.add(ancestor);
+            }
+        }
+    }
+
+    /**
+     * 一组请求合并成一个提交; 失败且不止一个请求时逐个单独提交
+     */
+    private void commitGroup(List<Request> group) {
+        try {
+            SVNCommitInfo info = commitRequests(group);
+            for (Request request : group) {
+                request.myResult.complete(info);
+            }
+            return;
+        } catch (SVNException e) {
+            if (group.size() == 1) {
+                group.get(0).myResult.completeExceptionally(e);
+                return;
+            }
+            logger.warn("group commit of {} requests failed, committing them one by one", group.size(), e);
+        } catch (RuntimeException e) {
+            for (Request request : group) {
+                request.myResult.completeExceptionally(e);
+            }
+            return;
+        }
+        for (Request request : group) {
+            myFallbackCommits.incrementAndGet();
+            try {
+                request.myResult.complete(commitRequests(Collections.singletonList(request)));
+            } catch (SVNException e) {
+                request.myResult.completeExceptionally(e);
+            } catch (RuntimeException e) {
+                request.myResult.completeExceptionally(e);
+            }
+        }
+    }
+
+    private SVNCommitInfo commitRequests(List<Request> requests) throws SVNException {
+        if (myLookupRepository == null) {
+            myLookupRepository = SVNRepositoryFactory.create(myRepository.getLocation());
+            myLookupRepository.setAuthenticationManager(myRepository.getAuthenticationManager());
+        }
+        TreeMap<String, byte[]> changes = new TreeMap<String, byte[]>(new Comparator<String>() {
+
+            @Override
+            public int compare(String path1, String path2) {
+                return BulkCommitBuilder.comparePaths(path1, path2);
+            }
+        });
+        Set<String> messages = new LinkedHashSet<String>();
+        for (Request request : requests) {
+            changes.putAll(request.myChanges);
+            messages.add(request.myMessage);
+        }
+        StringBuilder message = new StringBuilder();
+        for (String line : messages) {
+            if (message.length() > 0) {
+                message.append('\n');
+            }
+            message.append(line);
+        }
+        BulkCommitBuilder builder = new BulkCommitBuilder(myRepository, myLookupRepository, message.toString());
+        SVNCommitInfo info;
+        try {
+            for (Map.Entry<String, byte[]> change : changes.entrySet()) {
+                if (change.getValue() == null) {
+                    builder.deleteEntry(change.getKey());
+                } else {
+                    builder.addFile(change.getKey(), new ByteArrayInputStream(change.getValue()));
+                }
+            }
+            info = builder.commit();
+        } finally {
+            /**
+             * 不只是 SVNException: 任何异常都不能让提交编辑器留在 myRepository 上, 否则以后的提交全部失败.
+             * 提交成功后 abort 什么也不做
+             */
+            builder.abort();
+        }
+        myCommits.incrementAndGet();
+        logger.debug("committed r{} for {} requests", info.getNewRevision(), requests.size());
+        return info;
+    }
+
+    private static String getParent(String path) {
+        int slash = path.lastIndexOf('/');
+        return slash < 0 ? "" : path.substring(0, slash);
+    }
+
+    private static class Request {
+
+        private String                            myMessage;
+        private Map<String, byte[]>               myChanges = new LinkedHashMap<String, byte[]>();
+        private long                              myArrival = System.currentTimeMillis();
+        private CompletableFuture<SVNCommitInfo>  myResult  = new CompletableFuture<SVNCommitInfo>();
+
+        Request(String message, Map<String, byte[]> changes){
+            myMessage = message;
+            for (Map.Entry<String, byte[]> change : changes.entrySet()) {
+                String path = change.getKey().replace('\\', '/');
+                while (path.startsWith("/")) {
+                    path = path.substring(1);
+                }
+                while (path.endsWith("/")) {
+                    path = path.substring(0, path.length() - 1);
+                }
+                myChanges.put(path, change.getValue());
+            }
+        }
+    }
+}
@@ -0,0 +1,52 @@
+/**
+ * <pre>
+ * Copyright (C), 2026, 杭州共道科技
+ * FileName: ArchiveSink
+ * Author:   LiHaiQing
+ * Date:     2026/10/19 23:30
+ * Description: 导出直接写成归档文件
+ * History:
+ * <author>          <time>          <version>          <desc>
+ * 作者姓名           修改时间           版本号              描述
+ * </pre>
+ */
+package com.snoopy.subversion.export;
+
+import java.io.OutputStream;
+
+import org.tmatesoft.svn.core.SVNException;
+
+/**
+ * <pre>
+ * 导出的目标归档, 条目按调用顺序写到输出流, 不经过本地文件系统.
+ * 同一时刻只能有一个 openFile 返回的流没有关闭. 路径用 '/' 分隔, 不以 '/' 开头.
+ *
+ *  ArchiveSink archive = ArchiveSinks.create("tar.gz", out, null);
+ *  archive.addDirectory("trunk", time);
+ *  OutputStream entry = archive.openFile("trunk/a.txt", time, false);
+ *  ... entry.write(..); entry.close();
+ *  archive.close();
+ * </pre>
+ *
+ * @ClassName: ArchiveSink.java
+ * @author: LiHaiQing
+ * @date: 2026/10/19 23:30
+ * @version V1.0.0
+ */
+public interface ArchiveSink {
+
+    /**
+     * 添加目录条目, lastModified 为毫秒
+     */
+    void addDirectory(String path, long lastModified) throws SVNException;
+
+    /**
+     * 添加文件条目, 返回接收内容的流, 关闭后条目结束
+     */
+    OutputStream openFile(String path, long lastModified, boolean executable) throws SVNException;
+
+    /**
+     * 写完归档的结尾并关闭输出流
+     */
+    void close() throws SVNException;
+}
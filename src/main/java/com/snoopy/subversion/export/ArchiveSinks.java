@@ -0,0 +1,76 @@
+/**
+ * <pre>
+ * Copyright (C), 2026, 杭州共道科技
+ * FileName: ArchiveSinks
+ * Author:   LiHaiQing
+ * Date:     2026/10/19 23:30
+ * Description: 按格式名创建 ArchiveSink
+ * History:
+ * <author>          <time>          <version>          <desc>
+ * 作者姓名           修改时间           版本号              描述
+ * </pre>
+ */
+package com.snoopy.subversion.export;
+
+import java.io.OutputStream;
+
+import org.tmatesoft.svn.core.SVNErrorCode;
+import org.tmatesoft.svn.core.SVNErrorMessage;
+import org.tmatesoft.svn.core.SVNException;
+
+import com.snoopy.subversion.output.OutputSinks;
+
+/**
+ * <pre>
+ * 格式名: "zip", "tar", "tar.gz"(或 "tgz"), 其它格式名抛出 SVNException.
+ * out 为 System.out 时直接写标准输出的文件描述符, 关闭归档时不会关闭标准输出.
+ *
+ *  ArchiveSink archive = ArchiveSinks.create(ArchiveSinks.getFormat("export.tar.gz"), out, sizeResolver);
+ * </pre>
+ *
+ * @ClassName: ArchiveSinks.java
+ * @author: LiHaiQing
+ * @date: 2026/10/19 23:30
+ * @version V1.0.0
+ */
+public class ArchiveSinks {
+
+    private ArchiveSinks(){
+    }
+
+    /**
+     * @param sizeResolver 只有 tar 使用, 可以为 null
+     */
+    public static ArchiveSink create(String format, OutputStream out, ArchiveSizeResolver sizeResolver)
+                                                                                                     throws SVNException {
+        boolean zip = "zip".equalsIgnoreCase(format);
+        boolean gzip = "tar.gz".equalsIgnoreCase(format) || "tgz".equalsIgnoreCase(format);
+        if (!zip && !gzip && !"tar".equalsIgnoreCase(format)) {
+            SVNErrorMessage err = SVNErrorMessage.create(SVNErrorCode.UNSUPPORTED_FEATURE,
+                                                         "error: unknown archive format ''{0}''", format);
+            throw new SVNException(err);
+        }
+        if (out == System.out) {
+            out = OutputSinks.openStandardOutput();
+        }
+        if (zip) {
+            return new ZipArchiveSink(out);
+        }
+        return new TarArchiveSink(out, gzip, sizeResolver);
+    }
+
+    /**
+     * 按文件扩展名取得格式名, 不认识时返回 null
+     */
+    public static String getFormat(String fileName) {
+        String name = fileName.toLowerCase();
+        if (name.endsWith(".zip")) {
+            return "zip";
+        } else if (name.endsWith(".tar")) {
+            return "tar";
+        } else if (name.endsWith(".tar.gz") || name.endsWith(".tgz")) {
+            return "tar.gz";
+        }
+        return null;
+    }
+}
@@ -0,0 +1,35 @@
+/**
+ * <pre>
+ * Copyright (C), 2026, 杭州共道科技
+ * FileName: ArchiveSizeResolver
+ * Author:   LiHaiQing
+ * Date:     2026/10/19 23:30
+ * Description: tar 条目在内容传完之前取得文件大小
+ * History:
+ * <author>          <time>          <version>          <desc>
+ * 作者姓名           修改时间           版本号              描述
+ * </pre>
+ */
+package com.snoopy.subversion.export;
+
+import org.tmatesoft.svn.core.SVNException;
+
+/**
+ * <pre>
+ * tar 的头部在内容之前, 必须先写出文件大小, 而 update 的 editor 不会告诉大小.
+ * 小文件在内存中缓冲到结束; 超过缓冲区的文件通过 resolver 取得大小(一般是另一个会话上的 info),
+ * 写出头部后内容直接流式写出.
+ * </pre>
+ *
+ * @ClassName: ArchiveSizeResolver.java
+ * @author: LiHaiQing
+ * @date: 2026/10/19 23:30
+ * @version V1.0.0
+ */
+public interface ArchiveSizeResolver {
+
+    /**
+     * @return path(ArchiveSink.openFile 的路径) 的文件大小
+     */
+    long getSize(String path) throws SVNException;
+}
@@ -0,0 +1,82 @@
+/**
+ * <pre>
+ * Copyright (C), 2026, 杭州共道科技
+ * FileName: ChecksumOutputStream
+ * Author:   LiHaiQing
+ * Date:     2026/10/19 23:55
+ * Description: 写出内容的同时计算 MD5
+ * History:
+ * <author>          <time>          <version>          <desc>
+ * 作者姓名           修改时间           版本号              描述
+ * </pre>
+ */
+package com.snoopy.subversion.export;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+import org.tmatesoft.svn.core.internal.wc.SVNFileUtil;
+
+/**
+ * <pre>
+ * 包装目标流, 每次写出时更新 MD5, 写完后不需要再读一遍文件就能和服务端的 textChecksum 比较.
+ * 计算摘要花费的时间单独累计, 便于统计校验的开销.
+ *
+ *  ChecksumOutputStream out = new ChecksumOutputStream(target);
+ *  ... out.write(..); out.close();
+ *  boolean ok = out.getChecksum().equals(textChecksum);
+ * </pre>
+ *
+ * @ClassName: ChecksumOutputStream.java
+ * @author: LiHaiQing
+ * @date: 2026/10/19 23:55
+ * @version V1.0.0
+ */
+public class ChecksumOutputStream extends FilterOutputStream {
+
+    private MessageDigest myDigest;
+    private String        myChecksum;
+    private long          myDigestNanos;
+
+    public ChecksumOutputStream(OutputStream out){
+        super(out);
+        try {
+            myDigest = MessageDigest.getInstance("MD5");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        write(new byte[] { (byte) b }, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        long start = System.nanoTime();
+        myDigest.update(b, off, len);
+        myDigestNanos += System.nanoTime() - start;
+        out.write(b, off, len);
+    }
+
+    /**
+     * 已写出内容的 MD5(十六进制), 第一次调用后不再更新 <br>
+     */
+    public String getChecksum() {
+        if (myChecksum == null) {
+            myChecksum = SVNFileUtil.toHexDigest(myDigest);
+        }
+        return myChecksum;
+    }
+
+    /**
+     * 计算摘要累计花费的纳秒数 <br>
+     */
+    public long getDigestNanos() {
+        return myDigestNanos;
+    }
+}
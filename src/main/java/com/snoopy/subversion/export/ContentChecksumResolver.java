@@ -0,0 +1,35 @@
+/**
+ * <pre>
+ * Copyright (C), 2026, 杭州共道科技
+ * FileName: ContentChecksumResolver
+ * Author:   LiHaiQing
+ * Date:     2026/10/20 00:50
+ * Description: 文件内容传完之前取得它的 MD5
+ * History:
+ * <author>          <time>          <version>          <desc>
+ * 作者姓名           修改时间           版本号              描述
+ * </pre>
+ */
+package com.snoopy.subversion.export;
+
+import org.tmatesoft.svn.core.SVNException;
+
+/**
+ * <pre>
+ * update 的 editor 在 closeFile 时才给出 textChecksum. ContentStore 对超过内存缓冲区的文件
+ * 通过 resolver 提前取得 MD5(一般是另一个会话上 getFile 返回的 svn:entry:checksum),
+ * 内容已经在内容库中时后面的数据不再写盘.
+ * </pre>
+ *
+ * @ClassName: ContentChecksumResolver.java
+ * @author: LiHaiQing
+ * @date: 2026/10/20 00:50
+ * @version V1.0.0
+ */
+public interface ContentChecksumResolver {
+
+    /**
+     * @return path(ContentStore.openFile 的路径) 的内容的 MD5(十六进制), 不知道时返回 null
+     */
+    String getChecksum(String path) throws SVNException;
+}
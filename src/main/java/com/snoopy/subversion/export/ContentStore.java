@@ -0,0 +1,547 @@
+/**
+ * <pre>
+ * Copyright (C), 2026, 杭州共道科技
+ * FileName: ContentStore
+ * Author:   LiHaiQing
+ * Date:     2026/10/20 00:50
+ * Description: 多个导出目录共享的按校验和存放的文件内容, 导出的文件是它的硬链接
+ * History:
+ * <author>          <time>          <version>          <desc>
+ * 作者姓名           修改时间           版本号              描述
+ * </pre>
+ */
+package com.snoopy.subversion.export;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileLock;
+import java.nio.file.AccessDeniedException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.FileStore;
+import java.nio.file.FileSystemException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.tmatesoft.svn.core.SVNCancelException;
+import org.tmatesoft.svn.core.SVNErrorCode;
+import org.tmatesoft.svn.core.SVNErrorMessage;
+import org.tmatesoft.svn.core.SVNException;
+import org.tmatesoft.svn.core.internal.wc.SVNFileUtil;
+
+/**
+ * <pre>
+ * 同一台机器上并排导出很多个差不多的版本时, 每份内容只写一次: 内容按 MD5 存成 directory/xx/校验和,
+ * 导出目录中的文件是它的硬链接. N 个相似导出的磁盘占用和写盘量接近一个导出.
+ *
+ * 校验和要到内容传完才知道. 不超过 1M 的文件先在内存中缓冲, 结束时内容库里已有就只建链接;
+ * 更大的文件向 checksumResolver 要校验和, 内容库里已有时后面的数据只参与校验, 不写盘,
+ * 否则写到内容库目录中的临时文件, 结束时改名为正式的内容文件. 没有 resolver 时大文件总是先写临时文件.
+ *
+ * 内容文件是只读的, 硬链接共享同一个 inode, 改动一个导出中的文件会改动所有导出, 所以导出的文件也是只读的;
+ * 增量导出生成新文件再改名替换, 不受影响. 导出目录和内容库不在同一个文件系统(FileStore)上时不能建硬链接
+ * (Java 也不支持 reflink), 这时复制.
+ *
+ * 多个进程可以同时使用同一个内容库目录. 只剩一个链接的内容不再被任何导出使用, 由 prune 删除.
+ * 打开的 ContentStore 持有内容库的共享锁直到 close, prune 在排它锁下执行, 会等正在进行的导出结束,
+ * 所以不会删掉导出刚确认存在、还没来得及链接的内容.
+ *
+ *  ContentStore store = ContentStore.open(new File("/data/export-store"), checksumResolver);
+ *  try {
+ *      OutputStream out = store.openFile("trunk/a.txt", new File(exportDir, "trunk/a.txt"));
+ *      ... out.write(..); out.close();
+ *  } finally {
+ *      store.close();
+ *  }
+ *  System.out.println(store.getStoredBytes() + " written, " + store.getDeduplicatedBytes() + " saved");
+ * </pre>
+ *
+ * @ClassName: ContentStore.java
+ * @author: LiHaiQing
+ * @date: 2026/10/20 00:50
+ * @version V1.0.0
+ */
+public class ContentStore implements Closeable {
+
+    private static Logger logger = LoggerFactory.getLogger(ContentStore.class);
+
+    private static final int MEMORY_THRESHOLD = 1 << 20;
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final String LOCK_FILE_NAME = "store.lock";
+
+    /**
+     * 内容库目录的绝对路径 -> 进程内的锁
+     */
+    private static final Map<String, StoreLock> STORE_LOCKS = new HashMap<String, StoreLock>();
+
+    private File myDirectory;
+    private ContentChecksumResolver myChecksumResolver;
+    private StoreLock myLock;
+    private boolean myClosed;
+    private FileStore myFileStore;
+    /**
+     * 导出目录 -> 是否和内容库在同一个文件系统上
+     */
+    private Map<File, Boolean> myLinkableDirectories = new ConcurrentHashMap<File, Boolean>();
+
+    private AtomicLong myStoredFiles = new AtomicLong();
+    private AtomicLong myStoredBytes = new AtomicLong();
+    private AtomicLong myLinkedFiles = new AtomicLong();
+    private AtomicLong myDeduplicatedBytes = new AtomicLong();
+
+    private ContentStore(File directory, ContentChecksumResolver checksumResolver, StoreLock lock, FileStore fileStore){
+        myDirectory = directory;
+        myChecksumResolver = checksumResolver;
+        myLock = lock;
+        myFileStore = fileStore;
+    }
+
+    /**
+     * 打开(不存在则创建)内容库目录并取得共享锁, 用完必须 close. 正在 prune 时等它结束.
+     *
+     * @param checksumResolver 大文件提前取得校验和, 可以为 null <br>
+     */
+    public static ContentStore open(File directory, ContentChecksumResolver checksumResolver) throws SVNException {
+        createDirectory(directory);
+        FileStore fileStore;
+        try {
+            fileStore = Files.getFileStore(directory.toPath());
+        } catch (IOException e) {
+            throw ioError(directory.getPath(), e);
+        }
+        StoreLock lock = getStoreLock(directory);
+        lock.lockShared();
+        return new ContentStore(directory, checksumResolver, lock, fileStore);
+    }
+
+    /**
+     * <pre>
+     * 删除 directory 中只剩一个链接、不再被任何导出使用的内容, 返回删除的文件数. 只支持 unix 文件系统.
+     * 等所有打开的 ContentStore(包括其他进程的) close 后在排它锁下执行.
+     * </pre>
+     */
+    public static int prune(File directory) throws SVNException {
+        createDirectory(directory);
+        StoreLock lock = getStoreLock(directory);
+        lock.lockExclusive();
+        try {
+            return deleteUnlinked(directory);
+        } finally {
+            lock.unlockExclusive();
+        }
+    }
+
+    /**
+     * 释放共享锁, 之后不能再放入内容 <br>
+     */
+    @Override
+    public void close() {
+        synchronized (this) {
+            if (myClosed) {
+                return;
+            }
+            myClosed = true;
+        }
+        myLock.unlockShared();
+    }
+
+    /**
+     * 接收 path 的内容, 关闭时 target 成为内容文件的链接(已存在的 target 被替换) <br>
+     */
+    public OutputStream openFile(String path, File target) {
+        return new EntryStream(path, target);
+    }
+
+    /**
+     * 把已经写好的 file 放进内容库(内容库已有相同内容时删除它), 再把 target 链接到内容文件. file 和 target 可以相同. <br>
+     */
+    public void addFile(File file, String checksum, File target) throws SVNException {
+        File content = getContentFile(checksum);
+        try {
+            long length = file.length();
+            if (content.isFile()) {
+                myDeduplicatedBytes.addAndGet(length);
+                if (!file.equals(target)) {
+                    SVNFileUtil.deleteFile(file);
+                }
+            } else {
+                moveToStore(file, content);
+                myStoredFiles.incrementAndGet();
+                myStoredBytes.addAndGet(length);
+            }
+            link(content, target);
+        } catch (IOException e) {
+            throw ioError(target.getPath(), e);
+        }
+    }
+
+    /**
+     * 写进内容库的内容文件数 <br>
+     */
+    public long getStoredFiles() {
+        return myStoredFiles.get();
+    }
+
+    /**
+     * 写进内容库的字节数 <br>
+     */
+    public long getStoredBytes() {
+        return myStoredBytes.get();
+    }
+
+    /**
+     * 链接到导出目录的文件数 <br>
+     */
+    public long getLinkedFiles() {
+        return myLinkedFiles.get();
+    }
+
+    /**
+     * 内容库里已有相同内容、不需要再写的字节数 <br>
+     */
+    public long getDeduplicatedBytes() {
+        return myDeduplicatedBytes.get();
+    }
+
+    private static void createDirectory(File directory) throws SVNException {
+        if (!directory.isDirectory() && !directory.mkdirs() && !directory.isDirectory()) {
+            SVNErrorMessage err = SVNErrorMessage.create(SVNErrorCode.IO_ERROR,
+                                                         "error: failed to create the content store directory ''{0}''.",
+                                                         directory);
+            throw new SVNException(err);
+        }
+    }
+
+    private static StoreLock getStoreLock(File directory) {
+        String path = directory.getAbsolutePath();
+        synchronized (STORE_LOCKS) {
+            StoreLock lock = STORE_LOCKS.get(path);
+            if (lock == null) {
+                lock = new StoreLock(new File(directory, LOCK_FILE_NAME));
+                STORE_LOCKS.put(path, lock);
+            }
+            return lock;
+        }
+    }
+
+    private static int deleteUnlinked(File directory) throws SVNException {
+        int deleted = 0;
+        File[] parents = directory.listFiles();
+        if (parents == null) {
+            return 0;
+        }
+        try {
+            for (File parent : parents) {
+                File[] children = parent.isDirectory() ? parent.listFiles() : null;
+                if (children == null) {
+                    continue;
+                }
+                for (File child : children) {
+                    if (child.getName().endsWith(".tmp")) {
+                        continue;
+                    }
+                    Integer links = (Integer) Files.getAttribute(child.toPath(), "unix:nlink");
+                    if (links.intValue() == 1 && child.delete()) {
+                        deleted++;
+                    }
+                }
+            }
+        } catch (IOException e) {
+            throw ioError(directory.getPath(), e);
+        } catch (UnsupportedOperationException e) {
+            SVNErrorMessage err = SVNErrorMessage.create(SVNErrorCode.UNSUPPORTED_FEATURE,
+                                                         "error: link counts are not available for ''{0}''",
+                                                         directory);
+            throw new SVNException(err, e);
+        }
+        return deleted;
+    }
+
+    private File getContentFile(String checksum) {
+        return new File(new File(myDirectory, checksum.substring(0, 2)), checksum);
+    }
+
+    /**
+     * 改名为内容文件并设为只读. 其他进程同时放入了相同内容时覆盖它, 内容是一样的.
+     */
+    private void moveToStore(File file, File content) throws IOException {
+        File parent = content.getParentFile();
+        if (!parent.isDirectory() && !parent.mkdirs() && !parent.isDirectory()) {
+            throw new IOException("failed to create " + parent);
+        }
+        Files.move(file.toPath(), content.toPath(), StandardCopyOption.ATOMIC_MOVE);
+        if (!content.setReadOnly()) {
+            logger.warn("failed to make {} read only", content);
+        }
+    }
+
+    /**
+     * 先在 target 旁边建链接再改名, target 已存在时也是原子替换
+     */
+    private void link(File content, File target) throws IOException {
+        File temp = new File(target.getParentFile(), target.getName() + ".svn-link");
+        Files.deleteIfExists(temp.toPath());
+        boolean linked = false;
+        if (isLinkable(target.getParentFile())) {
+            try {
+                Files.createLink(temp.toPath(), content.toPath());
+                linked = true;
+            } catch (FileSystemException e) {
+                if (e instanceof AccessDeniedException || e instanceof NoSuchFileException
+                    || e instanceof FileAlreadyExistsException) {
+                    throw e;
+                }
+                /**
+                 * 同一个文件系统上只剩链接数达到上限(EMLINK)这种情况, 这一个文件改为复制
+                 */
+                logger.warn("cannot link {} to {}, copying contents instead: {}", target, content, e.getMessage());
+            }
+        }
+        if (!linked) {
+            Files.copy(content.toPath(), temp.toPath());
+        }
+        Files.move(temp.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        myLinkedFiles.incrementAndGet();
+    }
+
+    private boolean isLinkable(File directory) throws IOException {
+        Boolean linkable = myLinkableDirectories.get(directory);
+        if (linkable == null) {
+            linkable = Boolean.valueOf(myFileStore.equals(Files.getFileStore(directory.toPath())));
+            myLinkableDirectories.put(directory, linkable);
+        }
+        return linkable.booleanValue();
+    }
+
+    private static SVNException ioError(String path, IOException e) {
+        SVNErrorMessage err = SVNErrorMessage.create(SVNErrorCode.IO_ERROR,
+                                                     "error: cannot store ''{0}'' in the content store", path);
+        return new SVNException(err, e);
+    }
+
+    /**
+     * 一个文件的内容: 先在内存中缓冲, 超过缓冲区后丢弃(内容库已有)或写临时文件
+     */
+    private class EntryStream extends OutputStream {
+
+        private String        myPath;
+        private File          myTarget;
+        private MessageDigest myDigest;
+        private byte[]        myBuffer = new byte[BUFFER_SIZE];
+        private int           myBuffered;
+        private long          myLength;
+        /**
+         * 内容库已有、数据只参与校验时为 resolver 给出的校验和
+         */
+        private String        myKnownChecksum;
+        private File          myTemp;
+        private OutputStream  myTempOut;
+        private boolean       myClosed;
+
+        EntryStream(String path, File target){
+            myPath = path;
+            myTarget = target;
+            try {
+                myDigest = MessageDigest.getInstance("MD5");
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[] { (byte) b }, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            myDigest.update(b, off, len);
+            myLength += len;
+            if (myKnownChecksum != null) {
+                return;
+            }
+            if (myTempOut != null) {
+                myTempOut.write(b, off, len);
+                return;
+            }
+            if (myBuffered + len <= MEMORY_THRESHOLD) {
+                if (myBuffered + len > myBuffer.length) {
+                    myBuffer = Arrays.copyOf(myBuffer, Math.min(MEMORY_THRESHOLD,
+                                                                Math.max(myBuffered + len, myBuffer.length * 2)));
+                }
+                System.arraycopy(b, off, myBuffer, myBuffered, len);
+                myBuffered += len;
+                return;
+            }
+            if (myChecksumResolver != null) {
+                String checksum;
+                try {
+                    checksum = myChecksumResolver.getChecksum(myPath);
+                } catch (SVNException e) {
+                    throw new IOException(e.getMessage(), e);
+                }
+                if (checksum != null && getContentFile(checksum).isFile()) {
+                    myKnownChecksum = checksum;
+                    myBuffered = 0;
+                    return;
+                }
+            }
+            myTemp = File.createTempFile("content", ".tmp", myDirectory);
+            myTempOut = new BufferedOutputStream(new FileOutputStream(myTemp), BUFFER_SIZE);
+            myTempOut.write(myBuffer, 0, myBuffered);
+            myTempOut.write(b, off, len);
+            myBuffered = 0;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (myClosed) {
+                return;
+            }
+            myClosed = true;
+            String checksum = SVNFileUtil.toHexDigest(myDigest);
+            File content = getContentFile(checksum);
+            try {
+                if (myKnownChecksum != null) {
+                    if (!myKnownChecksum.equals(checksum)) {
+                        throw new IOException("checksum mismatch for '" + myPath + "': expected " + myKnownChecksum
+                                              + ", actual " + checksum);
+                    }
+                    myDeduplicatedBytes.addAndGet(myLength);
+                } else if (myTempOut != null) {
+                    myTempOut.close();
+                    if (content.isFile()) {
+                        myDeduplicatedBytes.addAndGet(myLength);
+                    } else {
+                        moveToStore(myTemp, content);
+                        myTemp = null;
+                        myStoredFiles.incrementAndGet();
+                        myStoredBytes.addAndGet(myLength);
+                    }
+                } else if (content.isFile()) {
+                    myDeduplicatedBytes.addAndGet(myLength);
+                } else {
+                    myTemp = File.createTempFile("content", ".tmp", myDirectory);
+                    OutputStream out = new FileOutputStream(myTemp);
+                    try {
+                        out.write(myBuffer, 0, myBuffered);
+                    } finally {
+                        out.close();
+                    }
+                    moveToStore(myTemp, content);
+                    myTemp = null;
+                    myStoredFiles.incrementAndGet();
+                    myStoredBytes.addAndGet(myLength);
+                }
+                link(content, myTarget);
+            } finally {
+                SVNFileUtil.closeFile(myTempOut);
+                if (myTemp != null && !myTemp.delete()) {
+                    logger.warn("failed to delete {}", myTemp);
+                }
+                myBuffer = null;
+            }
+        }
+    }
+
+    /**
+     * <pre>
+     * 一个内容库目录在本进程中的锁. 文件锁属于整个进程, 同一进程内重叠加锁会抛 OverlappingFileLockException,
+     * 所以打开的实例共用一个共享文件锁(第一个加锁, 最后一个释放), prune 等本进程的实例都 close 后加排它锁.
+     * </pre>
+     */
+    private static class StoreLock {
+
+        private File             myFile;
+        private int              mySharedCount;
+        private boolean          myExclusive;
+        private RandomAccessFile myRandomAccessFile;
+        private FileLock         myFileLock;
+
+        StoreLock(File file){
+            myFile = file;
+        }
+
+        synchronized void lockShared() throws SVNException {
+            waitWhile(false);
+            if (mySharedCount == 0) {
+                lockFile(true);
+            }
+            mySharedCount++;
+        }
+
+        synchronized void unlockShared() {
+            if (--mySharedCount == 0) {
+                unlockFile();
+                notifyAll();
+            }
+        }
+
+        synchronized void lockExclusive() throws SVNException {
+            waitWhile(true);
+            lockFile(false);
+            myExclusive = true;
+        }
+
+        synchronized void unlockExclusive() {
+            myExclusive = false;
+            unlockFile();
+            notifyAll();
+        }
+
+        private void waitWhile(boolean shared) throws SVNException {
+            try {
+                while (myExclusive || (shared && mySharedCount > 0)) {
+                    wait();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new SVNCancelException();
+            }
+        }
+
+        /**
+         * 其他进程持有冲突的锁时阻塞
+         */
+        private void lockFile(boolean shared) throws SVNException {
+            try {
+                myRandomAccessFile = new RandomAccessFile(myFile, "rw");
+                myFileLock = myRandomAccessFile.getChannel().lock(0, Long.MAX_VALUE, shared);
+            } catch (IOException e) {
+                SVNFileUtil.closeFile(myRandomAccessFile);
+                myRandomAccessFile = null;
+                SVNErrorMessage err = SVNErrorMessage.create(SVNErrorCode.IO_ERROR,
+                                                             "error: cannot lock the content store ''{0}''", myFile);
+                throw new SVNException(err, e);
+            }
+        }
+
+        private void unlockFile() {
+            try {
+                if (myFileLock != null) {
+                    myFileLock.release();
+                }
+            } catch (IOException e) {
+                logger.warn("failed to unlock {}", myFile, e);
+            } finally {
+                myFileLock = null;
+                SVNFileUtil.closeFile(myRandomAccessFile);
+                myRandomAccessFile = null;
+            }
+        }
+    }
+}
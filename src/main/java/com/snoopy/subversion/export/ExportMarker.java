@@ -0,0 +1,147 @@
+/**
+ * <pre>
+ * Copyright (C), 2026, 杭州共道科技
+ * FileName: ExportMarker
+ * Author:   LiHaiQing
+ * Date:     2026/10/19 23:10
+ * Description: 记录导出目录对应的仓库位置和版本
+ * History:
+ * <author>          <time>          <version>          <desc>
+ * 作者姓名           修改时间           版本号              描述
+ * </pre>
+ */
+package com.snoopy.subversion.export;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Properties;
+
+import org.tmatesoft.svn.core.SVNErrorCode;
+import org.tmatesoft.svn.core.SVNErrorMessage;
+import org.tmatesoft.svn.core.SVNException;
+import org.tmatesoft.svn.core.SVNURL;
+import org.tmatesoft.svn.core.internal.wc.SVNFileUtil;
+
+/**
+ * <pre>
+ * 导出目录根下的 .svn-export 文件, 记录导出的 url、仓库 uuid 和版本, 下次导出时只需要
+ * 报告目录处于这个版本, 服务器只发送到新版本的增删改.
+ *
+ * 增量导出开始前先把标记改为未完成, 成功后再写入新版本; 中途失败的目录处于两个版本之间,
+ * 标记仍是未完成, 不能再做增量导出. 标记同时记录导出使用的 PathFilter, 规则不同时目录内容不是同一个子集,
+ * 也不能做增量导出.
+ *
+ *  ExportMarker marker = ExportMarker.read(exportDir);
+ *  if (marker != null && marker.isComplete()) { ... 从 marker.getRevision() 开始增量导出 ... }
+ * </pre>
+ *
+ * @ClassName: ExportMarker.java
+ * @author: LiHaiQing
+ * @date: 2026/10/19 23:10
+ * @version V1.0.0
+ */
+public class ExportMarker {
+
+    public static final String FILE_NAME = ".svn-export";
+
+    private SVNURL  myURL;
+    private String  myRepositoryUUID;
+    private long    myRevision;
+    private boolean myComplete;
+    private String  myFilter;
+
+    private ExportMarker(SVNURL url, String uuid, long revision, boolean complete, String filter){
+        myURL = url;
+        myRepositoryUUID = uuid;
+        myRevision = revision;
+        myComplete = complete;
+        myFilter = filter;
+    }
+
+    public SVNURL getURL() {
+        return myURL;
+    }
+
+    public String getRepositoryUUID() {
+        return myRepositoryUUID;
+    }
+
+    public long getRevision() {
+        return myRevision;
+    }
+
+    /**
+     * 目录是否完整地处于 getRevision() 版本
+     */
+    public boolean isComplete() {
+        return myComplete;
+    }
+
+    /**
+     * 导出使用的 PathFilter.toString(), 没有过滤时为空串
+     */
+    public String getFilter() {
+        return myFilter;
+    }
+
+    /**
+     * 读取 directory 中的标记, 没有时返回 null. <br>
+     */
+    public static ExportMarker read(File directory) throws SVNException {
+        File file = new File(directory, FILE_NAME);
+        if (!file.isFile()) {
+            return null;
+        }
+        Properties properties = new Properties();
+        InputStream in = null;
+        try {
+            in = new FileInputStream(file);
+            properties.load(in);
+            return new ExportMarker(SVNURL.parseURIEncoded(properties.getProperty("url")),
+                                    properties.getProperty("uuid"), Long.parseLong(properties.getProperty("revision")),
+                                    Boolean.parseBoolean(properties.getProperty("complete")),
+                                    properties.getProperty("filter", ""));
+        } catch (IOException e) {
+            SVNErrorMessage err = SVNErrorMessage.create(SVNErrorCode.IO_ERROR, "error: cannot read export marker ''{0}''",
+                                                         file);
+            throw new SVNException(err, e);
+        } catch (RuntimeException e) {
+            SVNErrorMessage err = SVNErrorMessage.create(SVNErrorCode.BAD_VERSION_FILE_FORMAT,
+                                                         "error: malformed export marker ''{0}''", file);
+            throw new SVNException(err, e);
+        } finally {
+            SVNFileUtil.closeFile(in);
+        }
+    }
+
+    /**
+     * 写入标记, 先写临时文件再改名, 不会留下写了一半的标记. <br>
+     */
+    public static void write(File directory, SVNURL url, String uuid, long revision, boolean complete,
+                             String filter) throws SVNException {
+        Properties properties = new Properties();
+        properties.setProperty("url", url.toString());
+        properties.setProperty("uuid", uuid);
+        properties.setProperty("revision", String.valueOf(revision));
+        properties.setProperty("complete", String.valueOf(complete));
+        properties.setProperty("filter", filter == null ? "" : filter);
+        File file = new File(directory, FILE_NAME);
+        File temp = new File(directory, FILE_NAME + ".tmp");
+        OutputStream out = null;
+        try {
+            out = new FileOutputStream(temp);
+            properties.store(out, null);
+        } catch (IOException e) {
+            SVNErrorMessage err = SVNErrorMessage.create(SVNErrorCode.IO_ERROR,
+                                                         "error: cannot write export marker ''{0}''", file);
+            throw new SVNException(err, e);
+        } finally {
+            SVNFileUtil.closeFile(out);
+        }
+        SVNFileUtil.rename(temp, file);
+    }
+}
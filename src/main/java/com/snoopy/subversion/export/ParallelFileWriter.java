@@ -0,0 +1,431 @@
+/**
+ * <pre>
+ * Copyright (C), 2026, 杭州共道科技
+ * FileName: ParallelFileWriter
+ * Author:   LiHaiQing
+ * Date:     2026/10/19 22:50
+ * Description: 导出时在后台线程中创建目录和写文件
+ * History:
+ * <author>          <time>          <version>          <desc>
+ * 作者姓名           修改时间           版本号              描述
+ * </pre>
+ */
+package com.snoopy.subversion.export;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.tmatesoft.svn.core.SVNCancelException;
+import org.tmatesoft.svn.core.SVNErrorCode;
+import org.tmatesoft.svn.core.SVNErrorMessage;
+import org.tmatesoft.svn.core.SVNException;
+
+/**
+ * <pre>
+ * 把网络和磁盘分开: editor 线程只把还原出来的内容按 64K 分块放进队列, 由 threads 个写线程并行创建目录和写文件,
+ * 写磁盘不再阻塞服务器的数据流. 排队的数据不超过 maxBufferedBytes, 写不过来时 editor 线程在 write 中等待,
+ * 服务器的发送也就随之慢下来.
+ *
+ * 同一时刻只有 editor 正在接收的那个文件没有写完数据, 排在它前面的文件都是完整的, 总能写完并释放缓冲区,
+ * 所以 editor 不会一直等下去.
+ *
+ * 写线程通过 FileChannel 写文件: 每个写线程有一个 1M 的直接缓冲区, 分块先拷进缓冲区, 满了或文件结束时才写一次,
+ * 文件也在第一次写时才创建. 小文件因此只有 open/write/close 三次系统调用; 第一次写时文件已经结束并且大于缓冲区的,
+ * 先用 setLength 设成最终大小. 这只是告诉文件系统文件的大小, 得到的是稀疏文件, 并不分配磁盘块, 不能减少碎片.
+ * mkdirs 先攒在 editor 线程中, 下一次 openFile 或 close 时作为一个任务批量创建,
+ * 写线程记住已创建的目录, 不再逐个文件检查上级目录.
+ *
+ *  ParallelFileWriter writer = new ParallelFileWriter(4, 64L << 20);
+ *  OutputStream out = writer.openFile(file);
+ *  ... out.write(..); out.close();
+ *  writer.close();
+ * </pre>
+ *
+ * @ClassName: ParallelFileWriter.java
+ * @author: LiHaiQing
+ * @date: 2026/10/19 22:50
+ * @version V1.0.0
+ */
+public class ParallelFileWriter {
+
+    private static final int CHUNK_SIZE = 64 * 1024;
+
+    private static final int WRITE_BUFFER_SIZE = 1024 * 1024;
+
+    /**
+     * 文件结束的标记
+     */
+    private static final Chunk END = new Chunk(null);
+
+    private ExecutorService myExecutor;
+    /**
+     * 每个许可对应一个排队的分块
+     */
+    private Semaphore myBufferPermits;
+    private ConcurrentLinkedQueue<byte[]> myFreeChunks = new ConcurrentLinkedQueue<byte[]>();
+    private AtomicReference<SVNException> myError = new AtomicReference<SVNException>();
+    private AtomicLong myWrittenBytes = new AtomicLong();
+    private AtomicLong myWrittenFiles = new AtomicLong();
+    private AtomicLong myWriteCalls = new AtomicLong();
+    /**
+     * 写线程各自的直接缓冲区
+     */
+    private ThreadLocal<ByteBuffer> myWriteBuffers = new ThreadLocal<ByteBuffer>() {
+
+        @Override
+        protected ByteBuffer initialValue() {
+            return ByteBuffer.allocateDirect(WRITE_BUFFER_SIZE);
+        }
+    };
+    /**
+     * editor 线程中还没有交给写线程的目录
+     */
+    private List<File> myPendingDirs = new ArrayList<File>();
+    private Set<String> myCreatedDirs = ConcurrentHashMap.newKeySet();
+
+    public ParallelFileWriter(int threads, long maxBufferedBytes){
+        myBufferPermits = new Semaphore((int) Math.max(1, Math.min(Integer.MAX_VALUE, maxBufferedBytes / CHUNK_SIZE)));
+        myExecutor = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+
+            private AtomicInteger myCount = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "export-writer-" + myCount.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    public long getWrittenBytes() {
+        return myWrittenBytes.get();
+    }
+
+    public long getWrittenFiles() {
+        return myWrittenFiles.get();
+    }
+
+    /**
+     * FileChannel.write 的调用次数 <br>
+     */
+    public long getWriteCalls() {
+        return myWriteCalls.get();
+    }
+
+    /**
+     * 在后台创建目录(包括不存在的上级目录). 目录先攒起来, 下一次 openFile 或 close 时批量创建. <br>
+     */
+    public void mkdirs(File directory) throws SVNException {
+        checkError();
+        myPendingDirs.add(directory);
+    }
+
+    /**
+     * 在后台创建(覆盖) file, 返回的流写入的内容由写线程按顺序写到文件, close 后文件结束.
+     * 上级目录不存在时自动创建. 返回的流只能在一个线程中使用. <br>
+     */
+    public OutputStream openFile(File file) throws SVNException {
+        checkError();
+        flushDirectories();
+        FileJob job = new FileJob(file);
+        myExecutor.execute(job);
+        return new ChunkOutputStream(job);
+    }
+
+    /**
+     * 等待全部文件写完并结束写线程, 有写失败的文件时抛出第一个错误. 所有 openFile 返回的流必须已经关闭. <br>
+     */
+    public void close() throws SVNException {
+        flushDirectories();
+        myExecutor.shutdown();
+        try {
+            while (!myExecutor.awaitTermination(1, TimeUnit.SECONDS)) {
+            }
+        } catch (InterruptedException e) {
+            myExecutor.shutdownNow();
+            Thread.currentThread().interrupt();
+            throw new SVNCancelException();
+        }
+        checkError();
+    }
+
+    /**
+     * 放弃还没有写完的文件并结束写线程, 已经 close 过时什么也不做. <br>
+     */
+    public void abort() {
+        myExecutor.shutdownNow();
+    }
+
+    private void checkError() throws SVNException {
+        SVNException error = myError.get();
+        if (error != null) {
+            throw error;
+        }
+    }
+
+    /**
+     * 把攒下的目录作为一个任务交给写线程. 目录按 editor 的顺序排列, 上级目录在前, 一般一次 mkdir 就能创建.
+     */
+    private void flushDirectories() {
+        if (myPendingDirs.isEmpty()) {
+            return;
+        }
+        final List<File> directories = myPendingDirs;
+        myPendingDirs = new ArrayList<File>();
+        myExecutor.execute(new Runnable() {
+
+            @Override
+            public void run() {
+                try {
+                    for (File directory : directories) {
+                        if (!directory.mkdir()) {
+                            makeDirectory(directory);
+                        }
+                        myCreatedDirs.add(directory.getPath());
+                    }
+                } catch (SVNException e) {
+                    myError.compareAndSet(null, e);
+                }
+            }
+        });
+    }
+
+    private static void makeDirectory(File directory) throws SVNException {
+        /**
+         * 多个写线程可能同时创建同一个上级目录, mkdirs 返回 false 时以目录是否存在为准
+         */
+        if (!directory.mkdirs() && !directory.isDirectory()) {
+            SVNErrorMessage err = SVNErrorMessage.create(SVNErrorCode.IO_ERROR,
+                                                         "error: failed to add the directory ''{0}''.", directory);
+            throw new SVNException(err);
+        }
+    }
+
+    private static class Chunk {
+
+        private byte[] myData;
+        private int    myLength;
+
+        Chunk(byte[] data){
+            myData = data;
+        }
+    }
+
+    /**
+     * 一个文件的写任务, 从自己的队列中按顺序取出分块, 经直接缓冲区写到文件, 直到 END
+     */
+    private class FileJob implements Runnable {
+
+        private File                        myFile;
+        private LinkedBlockingQueue<Chunk>  myChunks = new LinkedBlockingQueue<Chunk>();
+        /**
+         * 文件的总长度, editor 关闭流之前为 -1
+         */
+        private volatile long               myLength = -1;
+        private FileChannel                 myChannel;
+
+        FileJob(File file){
+            myFile = file;
+        }
+
+        void put(Chunk chunk) {
+            myChunks.add(chunk);
+        }
+
+        @Override
+        public void run() {
+            ByteBuffer buffer = myWriteBuffers.get();
+            buffer.clear();
+            boolean failed = false;
+            try {
+                while (true) {
+                    Chunk chunk = myChunks.take();
+                    if (chunk == END) {
+                        break;
+                    }
+                    /**
+                     * 失败之后继续取完分块, 释放缓冲区, 以免 editor 线程一直等待
+                     */
+                    if (!failed) {
+                        try {
+                            for (int offset = 0; offset < chunk.myLength;) {
+                                if (!buffer.hasRemaining()) {
+                                    flush(buffer);
+                                }
+                                int length = Math.min(buffer.remaining(), chunk.myLength - offset);
+                                buffer.put(chunk.myData, offset, length);
+                                offset += length;
+                            }
+                        } catch (IOException e) {
+                            fail(e);
+                            failed = true;
+                        } catch (SVNException e) {
+                            myError.compareAndSet(null, e);
+                            failed = true;
+                        }
+                    }
+                    myFreeChunks.add(chunk.myData);
+                    myBufferPermits.release();
+                }
+                if (!failed) {
+                    flush(buffer);
+                    myChannel.close();
+                    myChannel = null;
+                    myWrittenFiles.incrementAndGet();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (IOException e) {
+                fail(e);
+            } catch (SVNException e) {
+                myError.compareAndSet(null, e);
+            } finally {
+                if (myChannel != null) {
+                    try {
+                        myChannel.close();
+                    } catch (IOException e) {
+                        // already failed or aborted
+                    }
+                }
+            }
+        }
+
+        /**
+         * 把缓冲区写到文件, 第一次调用时创建文件. 文件为空时也会创建.
+         */
+        private void flush(ByteBuffer buffer) throws IOException, SVNException {
+            if (myChannel == null) {
+                open(buffer.position());
+            }
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                myChannel.write(buffer);
+                myWriteCalls.incrementAndGet();
+            }
+            myWrittenBytes.addAndGet(buffer.limit());
+            buffer.clear();
+        }
+
+        /**
+         * buffered 为缓冲区中的字节数. 一次就能写完的文件直接写;
+         * 已经知道最终大小的大文件先用 setLength 设置大小(稀疏, 只是大小提示), 并截掉已有文件多余的部分.
+         */
+        private void open(int buffered) throws IOException, SVNException {
+            File parent = myFile.getParentFile();
+            if (parent != null && !myCreatedDirs.contains(parent.getPath())) {
+                if (!parent.isDirectory()) {
+                    makeDirectory(parent);
+                }
+                myCreatedDirs.add(parent.getPath());
+            }
+            long length = myLength;
+            if (length > buffered) {
+                RandomAccessFile file = new RandomAccessFile(myFile, "rw");
+                try {
+                    file.setLength(length);
+                } catch (IOException e) {
+                    file.close();
+                    throw e;
+                }
+                myChannel = file.getChannel();
+            } else {
+                myChannel = new FileOutputStream(myFile).getChannel();
+            }
+        }
+
+        private void fail(IOException e) {
+            SVNErrorMessage err = SVNErrorMessage.create(SVNErrorCode.IO_ERROR, "error: cannot write file ''{0}''",
+                                                         myFile);
+            myError.compareAndSet(null, new SVNException(err, e));
+        }
+    }
+
+    /**
+     * editor 线程一侧: 攒满一个分块交给写任务, 没有空闲的缓冲区时等待
+     */
+    private class ChunkOutputStream extends OutputStream {
+
+        private FileJob myJob;
+        private Chunk   myChunk;
+        private long    myLength;
+        private boolean myClosed;
+
+        ChunkOutputStream(FileJob job){
+            myJob = job;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[] { (byte) b }, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            while (len > 0) {
+                if (myChunk == null) {
+                    myChunk = allocate();
+                }
+                int length = Math.min(len, CHUNK_SIZE - myChunk.myLength);
+                System.arraycopy(b, off, myChunk.myData, myChunk.myLength, length);
+                myChunk.myLength += length;
+                myLength += length;
+                off += length;
+                len -= length;
+                if (myChunk.myLength == CHUNK_SIZE) {
+                    myJob.put(myChunk);
+                    myChunk = null;
+                }
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (myClosed) {
+                return;
+            }
+            myClosed = true;
+            myJob.myLength = myLength;
+            if (myChunk != null) {
+                myJob.put(myChunk);
+                myChunk = null;
+            }
+            myJob.put(END);
+        }
+
+        private Chunk allocate() throws IOException {
+            SVNException error = myError.get();
+            if (error != null) {
+                throw new IOException(error.getMessage(), error);
+            }
+            try {
+                myBufferPermits.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("interrupted while waiting for the export writers");
+            }
+            byte[] data = myFreeChunks.poll();
+            return new Chunk(data != null ? data : new byte[CHUNK_SIZE]);
+        }
+    }
+}
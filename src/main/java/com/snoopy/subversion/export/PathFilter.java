@@ -0,0 +1,332 @@
+/**
+ * <pre>
+ * Copyright (C), 2026, 杭州共道科技
+ * FileName: PathFilter
+ * Author:   LiHaiQing
+ * Date:     2026/10/20 00:20
+ * Description: 导出时按 glob 包含/排除路径
+ * History:
+ * <author>          <time>          <version>          <desc>
+ * 作者姓名           修改时间           版本号              描述
+ * </pre>
+ */
+package com.snoopy.subversion.export;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.regex.Pattern;
+
+import org.tmatesoft.svn.core.SVNDepth;
+import org.tmatesoft.svn.core.SVNException;
+import org.tmatesoft.svn.core.SVNNodeKind;
+import org.tmatesoft.svn.core.internal.util.SVNPathUtil;
+import org.tmatesoft.svn.core.io.SVNRepository;
+
+/**
+ * <pre>
+ * 导出的包含/排除规则. 路径相对导出的根目录, 用 '/' 分隔; glob 中 '*' 和 '?' 只匹配一段之内的字符,
+ * '**' 匹配任意多段. 规则匹配到一个目录时对整个子树生效. 没有包含规则时包含全部, 排除优先于包含.
+ *
+ * 规则分两层执行:
+ * 1. getReportDepths 把规则中不含通配符的前缀变成 update 报告中各路径的 depth:
+ *    只有包含路径及其祖先目录被报告(祖先为 EMPTY), 排除的子树报告为 EXCLUDE, 服务器不会发送这些内容.
+ * 2. 带通配符、无法事先确定路径的部分由 editor 逐个路径调用 accepts / mayContain 过滤.
+ *
+ *  PathFilter filter = new PathFilter(Arrays.asList("src/**", "pom.xml"), Arrays.asList("src/test/resources", "docs/*.pdf"));
+ *  Map&lt;String, SVNDepth&gt; depths = filter.getReportDepths(repository, revision);
+ *  ... reporter.setPath(path, null, revision, depth, ..) ...
+ *  if (filter.accepts("src/main/App.java")) { ... }
+ * </pre>
+ *
+ * @ClassName: PathFilter.java
+ * @author: LiHaiQing
+ * @date: 2026/10/20 00:20
+ * @version V1.0.0
+ */
+public class PathFilter {
+
+    private static final String ANY_SEGMENTS = "**";
+
+    private List<String[]>       myIncludes         = new ArrayList<String[]>();
+    private List<String[]>       myExcludes         = new ArrayList<String[]>();
+    private Map<String, Pattern> mySegmentPatterns  = new HashMap<String, Pattern>();
+
+    /**
+     * @param includes 包含的 glob, 为空时包含全部
+     * @param excludes 排除的 glob
+     */
+    public PathFilter(Collection<String> includes, Collection<String> excludes){
+        addPatterns(myIncludes, includes);
+        addPatterns(myExcludes, excludes);
+    }
+
+    /**
+     * 没有任何规则 <br>
+     */
+    public boolean isEmpty() {
+        return myIncludes.isEmpty() && myExcludes.isEmpty();
+    }
+
+    /**
+     * path 本身要导出: 它和它的祖先都没有被排除, 并且它或它的某个祖先被包含 <br>
+     */
+    public boolean accepts(String path) {
+        String[] segments = split(path);
+        if (matchesSelfOrAncestor(myExcludes, segments)) {
+            return false;
+        }
+        return myIncludes.isEmpty() || matchesSelfOrAncestor(myIncludes, segments);
+    }
+
+    /**
+     * 目录本身不被包含时, 它下面是否可能有被包含的路径 <br>
+     */
+    public boolean mayContain(String directory) {
+        String[] segments = split(directory);
+        if (matchesSelfOrAncestor(myExcludes, segments)) {
+            return false;
+        }
+        if (myIncludes.isEmpty()) {
+            return true;
+        }
+        for (String[] pattern : myIncludes) {
+            if (match(pattern, 0, segments, 0, segments.length, true)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * <pre>
+     * 按 revision 时的目录结构计算 update 报告中每个路径的 depth, 按深度优先排序, 父目录在子路径之前, 总是包含根 "".
+     * 不含通配符的包含路径和排除路径先用 checkPath 确认类型, 报告中的路径必须存在:
+     * 包含的目录报告为 INFINITY, 包含的文件让它的父目录报告为 FILES(同目录的其他文件由 editor 丢弃),
+     * 在已报告的子树中的排除路径报告为 EXCLUDE.
+     * </pre>
+     */
+    public Map<String, SVNDepth> getReportDepths(SVNRepository repository, long revision) throws SVNException {
+        /**
+         * reporter 要求深度优先的顺序: 子路径紧跟在父目录之后, '/' 排在其他字符之前
+         */
+        TreeMap<String, SVNDepth> depths = new TreeMap<String, SVNDepth>(SVNPathUtil.PATH_COMPARATOR);
+        if (myIncludes.isEmpty()) {
+            depths.put("", SVNDepth.INFINITY);
+        } else {
+            depths.put("", SVNDepth.EMPTY);
+            for (String[] pattern : myIncludes) {
+                int literal = getLiteralLength(pattern);
+                String path = join(pattern, literal);
+                SVNNodeKind kind = path.length() == 0 ? SVNNodeKind.DIR : repository.checkPath(path, revision);
+                if (kind == SVNNodeKind.FILE && literal == pattern.length) {
+                    require(depths, getParent(path), SVNDepth.FILES);
+                } else if (kind == SVNNodeKind.DIR) {
+                    require(depths, path, SVNDepth.INFINITY);
+                }
+            }
+        }
+        for (String[] pattern : myExcludes) {
+            int literal = getLiteralLength(pattern);
+            if (literal == 0 || literal < pattern.length - 1
+                || (literal == pattern.length - 1 && !ANY_SEGMENTS.equals(pattern[literal]))) {
+                continue;
+            }
+            String path = join(pattern, literal);
+            String parent = getParent(path);
+            String covering = parent;
+            while (covering.length() > 0 && !depths.containsKey(covering)) {
+                covering = getParent(covering);
+            }
+            SVNDepth coveringDepth = depths.get(covering);
+            if (coveringDepth != SVNDepth.INFINITY && coveringDepth != SVNDepth.FILES) {
+                continue;
+            }
+            SVNNodeKind kind = repository.checkPath(path, revision);
+            if (kind == SVNNodeKind.NONE || (coveringDepth == SVNDepth.FILES
+                                             && (!covering.equals(parent) || kind != SVNNodeKind.FILE))) {
+                continue;
+            }
+            /**
+             * 排除路径和报告过的祖先之间的目录也要报告, 否则服务器认为它们不存在.
+             */
+            for (String directory = parent; !directory.equals(covering); directory = getParent(directory)) {
+                depths.put(directory, SVNDepth.INFINITY);
+            }
+            depths.put(path, SVNDepth.EXCLUDE);
+        }
+        return depths;
+    }
+
+    /**
+     * 规则的文本形式, 没有规则时为空串
+     */
+    @Override
+    public String toString() {
+        return isEmpty() ? "" : "include=" + join(myIncludes) + ";exclude=" + join(myExcludes);
+    }
+
+    /**
+     * 报告 path 至少为 depth, 祖先目录至少为 EMPTY; 已在 INFINITY 的子树中时不需要报告
+     */
+    private static void require(TreeMap<String, SVNDepth> depths, String path, SVNDepth depth) {
+        for (String ancestor = path; ancestor.length() > 0;) {
+            ancestor = getParent(ancestor);
+            if (depths.get(ancestor) == SVNDepth.INFINITY) {
+                return;
+            }
+        }
+        SVNDepth current = depths.get(path);
+        if (current == SVNDepth.INFINITY || (current == SVNDepth.FILES && depth == SVNDepth.EMPTY)) {
+            return;
+        }
+        if (depth == SVNDepth.INFINITY) {
+            if (path.length() == 0) {
+                depths.clear();
+            } else {
+                /**
+                 * 按 PATH_COMPARATOR 排序时子孙路径连续地排在 path 之后
+                 */
+                String prefix = path + "/";
+                for (Iterator<String> descendants = depths.tailMap(prefix).keySet().iterator(); descendants.hasNext();) {
+                    if (!descendants.next().startsWith(prefix)) {
+                        break;
+                    }
+                    descendants.remove();
+                }
+            }
+        }
+        depths.put(path, depth);
+        for (String ancestor = path; ancestor.length() > 0;) {
+            ancestor = getParent(ancestor);
+            if (!depths.containsKey(ancestor)) {
+                depths.put(ancestor, SVNDepth.EMPTY);
+            }
+        }
+    }
+
+    private boolean matchesSelfOrAncestor(List<String[]> patterns, String[] segments) {
+        for (String[] pattern : patterns) {
+            for (int end = 1; end <= segments.length; end++) {
+                if (match(pattern, 0, segments, 0, end, false)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * pattern[pi..] 是否匹配 segments[si..end); partial 为 true 时只要求 segments 是某个匹配路径的前缀
+     */
+    private boolean match(String[] pattern, int pi, String[] segments, int si, int end, boolean partial) {
+        if (si == end) {
+            if (partial) {
+                return true;
+            }
+            while (pi < pattern.length && ANY_SEGMENTS.equals(pattern[pi])) {
+                pi++;
+            }
+            return pi == pattern.length;
+        }
+        if (pi == pattern.length) {
+            return false;
+        }
+        if (ANY_SEGMENTS.equals(pattern[pi])) {
+            return match(pattern, pi + 1, segments, si, end, partial)
+                   || match(pattern, pi, segments, si + 1, end, partial);
+        }
+        return matchSegment(pattern[pi], segments[si]) && match(pattern, pi + 1, segments, si + 1, end, partial);
+    }
+
+    private boolean matchSegment(String glob, String segment) {
+        if (!isWildcard(glob)) {
+            return glob.equals(segment);
+        }
+        Pattern pattern = mySegmentPatterns.get(glob);
+        if (pattern == null) {
+            StringBuilder regex = new StringBuilder();
+            for (int i = 0; i < glob.length(); i++) {
+                char c = glob.charAt(i);
+                if (c == '*') {
+                    regex.append(".*");
+                } else if (c == '?') {
+                    regex.append('.');
+                } else {
+                    regex.append(Pattern.quote(String.valueOf(c)));
+                }
+            }
+            pattern = Pattern.compile(regex.toString(), Pattern.DOTALL);
+            mySegmentPatterns.put(glob, pattern);
+        }
+        return pattern.matcher(segment).matches();
+    }
+
+    private static boolean isWildcard(String segment) {
+        return segment.indexOf('*') >= 0 || segment.indexOf('?') >= 0;
+    }
+
+    /**
+     * 开头不含通配符的段数
+     */
+    private static int getLiteralLength(String[] pattern) {
+        int length = 0;
+        while (length < pattern.length && !isWildcard(pattern[length])) {
+            length++;
+        }
+        return length;
+    }
+
+    private static void addPatterns(List<String[]> target, Collection<String> patterns) {
+        if (patterns == null) {
+            return;
+        }
+        for (String pattern : patterns) {
+            String[] segments = split(pattern.trim());
+            if (segments.length > 0) {
+                target.add(segments);
+            }
+        }
+    }
+
+    private static String[] split(String path) {
+        List<String> segments = new ArrayList<String>();
+        for (String segment : path.split("/")) {
+            if (segment.length() > 0) {
+                segments.add(segment);
+            }
+        }
+        return segments.toArray(new String[segments.size()]);
+    }
+
+    private static String join(String[] segments, int length) {
+        StringBuilder path = new StringBuilder();
+        for (int i = 0; i < length; i++) {
+            if (i > 0) {
+                path.append('/');
+            }
+            path.append(segments[i]);
+        }
+        return path.toString();
+    }
+
+    private static String join(List<String[]> patterns) {
+        StringBuilder joined = new StringBuilder();
+        for (String[] pattern : patterns) {
+            if (joined.length() > 0) {
+                joined.append(',');
+            }
+            joined.append(join(pattern, pattern.length));
+        }
+        return joined.toString();
+    }
+
+    private static String getParent(String path) {
+        int slash = path.lastIndexOf('/');
+        return slash < 0 ? "" : path.substring(0, slash);
+    }
+}
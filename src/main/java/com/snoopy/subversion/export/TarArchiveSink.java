@@ -0,0 +1,302 @@
+/**
+ * <pre>
+ * Copyright (C), 2026, 杭州共道科技
+ * FileName: TarArchiveSink
+ * Author:   LiHaiQing
+ * Date:     2026/10/19 23:30
+ * Description: 导出为 tar / tar.gz
+ * History:
+ * <author>          <time>          <version>          <desc>
+ * 作者姓名           修改时间           版本号              描述
+ * </pre>
+ */
+package com.snoopy.subversion.export;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.zip.GZIPOutputStream;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.output.DeferredFileOutputStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.tmatesoft.svn.core.SVNErrorCode;
+import org.tmatesoft.svn.core.SVNErrorMessage;
+import org.tmatesoft.svn.core.SVNException;
+
+/**
+ * <pre>
+ * 写 POSIX ustar 格式的 tar, gzip 为 true 时经过 GZIPOutputStream 压缩.
+ * 名字放不进 ustar 的 name/prefix 字段、含非 ASCII 字符, 或者文件不小于 8G 时,
+ * 先写一个 pax 扩展头(path / size), GNU tar 和 bsdtar 都能识别.
+ *
+ * 头部中的大小必须在内容之前写出: 不超过 4M 的文件在内存中缓冲到结束再写;
+ * 更大的文件向 sizeResolver 要大小, 写出头部后直接流式写出, 内存占用不随文件大小增长.
+ * 没有 sizeResolver 时大文件先写到临时文件.
+ * </pre>
+ *
+ * @ClassName: TarArchiveSink.java
+ * @author: LiHaiQing
+ * @date: 2026/10/19 23:30
+ * @version V1.0.0
+ */
+public class TarArchiveSink implements ArchiveSink {
+
+    private static Logger logger = LoggerFactory.getLogger(TarArchiveSink.class);
+
+    private static final int BLOCK_SIZE = 512;
+    private static final int MEMORY_THRESHOLD = 4 << 20;
+    /**
+     * 12 字节的八进制大小字段能表示的最大值
+     */
+    private static final long MAX_OCTAL_SIZE = 077777777777L;
+
+    private OutputStream myOut;
+    private ArchiveSizeResolver mySizeResolver;
+    private byte[] myHeader = new byte[BLOCK_SIZE];
+    /**
+     * 当前条目的缓冲区, 按需增长到 MEMORY_THRESHOLD, 条目之间复用
+     */
+    private byte[] myBuffer = new byte[64 * 1024];
+
+    public TarArchiveSink(OutputStream out, boolean gzip, ArchiveSizeResolver sizeResolver) throws SVNException{
+        mySizeResolver = sizeResolver;
+        try {
+            myOut = new BufferedOutputStream(gzip ? new GZIPOutputStream(out, 64 * 1024) : out, 64 * 1024);
+        } catch (IOException e) {
+            throw ioError("", e);
+        }
+    }
+
+    @Override
+    public void addDirectory(String path, long lastModified) throws SVNException {
+        try {
+            writeHeader(path + "/", (byte) '5', 0, lastModified, 0755);
+        } catch (IOException e) {
+            throw ioError(path, e);
+        }
+    }
+
+    @Override
+    public OutputStream openFile(String path, long lastModified, boolean executable) throws SVNException {
+        return new EntryStream(path, lastModified, executable ? 0755 : 0644);
+    }
+
+    @Override
+    public void close() throws SVNException {
+        try {
+            myOut.write(new byte[BLOCK_SIZE * 2]);
+            myOut.close();
+        } catch (IOException e) {
+            throw ioError("", e);
+        }
+    }
+
+    private void writeHeader(String name, byte type, long size, long lastModified, int mode) throws IOException {
+        byte[] nameBytes = name.getBytes(StandardCharsets.UTF_8);
+        int split = split(nameBytes);
+        boolean paxPath = split == -2 || nameBytes.length != name.length();
+        boolean paxSize = size > MAX_OCTAL_SIZE;
+        if (paxPath || paxSize) {
+            ByteArrayOutputStream records = new ByteArrayOutputStream();
+            if (paxPath) {
+                paxRecord(records, "path", name);
+            }
+            if (paxSize) {
+                paxRecord(records, "size", String.valueOf(size));
+            }
+            byte[] data = records.toByteArray();
+            fillHeader("././@PaxHeader".getBytes(StandardCharsets.US_ASCII), -1, (byte) 'x', data.length,
+                       lastModified, 0644);
+            myOut.write(myHeader);
+            myOut.write(data);
+            pad(data.length);
+        }
+        fillHeader(nameBytes, paxPath ? -1 : split, type, paxSize ? 0 : size, lastModified, mode);
+        myOut.write(myHeader);
+    }
+
+    /**
+     * 名字不超过 100 字节时返回 -1; 否则返回拆成 prefix(不超过 155) 和 name(不超过 100) 的 '/' 位置, 拆不开返回 -2
+     */
+    private static int split(byte[] name) {
+        if (name.length <= 100) {
+            return -1;
+        }
+        for (int i = Math.min(155, name.length - 2); i >= 0; i--) {
+            if (name[i] == '/') {
+                return name.length - i - 1 <= 100 ? i : -2;
+            }
+        }
+        return -2;
+    }
+
+    private void fillHeader(byte[] name, int split, byte type, long size, long lastModified, int mode) {
+        Arrays.fill(myHeader, (byte) 0);
+        if (split >= 0) {
+            System.arraycopy(name, split + 1, myHeader, 0, name.length - split - 1);
+            System.arraycopy(name, 0, myHeader, 345, split);
+        } else {
+            System.arraycopy(name, 0, myHeader, 0, Math.min(100, name.length));
+        }
+        octal(100, 8, mode);
+        octal(108, 8, 0);
+        octal(116, 8, 0);
+        octal(124, 12, size);
+        octal(136, 12, Math.max(0, lastModified / 1000));
+        myHeader[156] = type;
+        System.arraycopy("ustar\u000000".getBytes(StandardCharsets.US_ASCII), 0, myHeader, 257, 8);
+        /**
+         * 校验和按校验和字段全为空格计算
+         */
+        Arrays.fill(myHeader, 148, 156, (byte) ' ');
+        long checksum = 0;
+        for (byte b : myHeader) {
+            checksum += b & 0xFF;
+        }
+        octal(148, 7, checksum);
+        myHeader[155] = ' ';
+    }
+
+    /**
+     * length - 1 位补零的八进制数, 以 NUL 结尾
+     */
+    private void octal(int offset, int length, long value) {
+        int position = offset + length - 1;
+        myHeader[position] = 0;
+        while (--position >= offset) {
+            myHeader[position] = (byte) ('0' + (value & 7));
+            value >>>= 3;
+        }
+    }
+
+    /**
+     * "长度 key=value\n", 长度包括自己的位数
+     */
+    private static void paxRecord(ByteArrayOutputStream records, String key, String value) throws IOException {
+        byte[] body = (" " + key + "=" + value + "\n").getBytes(StandardCharsets.UTF_8);
+        int length = body.length + String.valueOf(body.length).length();
+        if (String.valueOf(length).length() != String.valueOf(body.length).length()) {
+            length = body.length + String.valueOf(length).length();
+        }
+        records.write(String.valueOf(length).getBytes(StandardCharsets.US_ASCII));
+        records.write(body);
+    }
+
+    private void pad(long size) throws IOException {
+        int remainder = (int) (size % BLOCK_SIZE);
+        if (remainder != 0) {
+            myOut.write(new byte[BLOCK_SIZE - remainder]);
+        }
+    }
+
+    private static SVNException ioError(String path, IOException e) {
+        SVNErrorMessage err = SVNErrorMessage.create(SVNErrorCode.IO_ERROR, "error: cannot write tar entry ''{0}''",
+                                                     path);
+        return new SVNException(err, e);
+    }
+
+    /**
+     * 一个文件条目: 先缓冲, 结束时或者知道大小之后写头部
+     */
+    private class EntryStream extends OutputStream {
+
+        private String                   myPath;
+        private long                     myLastModified;
+        private int                      myMode;
+        private int                      myBuffered;
+        /**
+         * 头部已经写出时为文件大小, 否则为 -1
+         */
+        private long                     mySize = -1;
+        private long                     myWritten;
+        private DeferredFileOutputStream mySpill;
+        private boolean                  myClosed;
+
+        EntryStream(String path, long lastModified, int mode){
+            myPath = path;
+            myLastModified = lastModified;
+            myMode = mode;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[] { (byte) b }, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (mySize >= 0) {
+                if (myWritten + len > mySize) {
+                    throw new IOException("'" + myPath + "' is larger than its size " + mySize);
+                }
+                myOut.write(b, off, len);
+                myWritten += len;
+            } else if (mySpill != null) {
+                mySpill.write(b, off, len);
+            } else if (myBuffered + len <= MEMORY_THRESHOLD) {
+                if (myBuffered + len > myBuffer.length) {
+                    myBuffer = Arrays.copyOf(myBuffer, Math.min(MEMORY_THRESHOLD,
+                                                                Math.max(myBuffered + len, myBuffer.length * 2)));
+                }
+                System.arraycopy(b, off, myBuffer, myBuffered, len);
+                myBuffered += len;
+            } else if (mySizeResolver != null) {
+                try {
+                    mySize = mySizeResolver.getSize(myPath);
+                } catch (SVNException e) {
+                    throw new IOException(e.getMessage(), e);
+                }
+                writeHeader(myPath, (byte) '0', mySize, myLastModified, myMode);
+                int buffered = myBuffered;
+                myBuffered = 0;
+                write(myBuffer, 0, buffered);
+                write(b, off, len);
+            } else {
+                mySpill = new DeferredFileOutputStream(0, "svn-archive", ".tmp", null);
+                mySpill.write(myBuffer, 0, myBuffered);
+                myBuffered = 0;
+                mySpill.write(b, off, len);
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (myClosed) {
+                return;
+            }
+            myClosed = true;
+            if (mySize >= 0) {
+                if (myWritten != mySize) {
+                    throw new IOException("'" + myPath + "' is smaller than its size " + mySize);
+                }
+                pad(mySize);
+            } else if (mySpill != null) {
+                mySpill.close();
+                long size = mySpill.getByteCount();
+                writeHeader(myPath, (byte) '0', size, myLastModified, myMode);
+                InputStream in = new FileInputStream(mySpill.getFile());
+                try {
+                    IOUtils.copyLarge(in, myOut);
+                } finally {
+                    in.close();
+                    if (!mySpill.getFile().delete()) {
+                        logger.warn("failed to delete {}", mySpill.getFile());
+                    }
+                }
+                pad(size);
+            } else {
+                writeHeader(myPath, (byte) '0', myBuffered, myLastModified, myMode);
+                myOut.write(myBuffer, 0, myBuffered);
+                pad(myBuffered);
+                myBuffered = 0;
+            }
+        }
+    }
+}
@@ -0,0 +1,45 @@
+/**
+ * <pre>
+ * Copyright (C), 2026, 杭州共道科技
+ * FileName: BatchFileHandler
+ * Author:   LiHaiQing
+ * Date:     2026/10/19 21:10
+ * Description: 批量读取文件时每个文件的输出
+ * History:
+ * <author>          <time>          <version>          <desc>
+ * 作者姓名           修改时间           版本号              描述
+ * </pre>
+ */
+package com.snoopy.subversion.file;
+
+import java.io.OutputStream;
+
+import org.tmatesoft.svn.core.SVNException;
+import org.tmatesoft.svn.core.SVNProperties;
+
+/**
+ * <pre>
+ * BatchFileReader 的回调, 每个读到的文件按 openFile -> closeFile 的顺序调用一次,
+ * 文件之间的顺序由服务器决定.
+ *
+ * 报告里属性和内容谁先到达取决于协议, 所以属性在 closeFile 时才完整交给调用方.
+ * </pre>
+ *
+ * @ClassName: BatchFileHandler.java
+ * @author: LiHaiQing
+ * @date: 2026/10/19 21:10
+ * @version V1.0.0
+ */
+public interface BatchFileHandler {
+
+    /**
+     * 文件内容开始传输, 返回接收内容的流(不会被关闭), 为 null 时内容被丢弃.
+     * 空文件没有内容传输, 也会在 closeFile 之前调用一次.
+     */
+    OutputStream openFile(String path, long revision) throws SVNException;
+
+    /**
+     * 文件传输完成, 内容已经通过 MD5 校验. properties 包括 svn:entry:committed-rev 等条目属性.
+     */
+    void closeFile(String path, long revision, SVNProperties properties) throws SVNException;
+}
@@ -0,0 +1,277 @@
+/**
+ * <pre>
+ * Copyright (C), 2026, 杭州共道科技
+ * FileName: BatchFileReader
+ * Author:   LiHaiQing
+ * Date:     2026/10/19 21:10
+ * Description: 一次报告读取多个svn文件
+ * History:
+ * <author>          <time>          <version>          <desc>
+ * 作者姓名           修改时间           版本号              描述
+ * </pre>
+ */
+package com.snoopy.subversion.file;
+
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.apache.commons.io.output.CloseShieldOutputStream;
+import org.tmatesoft.svn.core.SVNCommitInfo;
+import org.tmatesoft.svn.core.SVNDepth;
+import org.tmatesoft.svn.core.SVNErrorCode;
+import org.tmatesoft.svn.core.SVNErrorMessage;
+import org.tmatesoft.svn.core.SVNException;
+import org.tmatesoft.svn.core.SVNProperties;
+import org.tmatesoft.svn.core.SVNPropertyValue;
+import org.tmatesoft.svn.core.internal.wc.SVNFileUtil;
+import org.tmatesoft.svn.core.io.ISVNEditor;
+import org.tmatesoft.svn.core.io.ISVNReporter;
+import org.tmatesoft.svn.core.io.ISVNReporterBaton;
+import org.tmatesoft.svn.core.io.SVNRepository;
+import org.tmatesoft.svn.core.io.diff.SVNDeltaProcessor;
+import org.tmatesoft.svn.core.io.diff.SVNDiffWindow;
+
+/**
+ * <pre>
+ * 逐个 getFile 读 N 个文件要 N 次往返; 这里用一次 update 报告读取全部文件:
+ * 报告 'working copy' 在 revision 上是完整的, 只有要读的文件被删除了 (deletePath),
+ * 服务器只会把这些文件作为新增发送过来, 没有要读的文件的目录不会被展开.
+ * 内容以 delta 窗口的形式边到达边应用, 直接写到 handler 为每个文件返回的流, 不在内存中聚集.
+ *
+ * paths 为相对于 repository 位置的文件路径. 在 revision 上不存在的文件读完之后以
+ * FS_NOT_FOUND 报告, 其它文件照常交给 handler; 父目录也不存在时服务器在报告阶段就会报错.
+ * 目录路径会导致整个目录被发送, 不要传目录.
+ *
+ *  new BatchFileReader(repository).read(-1, paths, handler);
+ * </pre>
+ *
+ * @ClassName: BatchFileReader.java
+ * @author: LiHaiQing
+ * @date: 2026/10/19 21:10
+ * @version V1.0.0
+ */
+public class BatchFileReader {
+
+    /**
+     * 空内容的 MD5
+     */
+    private static final String EMPTY_CHECKSUM = "d41d8cd98f00b204e9800998ecf8427e";
+
+    private static final Comparator<String> PATH_ORDER = new Comparator<String>() {
+
+        @Override
+        public int compare(String o1, String o2) {
+            int length = Math.min(o1.length(), o2.length());
+            for (int i = 0; i < length; i++) {
+                char c1 = o1.charAt(i);
+                char c2 = o2.charAt(i);
+                if (c1 != c2) {
+                    return c1 == '/' ? -1 : c2 == '/' ? 1 : c1 - c2;
+                }
+            }
+            return o1.length() - o2.length();
+        }
+    };
+
+    private SVNRepository myRepository;
+
+    public BatchFileReader(SVNRepository repository){
+        myRepository = repository;
+    }
+
+    /**
+     * 读取 paths 在 revision(负数为 HEAD) 的内容和属性. <br>
+     *
+     * @return 交给 handler 的文件数
+     */
+    public long read(long revision, Collection<String> paths, BatchFileHandler handler) throws SVNException {
+        if (revision < 0) {
+            revision = myRepository.getLatestRevision();
+        }
+        /**
+         * 报告中的路径必须按 svn 的路径顺序('/' 排在所有字符之前)给出, 否则服务器会找错父目录
+         */
+        final Set<String> wanted = new TreeSet<String>(PATH_ORDER);
+        for (String path : paths) {
+            wanted.add(normalize(path));
+        }
+        if (wanted.isEmpty()) {
+            return 0;
+        }
+        final long targetRevision = revision;
+        BatchEditor editor = new BatchEditor(wanted, revision, handler);
+        myRepository.update(revision, null, SVNDepth.INFINITY, false, new ISVNReporterBaton() {
+
+            @Override
+            public void report(ISVNReporter reporter) throws SVNException {
+                try {
+                    reporter.setPath("", null, targetRevision, SVNDepth.INFINITY, false);
+                    for (String path : wanted) {
+                        reporter.deletePath(path);
+                    }
+                    reporter.finishReport();
+                } catch (SVNException svne) {
+                    reporter.abortReport();
+                    throw svne;
+                }
+            }
+        }, editor);
+        wanted.removeAll(editor.myReceived);
+        if (!wanted.isEmpty()) {
+            SVNErrorMessage err = SVNErrorMessage.create(SVNErrorCode.FS_NOT_FOUND,
+                                                         "files not found in revision {0}: {1}",
+                                                         String.valueOf(revision), wanted);
+            throw new SVNException(err);
+        }
+        return editor.myReceived.size();
+    }
+
+    private static String normalize(String path) {
+        while (path.startsWith("/")) {
+            path = path.substring(1);
+        }
+        while (path.endsWith("/")) {
+            path = path.substring(0, path.length() - 1);
+        }
+        return path;
+    }
+
+    /**
+     * 只处理要读的文件, 同一时刻最多只有一个文件在传输
+     */
+    private static class BatchEditor implements ISVNEditor {
+
+        private Set<String> myWanted;
+        private long myRevision;
+        private BatchFileHandler myHandler;
+        private List<String> myReceived = new ArrayList<String>();
+        private SVNDeltaProcessor myDeltaProcessor = new SVNDeltaProcessor();
+        private String myPath;
+        private SVNProperties myProperties;
+        private String myChecksum;
+
+        BatchEditor(Set<String> wanted, long revision, BatchFileHandler handler){
+            myWanted = wanted;
+            myRevision = revision;
+            myHandler = handler;
+        }
+
+        @Override
+        public void addFile(String path, String copyFromPath, long copyFromRevision) throws SVNException {
+            if (myWanted.contains(path)) {
+                myPath = path;
+                myProperties = new SVNProperties();
+                myChecksum = null;
+            }
+        }
+
+        @Override
+        public void changeFileProperty(String path, String name, SVNPropertyValue value) throws SVNException {
+            if (path.equals(myPath) && value != null) {
+                myProperties.put(name, value);
+            }
+        }
+
+        @Override
+        public void applyTextDelta(String path, String baseChecksum) throws SVNException {
+            OutputStream out = path.equals(myPath) ? myHandler.openFile(path, myRevision) : null;
+            /**
+             * textDeltaEnd 会关闭目标流, handler 的流由调用方关闭
+             */
+            myDeltaProcessor.applyTextDelta(SVNFileUtil.DUMMY_IN,
+                                            out == null ? SVNFileUtil.DUMMY_OUT : new CloseShieldOutputStream(out),
+                                            true);
+        }
+
+        @Override
+        public OutputStream textDeltaChunk(String path, SVNDiffWindow diffWindow) throws SVNException {
+            return myDeltaProcessor.textDeltaChunk(diffWindow);
+        }
+
+        @Override
+        public void textDeltaEnd(String path) throws SVNException {
+            String checksum = myDeltaProcessor.textDeltaEnd();
+            if (path.equals(myPath)) {
+                myChecksum = checksum;
+            }
+        }
+
+        @Override
+        public void closeFile(String path, String textChecksum) throws SVNException {
+            if (!path.equals(myPath)) {
+                return;
+            }
+            if (myChecksum == null) {
+                /**
+                 * 空文件没有 delta
+                 */
+                myHandler.openFile(path, myRevision);
+                myChecksum = EMPTY_CHECKSUM;
+            }
+            if (textChecksum != null && textChecksum.length() > 0 && !textChecksum.equals(myChecksum)) {
+                SVNErrorMessage err = SVNErrorMessage.create(SVNErrorCode.CHECKSUM_MISMATCH,
+                                                             "checksum mismatch for ''{0}'': expected {1}, actual {2}",
+                                                             path, textChecksum, myChecksum);
+                throw new SVNException(err);
+            }
+            myReceived.add(path);
+            myHandler.closeFile(path, myRevision, myProperties);
+            myPath = null;
+            myProperties = null;
+        }
+
+        @Override
+        public void targetRevision(long revision) throws SVNException {
+        }
+
+        @Override
+        public void openRoot(long revision) throws SVNException {
+        }
+
+        @Override
+        public void deleteEntry(String path, long revision) throws SVNException {
+        }
+
+        @Override
+        public void absentDir(String path) throws SVNException {
+        }
+
+        @Override
+        public void absentFile(String path) throws SVNException {
+        }
+
+        @Override
+        public void addDir(String path, String copyFromPath, long copyFromRevision) throws SVNException {
+        }
+
+        @Override
+        public void openDir(String path, long revision) throws SVNException {
+        }
+
+        @Override
+        public void changeDirProperty(String name, SVNPropertyValue value) throws SVNException {
+        }
+
+        @Override
+        public void closeDir() throws SVNException {
+        }
+
+        @Override
+        public void openFile(String path, long revision) throws SVNException {
+        }
+
+        @Override
+        public SVNCommitInfo closeEdit() throws SVNException {
+            return null;
+        }
+
+        @Override
+        public void abortEdit() throws SVNException {
+        }
+    }
+}
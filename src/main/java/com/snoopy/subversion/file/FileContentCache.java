@@ -0,0 +1,873 @@
+/**
+ * <pre>
+ * Copyright (C), 2026, 杭州共道科技
+ * FileName: FileContentCache
+ * Author:   LiHaiQing
+ * Date:     2026/10/19 20:40
+ * Description: 按校验和寻址、限制总大小的svn文件内容本地缓存
+ * History:
+ * <author>          <time>          <version>          <desc>
+ * 作者姓名           修改时间           版本号              描述
+ * </pre>
+ */
+package com.snoopy.subversion.file;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.tmatesoft.svn.core.SVNErrorCode;
+import org.tmatesoft.svn.core.SVNErrorMessage;
+import org.tmatesoft.svn.core.SVNException;
+import org.tmatesoft.svn.core.SVNProperties;
+import org.tmatesoft.svn.core.SVNProperty;
+import org.tmatesoft.svn.core.SVNPropertyValue;
+import org.tmatesoft.svn.core.internal.wc.SVNFileUtil;
+import org.tmatesoft.svn.core.io.SVNRepository;
+
+/**
+ * <pre>
+ * 已提交的文件内容不会变, 同一个文件在同一个版本(以及内容相同的其它路径、其它版本)反复读取时从本地返回.
+ *
+ * 内容按 svn 的 MD5 校验和(svn:entry:checksum)存成 directory/xx/校验和 文件, 读取时内存映射后
+ * 分块写给调用方, 不占用 Java 堆. 所有内容的总字节数超过 maxBytes 时按最近最少使用(LRU)删除.
+ * 另有一个 (仓库 UUID, 路径, 版本) -> (校验和, 文件属性) 的索引, 追加保存在 directory/index 中:
+ *
+ *  1. 索引命中且内容还在: 不访问服务器(版本为负数时要先问一次 HEAD)
+ *  2. 索引没有: 只取属性(服务器不发送内容), 按其中的校验和找内容, 内容相同的文件只下载一次
+ *  3. 内容不在: 下载到临时文件, 校验 MD5 后放入缓存
+ *
+ * 1 和 2 计为 hit, 3 计为 miss, LRU 删除计为 eviction.
+ * 内容被删除时指向它的索引项一起丢弃; 索引文件中作废的记录多于有效的记录时整个重写, 索引的大小随缓存的内容有界.
+ *
+ * 多个进程可以同时使用同一个缓存目录. 索引的读取、追加和重写都在 directory/cache.lock 的文件锁下进行,
+ * 追加时按路径打开索引文件, 另一个进程重写(改名替换)索引之后追加的记录也不会丢; 重写时按索引文件中的全部记录
+ * (包括其它进程追加的)保留内容还在的项. 临时文件超过一天没有改动才当作没删掉的残留清理.
+ *
+ * 提交方可以用 add 把刚提交的内容放进缓存, 下一次以它为 base 生成 delta 时不用再下载(见 BulkCommitBuilder).
+ *
+ *  FileContentCache cache = FileContentCache.open(FileContentCache.getDefaultDirectory(), 256L &lt;&lt; 20);
+ *  cache.read(repository, "trunk/config.xml", -1, properties, System.out);
+ *  InputStream base = cache.open(repository, "trunk/config.xml", revision, properties);
+ *  System.out.println(cache.getHitCount() + "/" + cache.getMissCount());
+ * </pre>
+ *
+ * @ClassName: FileContentCache.java
+ * @author: LiHaiQing
+ * @date: 2026/10/19 20:40
+ * @version V1.0.0
+ */
+public class FileContentCache implements Closeable {
+
+    private static Logger logger = LoggerFactory.getLogger(FileContentCache.class);
+
+    private static final byte[] MAGIC = "SVNFCC01".getBytes(StandardCharsets.US_ASCII);
+    /**
+     * 内存映射的分块大小, 超过 2G 的文件也能读
+     */
+    private static final long MAP_CHUNK_SIZE = 64L << 20;
+    private static final int COPY_BUFFER_SIZE = 64 * 1024;
+    /**
+     * 作废的索引记录超过这个数并且多于有效的记录时重写索引文件
+     */
+    private static final int COMPACT_THRESHOLD = 1024;
+    private static final String LOCK_FILE_NAME = "cache.lock";
+    /**
+     * 临时文件超过这个时间没有改动才认为是残留, 正在下载或等待提交的临时文件不会被删除
+     */
+    private static final long STALE_TEMP_AGE = 24L * 60 * 60 * 1000;
+
+    /**
+     * 缓存目录的绝对路径 -> 进程内的索引锁. 文件锁属于整个进程, 同一进程内的实例先在这里互斥
+     */
+    private static final Map<String, ReentrantLock> INDEX_LOCKS = new HashMap<String, ReentrantLock>();
+
+    private File myDirectory;
+    private long myMaxBytes;
+    private long myTotalBytes;
+    /**
+     * 校验和 -> 内容字节数, 按访问顺序排列, 第一个是最久没有用过的
+     */
+    private LinkedHashMap<String, Long> myContents = new LinkedHashMap<String, Long>(16, 0.75f, true);
+    private Map<String, IndexEntry> myIndex = new HashMap<String, IndexEntry>();
+    /**
+     * 校验和 -> 指向它的索引 key, 内容被删除时据此丢弃索引项
+     */
+    private Map<String, Set<String>> myIndexKeys = new HashMap<String, Set<String>>();
+    /**
+     * 索引文件中已经作废(内容被删除或被更新的记录覆盖)的记录数
+     */
+    private int myDeadRecords;
+    private ReentrantLock myIndexLock;
+
+    private AtomicLong myHits = new AtomicLong();
+    private AtomicLong myMisses = new AtomicLong();
+    private AtomicLong myEvictions = new AtomicLong();
+
+    private FileContentCache(File directory, long maxBytes){
+        myDirectory = directory;
+        myMaxBytes = maxBytes;
+        myIndexLock = getIndexLock(directory);
+    }
+
+    /**
+     * 默认缓存目录: ${user.home}/.svnkit/content-cache
+     */
+    public static File getDefaultDirectory() {
+        return new File(System.getProperty("user.home"), ".svnkit" + File.separator + "content-cache");
+    }
+
+    /**
+     * 打开(不存在则创建)缓存目录, 已有内容超过 maxBytes 时立即按最后访问时间删除.
+     * 所以用途不同、容量不同的缓存要用不同的目录(见 BulkCommitBuilder.getDefaultBaseCacheDirectory). <br>
+     */
+    public static FileContentCache open(File directory, long maxBytes) throws SVNException {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            SVNErrorMessage err = SVNErrorMessage.create(SVNErrorCode.IO_ERROR,
+                                                         "error: failed to create the content cache directory ''{0}''.",
+                                                         directory);
+            throw new SVNException(err);
+        }
+        FileContentCache cache = new FileContentCache(directory, maxBytes);
+        try {
+            cache.loadContents();
+            cache.loadIndex();
+        } catch (IOException e) {
+            cache.close();
+            SVNErrorMessage err = SVNErrorMessage.create(SVNErrorCode.IO_ERROR,
+                                                         "error: cannot open content cache ''{0}''", directory);
+            throw new SVNException(err, e);
+        }
+        synchronized (cache) {
+            cache.evict(0);
+        }
+        return cache;
+    }
+
+    public long getHitCount() {
+        return myHits.get();
+    }
+
+    public long getMissCount() {
+        return myMisses.get();
+    }
+
+    public long getEvictionCount() {
+        return myEvictions.get();
+    }
+
+    /**
+     * 当前缓存内容的总字节数
+     */
+    public synchronized long getTotalBytes() {
+        return myTotalBytes;
+    }
+
+    /**
+     * 读取 path(相对于 repository 的位置) 在 revision(负数为 HEAD) 的内容写到 out, out 不会被关闭;
+     * properties 不为 null 时同时填入文件属性. <br>
+     *
+     * @return 写出的字节数
+     */
+    public long read(SVNRepository repository, String path, long revision, SVNProperties properties,
+                     OutputStream out) throws SVNException {
+        IndexEntry entry = lookup(repository, path, revision);
+        if (properties != null) {
+            properties.putAll(entry.myProperties);
+        }
+        long count = copy(entry.myChecksum, out);
+        if (count < 0) {
+            count = copy(lookup(repository, path, revision).myChecksum, out);
+        }
+        return count;
+    }
+
+    /**
+     * 同 SvnFileReader.read(path, revision, handler): 内容开始写出前把属性交给 handler. <br>
+     *
+     * @return 写出的字节数, handler 返回 null 时为 0
+     */
+    public long read(SVNRepository repository, String path, long revision, FileContentHandler handler)
+                                                                                                       throws SVNException {
+        IndexEntry entry = lookup(repository, path, revision);
+        OutputStream out = handler.handleProperties(path, entry.myRevision, new SVNProperties(entry.myProperties));
+        if (out == null) {
+            return 0;
+        }
+        long count = copy(entry.myChecksum, out);
+        if (count < 0) {
+            count = copy(lookup(repository, path, revision).myChecksum, out);
+        }
+        return count;
+    }
+
+    /**
+     * 打开 path 在 revision(负数为 HEAD) 的内容, properties 不为 null 时同时填入文件属性.
+     * 打开之后内容文件被 LRU 删除也不影响读取. <br>
+     */
+    public InputStream open(SVNRepository repository, String path, long revision, SVNProperties properties)
+                                                                                                         throws SVNException {
+        return open(repository, path, revision, -1, properties);
+    }
+
+    /**
+     * <pre>
+     * 同 open(repository, path, revision, properties), 缓存没有时从 fetchRevision(负数同 revision) 下载.
+     * revision 一般是文件最后修改的版本, 用作缓存的 key; 文件所在的目录在那之后被复制过时, path 在 revision
+     * 还不存在, 这时用 path 存在、内容相同的任何一个之后的版本(比如提交开始时的版本)下载.
+     * </pre>
+     */
+    public InputStream open(SVNRepository repository, String path, long revision, long fetchRevision,
+                            SVNProperties properties) throws SVNException {
+        IndexEntry entry = lookup(repository, path, revision, fetchRevision);
+        InputStream in = openContent(entry.myChecksum);
+        if (in == null) {
+            entry = lookup(repository, path, revision, fetchRevision);
+            in = openContent(entry.myChecksum);
+        }
+        if (in == null) {
+            SVNErrorMessage err = SVNErrorMessage.create(SVNErrorCode.IO_ERROR,
+                                                         "error: cannot read ''{0}'' from the content cache", path);
+            throw new SVNException(err);
+        }
+        if (properties != null) {
+            properties.putAll(entry.myProperties);
+        }
+        return in;
+    }
+
+    /**
+     * 按校验和打开已缓存的内容, 不在缓存中时返回 null, 不访问服务器. <br>
+     */
+    public InputStream open(String checksum) {
+        synchronized (this) {
+            if (!touch(checksum)) {
+                return null;
+            }
+        }
+        InputStream in = openContent(checksum);
+        if (in != null) {
+            myHits.incrementAndGet();
+        }
+        return in;
+    }
+
+    /**
+     * 在缓存目录中创建一个临时文件, 写入内容后交给 add; 不用时由调用方删除. <br>
+     */
+    public File createTempFile() throws SVNException {
+        File parent = new File(myDirectory, "tmp");
+        try {
+            if (!parent.isDirectory() && !parent.mkdirs()) {
+                throw new IOException("failed to create " + parent);
+            }
+            return File.createTempFile("content", ".tmp", parent);
+        } catch (IOException e) {
+            SVNErrorMessage err = SVNErrorMessage.create(SVNErrorCode.IO_ERROR,
+                                                         "error: cannot create a temporary file in ''{0}''", parent);
+            throw new SVNException(err, e);
+        }
+    }
+
+    /**
+     * 把已知的内容放入缓存, 一般是刚提交的文件: contents 是 createTempFile 创建的文件, 它的 MD5 必须是
+     * properties 中的 svn:entry:checksum, 放入后被改名或删除. 以后读取 path 在 revision 的内容不再访问服务器. <br>
+     */
+    public void add(SVNRepository repository, String path, long revision, File contents, SVNProperties properties)
+                                                                                                                 throws SVNException {
+        String checksum = properties.getStringValue(SVNProperty.CHECKSUM);
+        IndexEntry entry = new IndexEntry(getKey(repository, path, revision), revision, checksum,
+                                          new SVNProperties(properties));
+        File target = getContentFile(checksum);
+        synchronized (this) {
+            if (touch(checksum)) {
+                SVNFileUtil.deleteFile(contents);
+            } else {
+                File parent = target.getParentFile();
+                if ((!parent.isDirectory() && !parent.mkdirs()) || !contents.renameTo(target)) {
+                    SVNFileUtil.deleteFile(contents);
+                    SVNErrorMessage err = SVNErrorMessage.create(SVNErrorCode.IO_ERROR,
+                                                                 "error: cannot store ''{0}'' in the content cache",
+                                                                 path);
+                    throw new SVNException(err);
+                }
+                myContents.put(checksum, target.length());
+                myTotalBytes += target.length();
+                evict(target.length());
+            }
+            addIndexEntry(entry);
+        }
+    }
+
+    /**
+     * 索引文件只在追加和重写时打开, 没有一直占用的资源
+     */
+    @Override
+    public void close() {
+    }
+
+    /**
+     * 找到(必要时下载)内容; 返回后内容文件仍可能被并发的放入操作按 LRU 删除, 见 copy
+     */
+    private IndexEntry lookup(SVNRepository repository, String path, long revision) throws SVNException {
+        return lookup(repository, path, revision, -1);
+    }
+
+    /**
+     * revision 用作 key, 缓存没有时按 fetchRevision(负数同 revision) 取属性和内容
+     */
+    private IndexEntry lookup(SVNRepository repository, String path, long revision, long fetchRevision)
+                                                                                                     throws SVNException {
+        if (revision < 0) {
+            revision = repository.getLatestRevision();
+        }
+        if (fetchRevision < 0) {
+            fetchRevision = revision;
+        }
+        String key = getKey(repository, path, revision);
+        synchronized (this) {
+            IndexEntry entry = myIndex.get(key);
+            if (entry != null && touch(entry.myChecksum)) {
+                myHits.incrementAndGet();
+                return entry;
+            }
+        }
+        SVNProperties properties = new SVNProperties();
+        repository.getFile(path, fetchRevision, properties, null);
+        String checksum = properties.getStringValue(SVNProperty.CHECKSUM);
+        if (checksum == null) {
+            SVNErrorMessage err = SVNErrorMessage.create(SVNErrorCode.IO_ERROR, "error: no checksum for ''{0}''",
+                                                         path);
+            throw new SVNException(err);
+        }
+        IndexEntry entry = new IndexEntry(key, revision, checksum, properties);
+        synchronized (this) {
+            if (touch(checksum)) {
+                myHits.incrementAndGet();
+                addIndexEntry(entry);
+                return entry;
+            }
+        }
+        myMisses.incrementAndGet();
+        download(repository, path, fetchRevision, checksum);
+        synchronized (this) {
+            addIndexEntry(entry);
+        }
+        return entry;
+    }
+
+    /**
+     * 把内容下载到临时文件, 校验通过后改名为内容文件
+     */
+    private void download(SVNRepository repository, String path, long revision, String checksum) throws SVNException {
+        File target = getContentFile(checksum);
+        File temp = null;
+        try {
+            File parent = target.getParentFile();
+            if (!parent.isDirectory() && !parent.mkdirs()) {
+                throw new IOException("failed to create " + parent);
+            }
+            temp = File.createTempFile(checksum, ".tmp", parent);
+            MessageDigest digest = MessageDigest.getInstance("MD5");
+            OutputStream out = new DigestOutputStream(new BufferedOutputStream(new FileOutputStream(temp),
+                                                                               COPY_BUFFER_SIZE), digest);
+            try {
+                repository.getFile(path, revision, null, out);
+            } finally {
+                out.close();
+            }
+            String actual = SVNFileUtil.toHexDigest(digest);
+            if (!checksum.equals(actual)) {
+                SVNErrorMessage err = SVNErrorMessage.create(SVNErrorCode.CHECKSUM_MISMATCH,
+                                                             "checksum mismatch for ''{0}'': expected {1}, actual {2}",
+                                                             path, checksum, actual);
+                throw new SVNException(err);
+            }
+            synchronized (this) {
+                if (!myContents.containsKey(checksum)) {
+                    if (!temp.renameTo(target)) {
+                        throw new IOException("failed to rename " + temp + " to " + target);
+                    }
+                    temp = null;
+                    myContents.put(checksum, target.length());
+                    myTotalBytes += target.length();
+                    evict(target.length());
+                }
+            }
+        } catch (IOException e) {
+            SVNErrorMessage err = SVNErrorMessage.create(SVNErrorCode.IO_ERROR,
+                                                         "error: cannot store ''{0}'' in the content cache", path);
+            throw new SVNException(err, e);
+        } catch (NoSuchAlgorithmException e) {
+            SVNErrorMessage err = SVNErrorMessage.create(SVNErrorCode.IO_ERROR, "error: MD5 is not available");
+            throw new SVNException(err, e);
+        } finally {
+            if (temp != null && !temp.delete()) {
+                logger.warn("failed to delete {}", temp);
+            }
+        }
+    }
+
+    /**
+     * 内存映射内容文件, 分块写到 out. 内容文件在读的过程中被 LRU 删除不影响已经打开的读取;
+     * 在 lookup 之后、打开之前就被删除时什么都不写, 返回 -1, 由调用方重新 lookup.
+     */
+    private long copy(String checksum, OutputStream out) throws SVNException {
+        File file = getContentFile(checksum);
+        RandomAccessFile raf = null;
+        try {
+            try {
+                raf = new RandomAccessFile(file, "r");
+            } catch (FileNotFoundException e) {
+                return -1;
+            }
+            FileChannel channel = raf.getChannel();
+            long size = channel.size();
+            byte[] buffer = new byte[(int) Math.min(COPY_BUFFER_SIZE, Math.max(size, 1))];
+            for (long position = 0; position < size; position += MAP_CHUNK_SIZE) {
+                MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, position,
+                                                      Math.min(MAP_CHUNK_SIZE, size - position));
+                while (mapped.hasRemaining()) {
+                    int length = Math.min(buffer.length, mapped.remaining());
+                    mapped.get(buffer, 0, length);
+                    out.write(buffer, 0, length);
+                }
+            }
+            return size;
+        } catch (IOException e) {
+            SVNErrorMessage err = SVNErrorMessage.create(SVNErrorCode.IO_ERROR,
+                                                         "error: cannot read ''{0}'' from the content cache", file);
+            throw new SVNException(err, e);
+        } finally {
+            if (raf != null) {
+                try {
+                    raf.close();
+                } catch (IOException e) {
+                    logger.warn("failed to close {}", file, e);
+                }
+            }
+        }
+    }
+
+    /**
+     * 打开内容文件, 已被 LRU 删除时返回 null
+     */
+    private InputStream openContent(String checksum) {
+        try {
+            return new FileInputStream(getContentFile(checksum));
+        } catch (FileNotFoundException e) {
+            return null;
+        }
+    }
+
+    private static String getKey(SVNRepository repository, String path, long revision) throws SVNException {
+        return repository.getRepositoryUUID(true) + ":" + revision + ":" + repository.getRepositoryPath(path);
+    }
+
+    /**
+     * 内容存在时更新 LRU 顺序和文件时间(重新打开缓存时按它恢复顺序)
+     */
+    private boolean touch(String checksum) {
+        if (myContents.get(checksum) == null) {
+            return false;
+        }
+        File file = getContentFile(checksum);
+        if (!file.isFile()) {
+            myTotalBytes -= myContents.remove(checksum);
+            removeIndexEntries(checksum);
+            return false;
+        }
+        file.setLastModified(System.currentTimeMillis());
+        return true;
+    }
+
+    /**
+     * 删除最久没有用过的内容直到总大小不超过 maxBytes; 刚放入的 keepBytes 大小的内容
+     * (在 LRU 顺序的最后) 即使本身超过 maxBytes 也保留到下一次放入.
+     */
+    private void evict(long keepBytes) {
+        Iterator<Map.Entry<String, Long>> iterator = myContents.entrySet().iterator();
+        while (myTotalBytes > myMaxBytes && myTotalBytes > keepBytes && iterator.hasNext()) {
+            Map.Entry<String, Long> eldest = iterator.next();
+            File file = getContentFile(eldest.getKey());
+            if (file.exists() && !file.delete()) {
+                logger.warn("failed to evict {}", file);
+                continue;
+            }
+            iterator.remove();
+            myTotalBytes -= eldest.getValue();
+            removeIndexEntries(eldest.getKey());
+            myEvictions.incrementAndGet();
+        }
+        if (myDeadRecords > COMPACT_THRESHOLD && myDeadRecords > myIndex.size()) {
+            compactIndex();
+        }
+    }
+
+    /**
+     * 丢弃指向已删除内容的索引项, 它们在索引文件中的记录作废
+     */
+    private void removeIndexEntries(String checksum) {
+        Set<String> keys = myIndexKeys.remove(checksum);
+        if (keys != null) {
+            for (String key : keys) {
+                myIndex.remove(key);
+            }
+            myDeadRecords += keys.size();
+        }
+    }
+
+    private void putIndexEntry(IndexEntry entry) {
+        IndexEntry previous = myIndex.put(entry.myKey, entry);
+        if (previous != null) {
+            Set<String> keys = myIndexKeys.get(previous.myChecksum);
+            if (keys != null) {
+                keys.remove(previous.myKey);
+            }
+            myDeadRecords++;
+        }
+        Set<String> keys = myIndexKeys.get(entry.myChecksum);
+        if (keys == null) {
+            keys = new HashSet<String>();
+            myIndexKeys.put(entry.myChecksum, keys);
+        }
+        keys.add(entry.myKey);
+    }
+
+    /**
+     * 在索引锁下把索引文件中内容还在的记录写进新文件再替换原文件; 失败时保留原文件, 只是没有变小
+     */
+    private void compactIndex() {
+        File indexFile = getIndexFile();
+        File compactFile = new File(myDirectory, "index.compact");
+        logger.debug("compacting {}: {} live, {} dead records", indexFile, myIndex.size(), myDeadRecords);
+        RandomAccessFile lock = null;
+        try {
+            lock = lockIndex();
+            /**
+             * 其它进程追加的记录不在 myIndex 中, 所以按文件中的全部记录重写, 同一个 key 以最后一条为准
+             */
+            List<IndexEntry> entries = readIndex(indexFile);
+            Map<String, IndexEntry> live = new LinkedHashMap<String, IndexEntry>();
+            for (IndexEntry entry : entries) {
+                live.remove(entry.myKey);
+                if (getContentFile(entry.myChecksum).isFile()) {
+                    live.put(entry.myKey, entry);
+                }
+            }
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(compactFile),
+                                                                                 COPY_BUFFER_SIZE));
+            try {
+                out.write(MAGIC);
+                for (IndexEntry entry : live.values()) {
+                    writeIndexRecord(out, entry);
+                }
+            } finally {
+                out.close();
+            }
+            SVNFileUtil.rename(compactFile, indexFile);
+            myDeadRecords = 0;
+        } catch (IOException e) {
+            logger.warn("failed to compact {}", indexFile, e);
+        } catch (SVNException e) {
+            logger.warn("failed to compact {}", indexFile, e);
+        } finally {
+            if (compactFile.exists() && !compactFile.delete()) {
+                logger.warn("failed to delete {}", compactFile);
+            }
+            if (lock != null) {
+                unlockIndex(lock);
+            }
+        }
+    }
+
+    /**
+     * 在索引锁下把一条记录追加到当前的索引文件; 写失败时截掉写了一半的部分
+     */
+    private void addIndexEntry(IndexEntry entry) throws SVNException {
+        if (myIndex.containsKey(entry.myKey)) {
+            return;
+        }
+        File indexFile = getIndexFile();
+        try {
+            ByteArrayOutputStream record = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(record);
+            writeIndexRecord(out, entry);
+            out.flush();
+            RandomAccessFile lock = lockIndex();
+            try {
+                RandomAccessFile index = new RandomAccessFile(indexFile, "rw");
+                try {
+                    long length = index.length();
+                    try {
+                        index.seek(length);
+                        index.write(record.toByteArray());
+                    } catch (IOException e) {
+                        index.setLength(length);
+                        throw e;
+                    }
+                } finally {
+                    index.close();
+                }
+            } finally {
+                unlockIndex(lock);
+            }
+        } catch (IOException e) {
+            SVNErrorMessage err = SVNErrorMessage.create(SVNErrorCode.IO_ERROR,
+                                                         "error: cannot append to content cache index ''{0}''",
+                                                         indexFile);
+            throw new SVNException(err, e);
+        }
+        putIndexEntry(entry);
+    }
+
+    private static ReentrantLock getIndexLock(File directory) {
+        String path = directory.getAbsolutePath();
+        synchronized (INDEX_LOCKS) {
+            ReentrantLock lock = INDEX_LOCKS.get(path);
+            if (lock == null) {
+                lock = new ReentrantLock();
+                INDEX_LOCKS.put(path, lock);
+            }
+            return lock;
+        }
+    }
+
+    /**
+     * 取得进程内的索引锁和 cache.lock 的文件锁, 返回的文件交给 unlockIndex 关闭.
+     * 锁文件只在持锁期间打开: 同一进程关闭这个文件的任何一个通道都会释放进程在它上面的文件锁.
+     */
+    private RandomAccessFile lockIndex() throws IOException {
+        myIndexLock.lock();
+        RandomAccessFile lockFile = null;
+        try {
+            lockFile = new RandomAccessFile(new File(myDirectory, LOCK_FILE_NAME), "rw");
+            lockFile.getChannel().lock();
+            return lockFile;
+        } catch (IOException e) {
+            SVNFileUtil.closeFile(lockFile);
+            myIndexLock.unlock();
+            throw e;
+        }
+    }
+
+    private void unlockIndex(RandomAccessFile lockFile) {
+        try {
+            lockFile.close();
+        } catch (IOException e) {
+            logger.warn("failed to unlock {}", myDirectory, e);
+        } finally {
+            myIndexLock.unlock();
+        }
+    }
+
+    private static void writeIndexRecord(DataOutputStream indexOut, IndexEntry entry) throws IOException {
+        ByteArrayOutputStream record = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(record);
+        out.writeUTF(entry.myKey);
+        out.writeLong(entry.myRevision);
+        out.writeUTF(entry.myChecksum);
+        Map<String, byte[]> values = new LinkedHashMap<String, byte[]>();
+        for (String name : entry.myProperties.nameSet()) {
+            byte[] value = SVNPropertyValue.getPropertyAsBytes(entry.myProperties.getSVNPropertyValue(name));
+            if (value != null) {
+                values.put(name, value);
+            }
+        }
+        out.writeInt(values.size());
+        for (Map.Entry<String, byte[]> value : values.entrySet()) {
+            out.writeUTF(value.getKey());
+            out.writeInt(value.getValue().length);
+            out.write(value.getValue());
+        }
+        out.flush();
+        indexOut.writeInt(record.size());
+        record.writeTo(indexOut);
+    }
+
+    /**
+     * 扫描内容文件, 按最后修改时间恢复 LRU 顺序, 顺带清理残留的临时文件(包括 tmp 目录中的).
+     * 其它进程正在写的临时文件最近改动过, 不会被删除.
+     */
+    private void loadContents() {
+        File[] parents = myDirectory.listFiles();
+        if (parents == null) {
+            return;
+        }
+        long staleTime = System.currentTimeMillis() - STALE_TEMP_AGE;
+        Map<String, File> files = new HashMap<String, File>();
+        for (File parent : parents) {
+            File[] children = parent.isDirectory() ? parent.listFiles() : null;
+            if (children == null) {
+                continue;
+            }
+            for (File child : children) {
+                if (child.getName().endsWith(".tmp")) {
+                    if (child.lastModified() < staleTime && !child.delete()) {
+                        logger.warn("failed to delete {}", child);
+                    }
+                } else {
+                    files.put(child.getName(), child);
+                }
+            }
+        }
+        String[] checksums = files.keySet().toArray(new String[files.size()]);
+        final long[] times = new long[checksums.length];
+        Integer[] order = new Integer[checksums.length];
+        for (int i = 0; i < checksums.length; i++) {
+            times[i] = files.get(checksums[i]).lastModified();
+            order[i] = i;
+        }
+        Arrays.sort(order, new Comparator<Integer>() {
+
+            @Override
+            public int compare(Integer o1, Integer o2) {
+                return Long.compare(times[o1], times[o2]);
+            }
+        });
+        for (Integer i : order) {
+            long length = files.get(checksums[i]).length();
+            myContents.put(checksums[i], length);
+            myTotalBytes += length;
+        }
+    }
+
+    private void loadIndex() throws IOException {
+        List<IndexEntry> entries;
+        RandomAccessFile lock = lockIndex();
+        try {
+            entries = readIndex(getIndexFile());
+        } finally {
+            unlockIndex(lock);
+        }
+        for (IndexEntry entry : entries) {
+            /**
+             * 内容已经不在的记录不再载入
+             */
+            if (myContents.containsKey(entry.myChecksum)) {
+                putIndexEntry(entry);
+            } else {
+                myDeadRecords++;
+            }
+        }
+    }
+
+    /**
+     * 读取索引文件中的全部记录, 调用方持有索引锁. 文件不存在时创建; 结尾不完整的记录是写到一半退出的进程留下的, 截掉.
+     */
+    private List<IndexEntry> readIndex(File indexFile) throws IOException {
+        List<IndexEntry> entries = new ArrayList<IndexEntry>();
+        RandomAccessFile file = new RandomAccessFile(indexFile, "rw");
+        try {
+            FileChannel channel = file.getChannel();
+            if (channel.size() < MAGIC.length) {
+                channel.truncate(0);
+                channel.write(ByteBuffer.wrap(MAGIC), 0);
+            }
+            ByteBuffer magic = ByteBuffer.allocate(MAGIC.length);
+            channel.read(magic, 0);
+            if (!Arrays.equals(magic.array(), MAGIC)) {
+                throw new IOException("bad content cache index header: " + indexFile);
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            buffer.position(MAGIC.length);
+            long length = MAGIC.length;
+            while (buffer.remaining() >= 4) {
+                int recordLength = buffer.getInt();
+                if (recordLength < 0 || recordLength > buffer.remaining()) {
+                    break;
+                }
+                byte[] record = new byte[recordLength];
+                buffer.get(record);
+                IndexEntry entry = readIndexEntry(record);
+                if (entry == null) {
+                    break;
+                }
+                entries.add(entry);
+                length += 4 + recordLength;
+            }
+            if (length < channel.size()) {
+                logger.warn("truncating incomplete record at the end of {}", indexFile);
+                channel.truncate(length);
+            }
+        } finally {
+            file.close();
+        }
+        return entries;
+    }
+
+    private IndexEntry readIndexEntry(byte[] record) {
+        try {
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(record));
+            String key = in.readUTF();
+            long revision = in.readLong();
+            String checksum = in.readUTF();
+            int count = in.readInt();
+            SVNProperties properties = new SVNProperties();
+            for (int i = 0; i < count; i++) {
+                String name = in.readUTF();
+                byte[] value = new byte[in.readInt()];
+                in.readFully(value);
+                properties.put(name, SVNPropertyValue.create(name, value));
+            }
+            return new IndexEntry(key, revision, checksum, properties);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private File getIndexFile() {
+        return new File(myDirectory, "index");
+    }
+
+    private File getContentFile(String checksum) {
+        return new File(new File(myDirectory, checksum.substring(0, 2)), checksum);
+    }
+
+    private static class IndexEntry {
+
+        private String myKey;
+        private long myRevision;
+        private String myChecksum;
+        private SVNProperties myProperties;
+
+        IndexEntry(String key, long revision, String checksum, SVNProperties properties){
+            myKey = key;
+            myRevision = revision;
+            myChecksum = checksum;
+            myProperties = properties;
+        }
+    }
+}
@@ -0,0 +1,37 @@
+/**
+ * <pre>
+ * Copyright (C), 2026, 杭州共道科技
+ * FileName: FileContentHandler
+ * Author:   LiHaiQing
+ * Date:     2026/10/19 20:10
+ * Description: 在文件内容开始传输前拿到文件属性
+ * History:
+ * <author>          <time>          <version>          <desc>
+ * 作者姓名           修改时间           版本号              描述
+ * </pre>
+ */
+package com.snoopy.subversion.file;
+
+import java.io.OutputStream;
+
+import org.tmatesoft.svn.core.SVNException;
+import org.tmatesoft.svn.core.SVNProperties;
+
+/**
+ * <pre>
+ * SvnFileReader.read(path, revision, handler) 的回调: 属性到达后、第一个字节写出前调用一次,
+ * 由调用方根据属性(例如 svn:mime-type)决定内容写到哪里.
+ * </pre>
+ *
+ * @ClassName: FileContentHandler.java
+ * @author: LiHaiQing
+ * @date: 2026/10/19 20:10
+ * @version V1.0.0
+ */
+public interface FileContentHandler {
+
+    /**
+     * @return 接收文件内容的流, 读取结束后不会被关闭; 为 null 时内容被丢弃
+     */
+    OutputStream handleProperties(String path, long revision, SVNProperties properties) throws SVNException;
+}
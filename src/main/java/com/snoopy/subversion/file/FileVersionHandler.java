@@ -0,0 +1,43 @@
+/**
+ * <pre>
+ * Copyright (C), 2026, 杭州共道科技
+ * FileName: FileVersionHandler
+ * Author:   LiHaiQing
+ * Date:     2026/10/19 22:30
+ * Description: 逐个接收文件的历史版本
+ * History:
+ * <author>          <time>          <version>          <desc>
+ * 作者姓名           修改时间           版本号              描述
+ * </pre>
+ */
+package com.snoopy.subversion.file;
+
+import java.io.OutputStream;
+
+import org.tmatesoft.svn.core.SVNException;
+import org.tmatesoft.svn.core.io.SVNFileRevision;
+
+/**
+ * <pre>
+ * FileVersionReader 的回调, 每个内容有变化的版本按版本号从小到大调用一次 openVersion -> closeVersion.
+ * fileRevision 中有这个版本的路径(复制/改名之前是原来的路径)、版本属性和文件属性的变化.
+ * 回调发生在 getFileRevisions 的传输过程中, 不能再使用同一个 SVNRepository.
+ * </pre>
+ *
+ * @ClassName: FileVersionHandler.java
+ * @author: LiHaiQing
+ * @date: 2026/10/19 22:30
+ * @version V1.0.0
+ */
+public interface FileVersionHandler {
+
+    /**
+     * 版本内容开始传输, 返回接收完整内容的流(不会被关闭), 为 null 时不输出这个版本.
+     */
+    OutputStream openVersion(SVNFileRevision fileRevision) throws SVNException;
+
+    /**
+     * 版本内容传输完成, checksum 为完整内容的 MD5.
+     */
+    void closeVersion(SVNFileRevision fileRevision, String checksum) throws SVNException;
+}
@@ -0,0 +1,168 @@
+/**
+ * <pre>
+ * Copyright (C), 2026, 杭州共道科技
+ * FileName: FileVersionReader
+ * Author:   LiHaiQing
+ * Date:     2026/10/19 22:30
+ * Description: 按 delta 逐个还原文件的历史版本
+ * History:
+ * <author>          <time>          <version>          <desc>
+ * 作者姓名           修改时间           版本号              描述
+ * </pre>
+ */
+package com.snoopy.subversion.file;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import org.apache.commons.io.output.CloseShieldOutputStream;
+import org.apache.commons.io.output.DeferredFileOutputStream;
+import org.apache.commons.io.output.TeeOutputStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.tmatesoft.svn.core.SVNException;
+import org.tmatesoft.svn.core.internal.wc.SVNFileUtil;
+import org.tmatesoft.svn.core.io.ISVNFileRevisionHandler;
+import org.tmatesoft.svn.core.io.SVNFileRevision;
+import org.tmatesoft.svn.core.io.SVNRepository;
+import org.tmatesoft.svn.core.io.diff.SVNDeltaProcessor;
+import org.tmatesoft.svn.core.io.diff.SVNDiffWindow;
+
+/**
+ * <pre>
+ * 用一次 getFileRevisions 取得文件在版本区间内的全部版本: 服务器只发送第一个版本的全文,
+ * 之后每个版本都是相对上一个版本的 delta, 传输量约为各个 delta 之和, 而不是 N 份全文.
+ * 每个版本一边还原一边写到 handler 返回的流, 同时只保留上一个版本作为下一个 delta 的基准
+ * (不超过 4M 时在内存中, 更大的写到临时文件), 内存占用与版本数无关.
+ *
+ * 只有属性变化的版本内容与上一个版本相同, 不会交给 handler. 历史跟随复制/改名.
+ *
+ *  new FileVersionReader(repository).read("trunk/Foo.java", 0, -1, handler);
+ * </pre>
+ *
+ * @ClassName: FileVersionReader.java
+ * @author: LiHaiQing
+ * @date: 2026/10/19 22:30
+ * @version V1.0.0
+ */
+public class FileVersionReader {
+
+    private static Logger logger = LoggerFactory.getLogger(FileVersionReader.class);
+
+    /**
+     * 基准版本超过这个大小时写到临时文件
+     */
+    private static final int MEMORY_THRESHOLD = 4 << 20;
+
+    private SVNRepository myRepository;
+
+    public FileVersionReader(SVNRepository repository){
+        myRepository = repository;
+    }
+
+    /**
+     * 按版本号从小到大输出 path 在 startRevision 到 endRevision(负数为 HEAD) 之间的每个版本.
+     * 第一个版本是 startRevision 时的内容. <br>
+     *
+     * @return 交给 handler 的版本数
+     */
+    public long read(String path, long startRevision, long endRevision, FileVersionHandler handler)
+                                                                                                  throws SVNException {
+        if (endRevision < 0) {
+            endRevision = myRepository.getLatestRevision();
+        }
+        VersionBuilder builder = new VersionBuilder(handler);
+        try {
+            myRepository.getFileRevisions(path, startRevision, endRevision, builder);
+        } finally {
+            builder.dispose();
+        }
+        return builder.myCount;
+    }
+
+    /**
+     * 在上一个版本上应用 delta, 同时写到下一个基准和 handler 的流
+     */
+    private static class VersionBuilder implements ISVNFileRevisionHandler {
+
+        private FileVersionHandler       myHandler;
+        private SVNFileRevision          myFileRevision;
+        private DeferredFileOutputStream myBase;
+        private DeferredFileOutputStream myTarget;
+        private SVNDeltaProcessor        myDeltaProcessor = new SVNDeltaProcessor();
+        private long                     myCount;
+
+        VersionBuilder(FileVersionHandler handler){
+            myHandler = handler;
+        }
+
+        @Override
+        public void openRevision(SVNFileRevision fileRevision) throws SVNException {
+            myFileRevision = fileRevision;
+        }
+
+        @Override
+        public void applyTextDelta(String path, String baseChecksum) throws SVNException {
+            OutputStream out = myHandler.openVersion(myFileRevision);
+            myTarget = new DeferredFileOutputStream(MEMORY_THRESHOLD, "svn-version", ".tmp", null);
+            /**
+             * textDeltaEnd 会关闭目标流, handler 的流由调用方关闭
+             */
+            OutputStream target = out == null ? myTarget
+                                              : new TeeOutputStream(myTarget, new CloseShieldOutputStream(out));
+            myDeltaProcessor.applyTextDelta(openBase(), target, true);
+        }
+
+        @Override
+        public OutputStream textDeltaChunk(String path, SVNDiffWindow diffWindow) throws SVNException {
+            return myDeltaProcessor.textDeltaChunk(diffWindow);
+        }
+
+        @Override
+        public void textDeltaEnd(String path) throws SVNException {
+            String checksum = myDeltaProcessor.textDeltaEnd();
+            delete(myBase);
+            myBase = myTarget;
+            myTarget = null;
+            myCount++;
+            myHandler.closeVersion(myFileRevision, checksum);
+        }
+
+        @Override
+        public void closeRevision(String token) throws SVNException {
+        }
+
+        private InputStream openBase() throws SVNException {
+            if (myBase == null) {
+                return SVNFileUtil.DUMMY_IN;
+            }
+            if (myBase.isInMemory()) {
+                return new ByteArrayInputStream(myBase.getData());
+            }
+            return SVNFileUtil.openFileForReading(myBase.getFile());
+        }
+
+        void dispose() {
+            if (myTarget != null) {
+                try {
+                    myTarget.close();
+                } catch (IOException e) {
+                    logger.warn("failed to close {}", myTarget.getFile(), e);
+                }
+            }
+            delete(myTarget);
+            delete(myBase);
+            myTarget = null;
+            myBase = null;
+        }
+
+        private static void delete(DeferredFileOutputStream version) {
+            if (version != null && !version.isInMemory() && version.getFile() != null
+                && version.getFile().exists() && !version.getFile().delete()) {
+                logger.warn("failed to delete {}", version.getFile());
+            }
+        }
+    }
+}
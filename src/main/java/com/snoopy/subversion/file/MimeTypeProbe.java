@@ -0,0 +1,444 @@
+/**
+ * <pre>
+ * Copyright (C), 2026, 杭州共道科技
+ * FileName: MimeTypeProbe
+ * Author:   LiHaiQing
+ * Date:     2026/10/19 21:40
+ * Description: 不下载整个文件判断svn文件是文本还是二进制
+ * History:
+ * <author>          <time>          <version>          <desc>
+ * 作者姓名           修改时间           版本号              描述
+ * </pre>
+ */
+package com.snoopy.subversion.file;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import org.apache.commons.io.output.TeeOutputStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.tmatesoft.svn.core.SVNErrorCode;
+import org.tmatesoft.svn.core.SVNErrorMessage;
+import org.tmatesoft.svn.core.SVNException;
+import org.tmatesoft.svn.core.SVNProperties;
+import org.tmatesoft.svn.core.SVNProperty;
+import org.tmatesoft.svn.core.internal.wc.SVNFileUtil;
+import org.tmatesoft.svn.core.io.SVNRepository;
+
+/**
+ * <pre>
+ * 先只取文件属性(服务器不发送内容), 有 svn:mime-type 时按它判断;
+ * 没有时只读取内容的前 sniffSize 个字节, 用与 svn add 相同的规则(SVNFileUtil.detectMimeType)判断.
+ * 够了之后中断传输, 大的二进制文件不会为了知道不能显示而被完整下载.
+ *
+ * 中断的 getFile 可能让 svn:// 和 http:// 连接停在半个响应上, 所以中断后会关闭会话,
+ * repository 下次使用时自动重新连接.
+ *
+ * 要显示文本内容时用 probe(path, revision, handler): 判断为文本后不中断传输, 已读到的开头和剩下的内容
+ * 一起写给 handler 返回的流, 文件只下载一次, 会话也不用关闭; 只有二进制文件(或 handler 返回 null)才中断.
+ * 设置了 FileContentCache 时, 缓存中已有的内容(按属性中的校验和)直接从本地读, 下载的文本内容也放进缓存.
+ *
+ *  MimeTypeProbe probe = new MimeTypeProbe(repository);
+ *  probe.setContentCache(cache);
+ *  MimeTypeProbe.Result result = probe.probe("trunk/README", -1, new FileContentHandler() {
+ *      public OutputStream handleProperties(String path, long revision, SVNProperties properties) {
+ *          return System.out;
+ *      }
+ *  });
+ * </pre>
+ *
+ * @ClassName: MimeTypeProbe.java
+ * @author: LiHaiQing
+ * @date: 2026/10/19 21:40
+ * @version V1.0.0
+ */
+public class MimeTypeProbe {
+
+    private static Logger logger = LoggerFactory.getLogger(MimeTypeProbe.class);
+
+    /**
+     * 默认读取的内容长度
+     */
+    public static final int DEFAULT_SNIFF_SIZE = 4096;
+    private static final int COPY_BUFFER_SIZE = 64 * 1024;
+
+    private SVNRepository myRepository;
+    private int mySniffSize;
+    private FileContentCache myContentCache;
+
+    public MimeTypeProbe(SVNRepository repository){
+        this(repository, DEFAULT_SNIFF_SIZE);
+    }
+
+    public MimeTypeProbe(SVNRepository repository, int sniffSize){
+        myRepository = repository;
+        mySniffSize = sniffSize;
+    }
+
+    /**
+     * probe(path, revision, handler) 先在缓存中按校验和找内容, 下载的文本内容也放进缓存 <br>
+     */
+    public void setContentCache(FileContentCache cache) {
+        myContentCache = cache;
+    }
+
+    /**
+     * 判断 path 在 revision(负数为 HEAD) 是否为文本文件. 需要读内容判断时读完开头就中断并关闭会话. <br>
+     */
+    public Result probe(String path, long revision) throws SVNException {
+        return probe(path, revision, null);
+    }
+
+    /**
+     * 判断 path 在 revision(负数为 HEAD) 是否为文本文件; 是文本时把属性交给 handler,
+     * 内容写到它返回的流(不关闭). 读内容判断的文件只下载一次. handler 为 null 同 probe(path, revision). <br>
+     */
+    public Result probe(String path, long revision, FileContentHandler handler) throws SVNException {
+        SVNProperties properties = new SVNProperties();
+        revision = myRepository.getFile(path, revision, properties, null);
+        String mimeType = properties.getStringValue(SVNProperty.MIME_TYPE);
+        String checksum = properties.getStringValue(SVNProperty.CHECKSUM);
+        InputStream cached = myContentCache == null || checksum == null ? null : myContentCache.open(checksum);
+        if (cached != null) {
+            try {
+                return probeCached(path, revision, properties, mimeType, cached, handler);
+            } finally {
+                SVNFileUtil.closeFile(cached);
+            }
+        }
+        if (mimeType != null) {
+            Result result = new Result(revision, properties, mimeType, false);
+            if (result.isText() && handler != null) {
+                OutputStream out = handler.handleProperties(path, revision, new SVNProperties(properties));
+                if (out != null) {
+                    download(path, revision, properties, out);
+                }
+            }
+            return result;
+        }
+        SniffingOutputStream sniffer = new SniffingOutputStream(path, revision, properties, handler);
+        try {
+            try {
+                myRepository.getFile(path, revision, null, sniffer);
+                sniffer.finish();
+            } catch (SVNException svne) {
+                if (sniffer.myFailure != null) {
+                    throw sniffer.myFailure;
+                }
+                if (!sniffer.isStopped()) {
+                    throw svne;
+                }
+                /**
+                 * 中断的传输可能在连接上留下未读完的响应
+                 */
+                myRepository.closeSession();
+            }
+            sniffer.commit(myRepository);
+        } finally {
+            sniffer.discard();
+        }
+        return new Result(revision, properties, sniffer.myMimeType, true);
+    }
+
+    /**
+     * 内容已在缓存中: 不访问服务器, 从本地文件推测类型并写出
+     */
+    private Result probeCached(String path, long revision, SVNProperties properties, String mimeType,
+                               InputStream cached, FileContentHandler handler) throws SVNException {
+        try {
+            byte[] head = new byte[mySniffSize];
+            int count = 0;
+            boolean sniffed = mimeType == null;
+            if (sniffed) {
+                for (int read; count < head.length && (read = cached.read(head, count, head.length - count)) > 0;) {
+                    count += read;
+                }
+                mimeType = detect(path, head, count);
+            }
+            Result result = new Result(revision, properties, mimeType, sniffed);
+            if (result.isText() && handler != null) {
+                OutputStream out = handler.handleProperties(path, revision, new SVNProperties(properties));
+                if (out != null) {
+                    out.write(head, 0, count);
+                    byte[] buffer = new byte[COPY_BUFFER_SIZE];
+                    for (int read; (read = cached.read(buffer)) > 0;) {
+                        out.write(buffer, 0, read);
+                    }
+                    out.flush();
+                }
+            }
+            return result;
+        } catch (IOException ioe) {
+            SVNErrorMessage err = SVNErrorMessage.create(SVNErrorCode.IO_ERROR,
+                                                         "error: cannot read ''{0}'' from the content cache", path);
+            throw new SVNException(err, ioe);
+        }
+    }
+
+    /**
+     * 完整下载到 out, 有缓存时同时写进缓存
+     */
+    private void download(String path, long revision, SVNProperties properties, OutputStream out)
+                                                                                                 throws SVNException {
+        File temp = myContentCache == null ? null : myContentCache.createTempFile();
+        OutputStream cacheOut = temp == null ? null : SVNFileUtil.openFileForWriting(temp);
+        try {
+            myRepository.getFile(path, revision, null, cacheOut == null ? out : new TeeOutputStream(out, cacheOut));
+            SVNFileUtil.closeFile(cacheOut);
+            cacheOut = null;
+            if (temp != null) {
+                myContentCache.add(myRepository, path, revision, temp, properties);
+                temp = null;
+            }
+        } finally {
+            SVNFileUtil.closeFile(cacheOut);
+            if (temp != null && !temp.delete()) {
+                logger.warn("failed to delete {}", temp);
+            }
+        }
+    }
+
+    /**
+     * 读取 path 在 revision 的前 sniffSize 个字节推测 mime-type, 中断传输后关闭会话. <br>
+     *
+     * @return 二进制文件为 application/octet-stream, 文本文件为 null
+     */
+    public String sniff(String path, long revision) throws SVNException {
+        HeadOutputStream head = new HeadOutputStream(mySniffSize);
+        try {
+            myRepository.getFile(path, revision, null, head);
+        } catch (SVNException svne) {
+            if (!head.isFull()) {
+                throw svne;
+            }
+            /**
+             * 中断的传输可能在连接上留下未读完的响应
+             */
+            myRepository.closeSession();
+        }
+        return detect(path, head.myBuffer, head.myCount);
+    }
+
+    private static String detect(String path, byte[] head, int count) throws SVNException {
+        try {
+            return SVNFileUtil.detectMimeType(new ByteArrayInputStream(head, 0, count));
+        } catch (IOException ioe) {
+            SVNErrorMessage err = SVNErrorMessage.create(SVNErrorCode.IO_ERROR,
+                                                         "error: detect mime-type of ''{0}''", path);
+            throw new SVNException(err, ioe);
+        }
+    }
+
+    /**
+     * 探测结果
+     */
+    public static class Result {
+
+        private long          myRevision;
+        private SVNProperties myProperties;
+        private String        myMimeType;
+        private boolean       mySniffed;
+
+        Result(long revision, SVNProperties properties, String mimeType, boolean sniffed){
+            myRevision = revision;
+            myProperties = properties;
+            myMimeType = mimeType;
+            mySniffed = sniffed;
+        }
+
+        /**
+         * 实际的版本号, 请求 HEAD 时按这个版本读取内容
+         */
+        public long getRevision() {
+            return myRevision;
+        }
+
+        public SVNProperties getProperties() {
+            return myProperties;
+        }
+
+        /**
+         * svn:mime-type 属性, 没有该属性时为推测值(文本为 null)
+         */
+        public String getMimeType() {
+            return myMimeType;
+        }
+
+        /**
+         * mime-type 是否为读取内容推测的
+         */
+        public boolean isSniffed() {
+            return mySniffed;
+        }
+
+        public boolean isText() {
+            return SVNProperty.isTextMimeType(myMimeType);
+        }
+    }
+
+    /**
+     * 先收 sniffSize 个字节推测类型: 二进制(或 handler 不要内容)时抛出异常中断传输;
+     * 文本时把收到的开头和之后的内容写给 handler 返回的流, 有缓存时同时写进缓存的临时文件
+     */
+    private class SniffingOutputStream extends OutputStream {
+
+        private String             myPath;
+        private long               myRevision;
+        private SVNProperties      myProperties;
+        private FileContentHandler myHandler;
+        private byte[]             myHead;
+        private int                myCount;
+        private boolean            myDecided;
+        private boolean            myStopped;
+        private String             myMimeType;
+        private OutputStream       myTarget;
+        private File               myTempFile;
+        private OutputStream       myTempOut;
+        /**
+         * handler 或缓存抛出的异常, 传输中只能以 IOException 抛出, 结束后原样抛给调用方
+         */
+        private SVNException       myFailure;
+
+        SniffingOutputStream(String path, long revision, SVNProperties properties, FileContentHandler handler){
+            myPath = path;
+            myRevision = revision;
+            myProperties = properties;
+            myHandler = handler;
+            myHead = new byte[mySniffSize];
+        }
+
+        boolean isStopped() {
+            return myStopped;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[] { (byte) b }, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (!myDecided) {
+                int length = Math.min(len, myHead.length - myCount);
+                System.arraycopy(b, off, myHead, myCount, length);
+                myCount += length;
+                off += length;
+                len -= length;
+                if (myCount < myHead.length) {
+                    return;
+                }
+                decide();
+            }
+            if (len > 0) {
+                myTarget.write(b, off, len);
+            }
+        }
+
+        /**
+         * 传输正常结束, 文件比 sniffSize 短时在这里推测
+         */
+        void finish() throws SVNException {
+            if (!myDecided) {
+                try {
+                    decide();
+                } catch (IOException e) {
+                    if (myFailure != null) {
+                        throw myFailure;
+                    }
+                }
+            }
+            try {
+                if (myTarget != null) {
+                    myTarget.flush();
+                }
+            } catch (IOException e) {
+                SVNErrorMessage err = SVNErrorMessage.create(SVNErrorCode.IO_ERROR, "error: cannot write ''{0}''",
+                                                             myPath);
+                throw new SVNException(err, e);
+            }
+        }
+
+        /**
+         * 完整读到的文本内容放进缓存
+         */
+        void commit(SVNRepository repository) throws SVNException {
+            if (myStopped || myTempFile == null) {
+                return;
+            }
+            SVNFileUtil.closeFile(myTempOut);
+            myTempOut = null;
+            myContentCache.add(repository, myPath, myRevision, myTempFile, myProperties);
+            myTempFile = null;
+        }
+
+        void discard() {
+            SVNFileUtil.closeFile(myTempOut);
+            if (myTempFile != null && !myTempFile.delete()) {
+                logger.warn("failed to delete {}", myTempFile);
+            }
+        }
+
+        private void decide() throws IOException {
+            myDecided = true;
+            try {
+                myMimeType = detect(myPath, myHead, myCount);
+                OutputStream out = null;
+                if (SVNProperty.isTextMimeType(myMimeType) && myHandler != null) {
+                    out = myHandler.handleProperties(myPath, myRevision, new SVNProperties(myProperties));
+                }
+                if (out == null) {
+                    myStopped = true;
+                    throw new IOException("sniffed " + myPath + ", transfer stopped");
+                }
+                if (myContentCache != null) {
+                    myTempFile = myContentCache.createTempFile();
+                    myTempOut = SVNFileUtil.openFileForWriting(myTempFile);
+                    out = new TeeOutputStream(out, myTempOut);
+                }
+                myTarget = out;
+            } catch (SVNException e) {
+                myFailure = e;
+                throw new IOException(e);
+            }
+            myTarget.write(myHead, 0, myCount);
+        }
+    }
+
+    /**
+     * 收满后抛出异常中断传输
+     */
+    private static class HeadOutputStream extends OutputStream {
+
+        private byte[] myBuffer;
+        private int    myCount;
+        private boolean myFull;
+
+        HeadOutputStream(int size){
+            myBuffer = new byte[size];
+        }
+
+        boolean isFull() {
+            return myFull;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[] { (byte) b }, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            int length = Math.min(len, myBuffer.length - myCount);
+            System.arraycopy(b, off, myBuffer, myCount, length);
+            myCount += length;
+            if (myCount == myBuffer.length) {
+                myFull = true;
+                throw new IOException("sniff buffer is full");
+            }
+        }
+    }
+}
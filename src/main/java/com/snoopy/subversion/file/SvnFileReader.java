@@ -0,0 +1,148 @@
+/**
+ * <pre>
+ * Copyright (C), 2026, 杭州共道科技
+ * FileName: SvnFileReader
+ * Author:   LiHaiQing
+ * Date:     2026/10/19 20:10
+ * Description: 流式读取svn文件内容
+ * History:
+ * <author>          <time>          <version>          <desc>
+ * 作者姓名           修改时间           版本号              描述
+ * </pre>
+ */
+package com.snoopy.subversion.file;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+
+import org.tmatesoft.svn.core.SVNException;
+import org.tmatesoft.svn.core.SVNProperties;
+import org.tmatesoft.svn.core.io.SVNRepository;
+
+/**
+ * <pre>
+ * 把 SVNRepository.getFile 的内容直接写到调用方的 OutputStream 或 WritableByteChannel(例如 FileChannel),
+ * 不经过 ByteArrayOutputStream, 内存占用与文件大小无关, 只有 SVNKit 自身的传输缓冲区.
+ *
+ * 需要根据属性决定怎么处理内容时使用 FileContentHandler, handler 在内容开始传输前拿到属性.
+ * 不能指望一次 getFile 先填属性再写内容(file:// 的实现就是先写内容), 所以属性先单独取一次,
+ * 服务器不会为此发送内容.
+ *
+ *  SvnFileReader reader = new SvnFileReader(repository);
+ *  FileChannel channel = new FileOutputStream(target).getChannel();
+ *  reader.read("trunk/big.zip", -1, channel);
+ * </pre>
+ *
+ * @ClassName: SvnFileReader.java
+ * @author: LiHaiQing
+ * @date: 2026/10/19 20:10
+ * @version V1.0.0
+ */
+public class SvnFileReader {
+
+    private SVNRepository myRepository;
+
+    public SvnFileReader(SVNRepository repository){
+        myRepository = repository;
+    }
+
+    /**
+     * 把 path 在 revision(负数为 HEAD) 的内容写到 out, out 不会被关闭. <br>
+     *
+     * @return 写出的字节数
+     */
+    public long read(String path, long revision, OutputStream out) throws SVNException {
+        return read(path, revision, null, out);
+    }
+
+    /**
+     * 同 read(path, revision, out), properties 不为 null 时同时取回文件属性. <br>
+     *
+     * @return 写出的字节数
+     */
+    public long read(String path, long revision, SVNProperties properties, OutputStream out) throws SVNException {
+        CountingOutputStream counter = new CountingOutputStream(out);
+        myRepository.getFile(path, revision, properties, counter);
+        return counter.myCount;
+    }
+
+    /**
+     * 把 path 在 revision 的内容写到 channel, channel 不会被关闭. <br>
+     *
+     * @return 写出的字节数
+     */
+    public long read(String path, long revision, WritableByteChannel channel) throws SVNException {
+        return read(path, revision, null, new ChannelOutputStream(channel));
+    }
+
+    /**
+     * 读取 path 在 revision 的属性和内容, 内容开始传输前调用 handler.handleProperties,
+     * 内容写到它返回的流. 先单独取属性(服务器不发送内容), 再按取属性时确定的版本取内容,
+     * 所以 revision 为负数时两次读到的也是同一个版本. <br>
+     *
+     * @return 写出的字节数, handler 返回 null 时为 0
+     */
+    public long read(String path, long revision, FileContentHandler handler) throws SVNException {
+        SVNProperties properties = new SVNProperties();
+        revision = myRepository.getFile(path, revision, properties, null);
+        OutputStream out = handler.handleProperties(path, revision, properties);
+        if (out == null) {
+            return 0;
+        }
+        return read(path, revision, null, out);
+    }
+
+    private static class CountingOutputStream extends OutputStream {
+
+        private OutputStream myOut;
+        private long myCount;
+
+        CountingOutputStream(OutputStream out){
+            myOut = out;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            myOut.write(b);
+            myCount++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            myOut.write(b, off, len);
+            myCount += len;
+        }
+
+        @Override
+        public void flush() throws IOException {
+            myOut.flush();
+        }
+    }
+
+    /**
+     * 写到 channel, 不复制数据
+     */
+    private static class ChannelOutputStream extends OutputStream {
+
+        private WritableByteChannel myChannel;
+
+        ChannelOutputStream(WritableByteChannel channel){
+            myChannel = channel;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[] { (byte) b }, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            ByteBuffer buffer = ByteBuffer.wrap(b, off, len);
+            while (buffer.hasRemaining()) {
+                myChannel.write(buffer);
+            }
+        }
+    }
+}
@@ -8,11 +8,14 @@
 package com.snoopy.subversion.handler;
 
 import org.tmatesoft.svn.core.SVNCancelException;
+import org.tmatesoft.svn.core.SVNException;
 import org.tmatesoft.svn.core.SVNProperty;
 import org.tmatesoft.svn.core.wc.ISVNEventHandler;
 import org.tmatesoft.svn.core.wc.SVNEvent;
 import org.tmatesoft.svn.core.wc.SVNEventAction;
 
+import com.snoopy.subversion.output.OutputSink;
+
 /*
 
  */
@@ -38,11 +41,27 @@ import org.tmatesoft.svn.core.wc.SVNEventAction;
  */
 public class CommitEventHandler implements ISVNEventHandler {
 
+    private OutputSink mySink;
+
+    public CommitEventHandler(){
+    }
+
+    /**
+     * Events are written to sink (see OutputSinks) instead of System.out
+     */
+    public CommitEventHandler(OutputSink sink){
+        mySink = sink;
+    }
+
     /**
      * progress is currently reserved for future purposes and now is always ISVNEventHandler.UNKNOWN
      */
     @Override
-    public void handleEvent(SVNEvent event, double progress) {
+    public void handleEvent(SVNEvent event, double progress) throws SVNException {
+        if (mySink != null) {
+            mySink.writeEvent(event);
+            return;
+        }
         /*
          * Gets the current action. An action is represented by SVNEventAction. In case of a commit an action can be
          * determined via comparing SVNEvent.getAction() with SVNEventAction.COMMIT_-like constants.
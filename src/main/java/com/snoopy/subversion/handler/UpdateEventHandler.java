@@ -8,11 +8,14 @@
 package com.snoopy.subversion.handler;
 
 import org.tmatesoft.svn.core.SVNCancelException;
+import org.tmatesoft.svn.core.SVNException;
 import org.tmatesoft.svn.core.wc.ISVNEventHandler;
 import org.tmatesoft.svn.core.wc.SVNEvent;
 import org.tmatesoft.svn.core.wc.SVNStatusType;
 import org.tmatesoft.svn.core.wc.SVNEventAction;
 
+import com.snoopy.subversion.output.OutputSink;
+
 /**
  * <pre>
  * This class is an implementation of ISVNEventHandler intended for  processing   
@@ -35,11 +38,27 @@ import org.tmatesoft.svn.core.wc.SVNEventAction;
  */
 public class UpdateEventHandler implements ISVNEventHandler {
 
+    private OutputSink mySink;
+
+    public UpdateEventHandler(){
+    }
+
+    /**
+     * Events are written to sink (see OutputSinks) instead of System.out
+     */
+    public UpdateEventHandler(OutputSink sink){
+        mySink = sink;
+    }
+
     /**
      * progress is currently reserved for future purposes and now is always ISVNEventHandler.UNKNOWN
      */
     @Override
-    public void handleEvent(SVNEvent event, double progress) {
+    public void handleEvent(SVNEvent event, double progress) throws SVNException {
+        if (mySink != null) {
+            mySink.writeEvent(event);
+            return;
+        }
         /**
          * Gets the current action. An action is represented by SVNEventAction. In case of an update an action can be
          * determined via comparing SVNEvent.getAction() and SVNEventAction.UPDATE_-like constants.
@@ -8,10 +8,13 @@
 package com.snoopy.subversion.handler;
 
 import org.tmatesoft.svn.core.SVNCancelException;
+import org.tmatesoft.svn.core.SVNException;
 import org.tmatesoft.svn.core.wc.ISVNEventHandler;
 import org.tmatesoft.svn.core.wc.SVNEvent;
 import org.tmatesoft.svn.core.wc.SVNEventAction;
 
+import com.snoopy.subversion.output.OutputSink;
+
 /**
  * <pre>
  * This class is an implementation of ISVNEventHandler intended for  processing
@@ -34,11 +37,27 @@ import org.tmatesoft.svn.core.wc.SVNEventAction;
  */
 public class WCEventHandler implements ISVNEventHandler {
 
+    private OutputSink mySink;
+
+    public WCEventHandler(){
+    }
+
+    /**
+     * Events are written to sink (see OutputSinks) instead of System.out
+     */
+    public WCEventHandler(OutputSink sink){
+        mySink = sink;
+    }
+
     /**
      * progress is currently reserved for future purposes and now is always ISVNEventHandler.UNKNOWN
      */
     @Override
-    public void handleEvent(SVNEvent event, double progress) {
+    public void handleEvent(SVNEvent event, double progress) throws SVNException {
+        if (mySink != null) {
+            mySink.writeEvent(event);
+            return;
+        }
         /**
          * Gets the current action. An action is represented by SVNEventAction.
          */
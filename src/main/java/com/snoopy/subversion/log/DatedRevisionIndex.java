@@ -0,0 +1,345 @@
+/**
+ * <pre>
+ * Copyright (C), 2026, 杭州共道科技
+ * FileName: DatedRevisionIndex
+ * Author:   LiHaiQing
+ * Date:     2026/10/19 16:02
+ * Description: 时间到svn版本号的本地索引
+ * History:
+ * <author>          <time>          <version>          <desc>
+ * 作者姓名           修改时间           版本号              描述
+ * </pre>
+ */
+package com.snoopy.subversion.log;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.tmatesoft.svn.core.ISVNLogEntryHandler;
+import org.tmatesoft.svn.core.SVNErrorCode;
+import org.tmatesoft.svn.core.SVNErrorMessage;
+import org.tmatesoft.svn.core.SVNException;
+import org.tmatesoft.svn.core.SVNLogEntry;
+import org.tmatesoft.svn.core.SVNURL;
+import org.tmatesoft.svn.core.io.SVNRepository;
+
+/**
+ * <pre>
+ * 按仓库 UUID 在本地保存 (revision, 提交时间) 对, 把 SVNRepository.getDatedRevision(date)
+ * 这种每次一个来回的查询变成本地二分查找, 按时间段查版本区间也不需要访问服务器.
+ *
+ * 数据放在两个按版本号递增的 long 数组里, 文件 directory/uuid.dates 的格式为
+ * "SVNDATE1" 加上若干个 (long revision, long 毫秒时间), 只追加.
+ * refresh 只用 LogProjection.TIMELINE 拉取 (最后索引的版本, HEAD] 的日期.
+ * 与 SvnLogCache 一样, 追加期间持有文件锁(同一进程内先按文件互斥), 拿到锁后先读入其它进程追加的对;
+ * 不完整的尾部只在持有文件锁时截掉.
+ *
+ * 与 svn 自身的实现一样, 二分查找假定提交时间随版本号递增; 没有 svn:date 的版本不进索引.
+ *
+ *  DatedRevisionIndex index = DatedRevisionIndex.open(SvnLogCache.getDefaultDirectory(), repository);
+ *  index.refresh(repository);
+ *  long revision = index.getDatedRevision(date);
+ *  ...
+ *  index.close();
+ * </pre>
+ *
+ * @ClassName: DatedRevisionIndex.java
+ * @author: LiHaiQing
+ * @date: 2026/10/19 16:02
+ * @version V1.0.0
+ */
+public class DatedRevisionIndex implements Closeable {
+
+    private static Logger logger = LoggerFactory.getLogger(DatedRevisionIndex.class);
+
+    private static final byte[] MAGIC = "SVNDATE1".getBytes(StandardCharsets.US_ASCII);
+    private static final int PAIR_LENGTH = 16;
+
+    /**
+     * 索引文件的绝对路径 -> 进程内的刷新锁, 见 SvnLogCache
+     */
+    private static final Map<String, Object> REFRESH_LOCKS = new HashMap<String, Object>();
+
+    private File myFile;
+    private String myUUID;
+    private RandomAccessFile myRandomAccessFile;
+    private FileChannel myChannel;
+    /**
+     * 已读入的文件长度, 即最后一个完整的对的结尾
+     */
+    private long myIndexedLength;
+    private long[] myRevisions = new long[0];
+    private long[] myTimes = new long[0];
+    private int mySize;
+    private long myLastRevision = -1;
+
+    private DatedRevisionIndex(File file, String uuid){
+        myFile = file;
+        myUUID = uuid;
+    }
+
+    /**
+     * 打开(不存在则创建) repository 所在仓库的索引文件 directory/uuid.dates, 不会访问日志. <br>
+     */
+    public static DatedRevisionIndex open(File directory, SVNRepository repository) throws SVNException {
+        String uuid = repository.getRepositoryUUID(true);
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            SVNErrorMessage err = SVNErrorMessage.create(SVNErrorCode.IO_ERROR,
+                                                         "error: failed to create the index directory ''{0}''.",
+                                                         directory);
+            throw new SVNException(err);
+        }
+        DatedRevisionIndex index = new DatedRevisionIndex(new File(directory, uuid + ".dates"), uuid);
+        try {
+            index.load();
+        } catch (IOException e) {
+            index.close();
+            SVNErrorMessage err = SVNErrorMessage.create(SVNErrorCode.IO_ERROR,
+                                                         "error: cannot read dated revision index ''{0}''",
+                                                         index.myFile);
+            throw new SVNException(err, e);
+        }
+        return index;
+    }
+
+    /**
+     * 最后索引的版本号, 空索引为 -1
+     */
+    public synchronized long getLastRevision() {
+        return myLastRevision;
+    }
+
+    /**
+     * 最后索引的版本的提交时间, 空索引为 null. 早于它的时间点不需要 refresh 就能查到准确的版本. <br>
+     */
+    public synchronized Date getLastDate() {
+        return mySize == 0 ? null : new Date(myTimes[mySize - 1]);
+    }
+
+    /**
+     * 把 (最后索引的版本, HEAD] 的提交时间追加到索引. <br>
+     *
+     * @return 刷新后最后索引的版本号
+     */
+    public synchronized long refresh(SVNRepository repository) throws SVNException {
+        if (!myUUID.equals(repository.getRepositoryUUID(true))) {
+            SVNErrorMessage err = SVNErrorMessage.create(SVNErrorCode.RA_UUID_MISMATCH,
+                                                         "dated revision index ''{0}'' does not belong to ''{1}''",
+                                                         myFile, repository.getLocation());
+            throw new SVNException(err);
+        }
+        long latestRevision = repository.getLatestRevision();
+        if (latestRevision <= myLastRevision) {
+            return myLastRevision;
+        }
+        synchronized (getRefreshLock(myFile)) {
+            FileLock lock = null;
+            try {
+                lock = myChannel.lock();
+                /**
+                 * 其它进程或同一进程内的其它实例可能已经追加过
+                 */
+                index(true);
+                if (latestRevision > myLastRevision) {
+                    fetch(repository, myLastRevision + 1, latestRevision);
+                }
+            } catch (IOException e) {
+                SVNErrorMessage err = SVNErrorMessage.create(SVNErrorCode.IO_ERROR,
+                                                             "error: cannot append to dated revision index ''{0}''",
+                                                             myFile);
+                throw new SVNException(err, e);
+            } finally {
+                if (lock != null) {
+                    try {
+                        lock.release();
+                    } catch (IOException e) {
+                        logger.warn("failed to release lock of {}", myFile, e);
+                    }
+                }
+            }
+        }
+        return myLastRevision;
+    }
+
+    private static Object getRefreshLock(File file) {
+        String path = file.getAbsolutePath();
+        synchronized (REFRESH_LOCKS) {
+            Object lock = REFRESH_LOCKS.get(path);
+            if (lock == null) {
+                lock = new Object();
+                REFRESH_LOCKS.put(path, lock);
+            }
+            return lock;
+        }
+    }
+
+    /**
+     * 拉取 [startRevision, endRevision] 的日期追加在文件尾部, 调用时持有文件锁
+     */
+    private void fetch(SVNRepository repository, long startRevision, long endRevision) throws SVNException,
+                                                                                        IOException {
+        SVNURL location = repository.getLocation();
+        myChannel.position(myIndexedLength);
+        final DataOutputStream pairs = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(myChannel)));
+        try {
+            repository.setLocation(repository.getRepositoryRoot(true), false);
+            repository.log(new String[] { "" }, startRevision, endRevision, LogProjection.TIMELINE.isChangedPaths(),
+                           true, 0, false, LogProjection.TIMELINE.getRevisionProperties(),
+                           new ISVNLogEntryHandler() {
+
+                               @Override
+                               public void handleLogEntry(SVNLogEntry logEntry) throws SVNException {
+                                   if (logEntry.getDate() == null) {
+                                       myLastRevision = Math.max(myLastRevision, logEntry.getRevision());
+                                       return;
+                                   }
+                                   try {
+                                       pairs.writeLong(logEntry.getRevision());
+                                       pairs.writeLong(logEntry.getDate().getTime());
+                                   } catch (IOException e) {
+                                       SVNErrorMessage err = SVNErrorMessage.create(SVNErrorCode.IO_ERROR,
+                                                                                    "error: cannot append to dated revision index ''{0}''",
+                                                                                    myFile);
+                                       throw new SVNException(err, e);
+                                   }
+                                   add(logEntry.getRevision(), logEntry.getDate().getTime());
+                               }
+                           });
+        } finally {
+            repository.setLocation(location, false);
+            /**
+             * 不关闭 pairs, 关闭会连带关闭 myChannel
+             */
+            pairs.flush();
+            myIndexedLength = myChannel.position();
+        }
+    }
+
+    /**
+     * 与 SVNRepository.getDatedRevision(date) 相同: 提交时间不晚于 date 的最新版本,
+     * date 早于所有版本时为 0, 空索引为 -1. 结果只反映到最后一次 refresh 为止的版本.
+     */
+    public synchronized long getDatedRevision(Date date) {
+        if (mySize == 0) {
+            return -1;
+        }
+        int i = floor(date.getTime());
+        return i < 0 ? 0 : myRevisions[i];
+    }
+
+    /**
+     * 在 [from, to] 之间提交的版本区间 {第一个版本, 最后一个版本}, 没有则为 null
+     */
+    public synchronized long[] getRevisionRange(Date from, Date to) {
+        int last = floor(to.getTime());
+        int first = floor(from.getTime() - 1) + 1;
+        if (last < 0 || first >= mySize || first > last) {
+            return null;
+        }
+        return new long[] { myRevisions[first], myRevisions[last] };
+    }
+
+    /**
+     * 版本的提交时间, 未索引为 null
+     */
+    public synchronized Date getDate(long revision) {
+        int i = Arrays.binarySearch(myRevisions, 0, mySize, revision);
+        return i < 0 ? null : new Date(myTimes[i]);
+    }
+
+    /**
+     * 时间不晚于 time 的最后一个下标, 没有则为 -1
+     */
+    private int floor(long time) {
+        int low = 0;
+        int high = mySize - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            if (myTimes[middle] <= time) {
+                low = middle + 1;
+            } else {
+                high = middle - 1;
+            }
+        }
+        return high;
+    }
+
+    private void add(long revision, long time) {
+        if (mySize == myRevisions.length) {
+            int length = Math.max(16, mySize * 2);
+            myRevisions = Arrays.copyOf(myRevisions, length);
+            myTimes = Arrays.copyOf(myTimes, length);
+        }
+        myRevisions[mySize] = revision;
+        myTimes[mySize] = time;
+        mySize++;
+        myLastRevision = Math.max(myLastRevision, revision);
+    }
+
+    @Override
+    public synchronized void close() {
+        if (myRandomAccessFile != null) {
+            try {
+                myRandomAccessFile.close();
+            } catch (IOException e) {
+                logger.warn("failed to close {}", myFile, e);
+            }
+            myRandomAccessFile = null;
+            myChannel = null;
+        }
+    }
+
+    private void load() throws IOException {
+        myRandomAccessFile = new RandomAccessFile(myFile, "rw");
+        myChannel = myRandomAccessFile.getChannel();
+        if (myChannel.size() == 0) {
+            myChannel.write(ByteBuffer.wrap(MAGIC), 0);
+        }
+        ByteBuffer magic = ByteBuffer.allocate(MAGIC.length);
+        myChannel.read(magic, 0);
+        if (!Arrays.equals(magic.array(), MAGIC)) {
+            throw new IOException("bad dated revision index header: " + myFile);
+        }
+        myIndexedLength = MAGIC.length;
+        index(false);
+    }
+
+    /**
+     * 读入 myIndexedLength 之后的完整的对. 末尾不完整的对只有 truncate 为 true(持有文件锁)时才截掉,
+     * 否则它可能是其它进程正在追加的; 版本号不大于已读入的最后一个版本的对被忽略, 保证数组有序.
+     */
+    private void index(boolean truncate) throws IOException {
+        long size = myChannel.size();
+        long length = (size - myIndexedLength) / PAIR_LENGTH * PAIR_LENGTH;
+        if (length > 0) {
+            ByteBuffer pairs = myChannel.map(FileChannel.MapMode.READ_ONLY, myIndexedLength, length);
+            while (pairs.remaining() >= PAIR_LENGTH) {
+                long revision = pairs.getLong();
+                long time = pairs.getLong();
+                if (mySize == 0 || revision > myRevisions[mySize - 1]) {
+                    add(revision, time);
+                }
+            }
+            myIndexedLength += length;
+        }
+        if (myIndexedLength < size && truncate) {
+            logger.warn("truncating incomplete pair at the end of {}", myFile);
+            myChannel.truncate(myIndexedLength);
+        }
+    }
+}
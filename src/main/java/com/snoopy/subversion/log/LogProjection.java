@@ -0,0 +1,102 @@
+/**
+ * <pre>
+ * Copyright (C), 2026, 杭州共道科技
+ * FileName: LogProjection
+ * Author:   LiHaiQing
+ * Date:     2026/10/19 15:20
+ * Description: svn日志查询的字段裁剪
+ * History:
+ * <author>          <time>          <version>          <desc>
+ * 作者姓名           修改时间           版本号              描述
+ * </pre>
+ */
+package com.snoopy.subversion.log;
+
+import java.util.Arrays;
+
+import org.tmatesoft.svn.core.SVNRevisionProperty;
+
+/**
+ * <pre>
+ * 描述一次日志查询需要哪些数据: 是否需要 changed paths, 以及需要哪些版本属性(revprops).
+ * 传给服务器时对应 SVNRepository.log(.., changedPath, .., revisionProperties, handler),
+ * 不需要的数据服务器不会发送; 从 SvnLogCache 读取时不需要的字段不会被解码.
+ *
+ * 例如只画时间线时只要版本号和日期:
+ *
+ *  fetcher.log(new String[] {""}, 0, -1, LogProjection.TIMELINE, true, handler);
+ * </pre>
+ *
+ * @ClassName: LogProjection.java
+ * @author: LiHaiQing
+ * @date: 2026/10/19 15:20
+ * @version V1.0.0
+ */
+public class LogProjection {
+
+    /**
+     * changed paths 以及全部版本属性, 与 SVNRepository.log(.., true, .., handler) 相同
+     */
+    public static final LogProjection FULL = new LogProjection(true, (String[]) null);
+
+    /**
+     * 不要 changed paths, 只要作者、日期和提交说明
+     */
+    public static final LogProjection SUMMARY = new LogProjection(false, SVNRevisionProperty.AUTHOR,
+                                                                  SVNRevisionProperty.DATE, SVNRevisionProperty.LOG);
+
+    /**
+     * 只要版本号和日期
+     */
+    public static final LogProjection TIMELINE = new LogProjection(false, SVNRevisionProperty.DATE);
+
+    private boolean myChangedPaths;
+    private String[] myRevisionProperties;
+
+    /**
+     * revisionProperties 为 null 表示全部版本属性, 空数组表示一个都不要
+     */
+    public LogProjection(boolean changedPaths, String... revisionProperties){
+        myChangedPaths = changedPaths;
+        myRevisionProperties = revisionProperties == null ? null : revisionProperties.clone();
+    }
+
+    /**
+     * 按名称取预定义的裁剪: full, summary, timeline(不区分大小写) <br>
+     */
+    public static LogProjection forName(String name) {
+        if ("full".equalsIgnoreCase(name)) {
+            return FULL;
+        } else if ("summary".equalsIgnoreCase(name)) {
+            return SUMMARY;
+        } else if ("timeline".equalsIgnoreCase(name)) {
+            return TIMELINE;
+        }
+        throw new IllegalArgumentException("unknown log projection: " + name);
+    }
+
+    public boolean isChangedPaths() {
+        return myChangedPaths;
+    }
+
+    /**
+     * 传给 SVNRepository.log 的 revisionProperties, null 表示全部
+     */
+    public String[] getRevisionProperties() {
+        return myRevisionProperties == null ? null : myRevisionProperties.clone();
+    }
+
+    public boolean isAllRevisionProperties() {
+        return myRevisionProperties == null;
+    }
+
+    public boolean includes(String revisionProperty) {
+        return myRevisionProperties == null || Arrays.asList(myRevisionProperties).contains(revisionProperty);
+    }
+
+    @Override
+    public String toString() {
+        return "changedPaths=" + myChangedPaths + "; revisionProperties="
+               + (myRevisionProperties == null ? "all" : Arrays.toString(myRevisionProperties));
+    }
+}
@@ -0,0 +1,312 @@
+/**
+ * <pre>
+ * Copyright (C), 2026, 杭州共道科技
+ * FileName: ParallelLogFetcher
+ * Author:   LiHaiQing
+ * Date:     2026/10/19 10:12
+ * Description: 多会话并行拉取svn日志
+ * History:
+ * <author>          <time>          <version>          <desc>
+ * 作者姓名           修改时间           版本号              描述
+ * </pre>
+ */
+package com.snoopy.subversion.log;
+
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.tmatesoft.svn.core.ISVNLogEntryHandler;
+import org.tmatesoft.svn.core.SVNCancelException;
+import org.tmatesoft.svn.core.SVNErrorCode;
+import org.tmatesoft.svn.core.SVNErrorMessage;
+import org.tmatesoft.svn.core.SVNException;
+import org.tmatesoft.svn.core.SVNLogEntry;
+import org.tmatesoft.svn.core.SVNURL;
+import org.tmatesoft.svn.core.auth.ISVNAuthenticationManager;
+import org.tmatesoft.svn.core.io.SVNRepository;
+import org.tmatesoft.svn.core.io.SVNRepositoryFactory;
+
+import com.snoopy.subversion.pool.SvnSessionPool;
+
+/**
+ * <pre>
+ * 把 [startRevision, endRevision] 切成若干段, 用多个 SVNRepository 会话并发执行 log,
+ * 再按版本号顺序把结果交给调用方的 ISVNLogEntryHandler.
+ *
+ * SVNRepository 不是线程安全的, 每个会话同一时刻只被一个工作线程使用;
+ * 最多只有 maxBufferedChunks 段结果在内存中等待交付, 超出时暂停提交新的分段.
+ *
+ * 每一段都以段内较大的版本号为 peg, 目标路径在该版本还不存在的分段按空结果处理,
+ * 所以路径被改名/复制之前的历史不会被追溯, 适合对仓库根或长期存在的路径做全量拉取.
+ *
+ *  ParallelLogFetcher fetcher = new ParallelLogFetcher(SvnSessionPool.getInstance(), url, name, password, 4, 1000);
+ *  fetcher.log(new String[] {""}, 0, -1, true, true, handler);
+ * </pre>
+ *
+ * @ClassName: ParallelLogFetcher.java
+ * @author: LiHaiQing
+ * @date: 2026/10/19 10:12
+ * @version V1.0.0
+ */
+public class ParallelLogFetcher {
+
+    private static Logger logger = LoggerFactory.getLogger(ParallelLogFetcher.class);
+
+    private SVNURL myURL;
+    private ISVNAuthenticationManager myAuthManager;
+    private SvnSessionPool myPool;
+    private String myUserName;
+    private String myPassword;
+    private int mySessionCount;
+    private long myChunkSize;
+    private int myMaxBufferedChunks;
+
+    public ParallelLogFetcher(SVNURL url, ISVNAuthenticationManager authManager, int sessionCount, long chunkSize){
+        this(url, authManager, sessionCount, chunkSize, sessionCount * 2);
+    }
+
+    public ParallelLogFetcher(SVNURL url, ISVNAuthenticationManager authManager, int sessionCount, long chunkSize,
+                              int maxBufferedChunks){
+        if (sessionCount < 1 || chunkSize < 1 || maxBufferedChunks < sessionCount) {
+            throw new IllegalArgumentException("sessionCount and chunkSize must be positive and maxBufferedChunks must not be less than sessionCount");
+        }
+        myURL = url;
+        myAuthManager = authManager;
+        mySessionCount = sessionCount;
+        myChunkSize = chunkSize;
+        myMaxBufferedChunks = maxBufferedChunks;
+    }
+
+    /**
+     * 会话从 pool 中借出, 拉取结束后归还; sessionCount 不超过 pool 每个主机的会话上限
+     */
+    public ParallelLogFetcher(SvnSessionPool pool, SVNURL url, String userName, String password, int sessionCount,
+                              long chunkSize){
+        this(url, null, Math.min(sessionCount, pool.getMaxSessionsPerHost()), chunkSize,
+             Math.min(sessionCount, pool.getMaxSessionsPerHost()) * 2);
+        myPool = pool;
+        myUserName = userName;
+        myPassword = password;
+    }
+
+    /**
+     * 与 SVNRepository.log(targetPaths, startRevision, endRevision, changedPath, strictNode, handler) 语义一致,
+     * startRevision 大于 endRevision 时按倒序交付. 负数的版本号表示 HEAD. <br>
+     *
+     * @return 交付给 handler 的日志条数
+     */
+    public long log(String[] targetPaths, long startRevision, long endRevision, boolean changedPath,
+                    boolean strictNode, ISVNLogEntryHandler handler) throws SVNException {
+        return log(targetPaths, startRevision, endRevision, new LogProjection(changedPath, (String[]) null),
+                   strictNode, handler);
+    }
+
+    /**
+     * 只向服务器请求 projection 中要求的 changed paths 和版本属性. <br>
+     *
+     * @return 交付给 handler 的日志条数
+     */
+    public long log(String[] targetPaths, long startRevision, long endRevision, LogProjection projection,
+                    boolean strictNode, ISVNLogEntryHandler handler) throws SVNException {
+        SessionQueue sessions = new SessionQueue();
+        ExecutorService executor = Executors.newFixedThreadPool(mySessionCount);
+        try {
+            if (startRevision < 0 || endRevision < 0) {
+                SVNRepository repository = createSession();
+                long latestRevision;
+                try {
+                    latestRevision = repository.getLatestRevision();
+                } catch (SVNException e) {
+                    dispose(repository, true);
+                    throw e;
+                }
+                sessions.offer(repository);
+                startRevision = startRevision < 0 ? latestRevision : startRevision;
+                endRevision = endRevision < 0 ? latestRevision : endRevision;
+            }
+            List<long[]> chunks = split(startRevision, endRevision);
+            logger.debug("fetching log [{}, {}] of {} in {} chunks over {} sessions", startRevision, endRevision,
+                         myURL, chunks.size(), mySessionCount);
+
+            LinkedList<Future<List<SVNLogEntry>>> pending = new LinkedList<Future<List<SVNLogEntry>>>();
+            int next = 0;
+            long count = 0;
+            while (next < chunks.size() || !pending.isEmpty()) {
+                /**
+                 * 预先提交的分段数不超过 maxBufferedChunks, 按提交顺序等待, 保证交付有序
+                 */
+                while (next < chunks.size() && pending.size() < myMaxBufferedChunks) {
+                    long[] chunk = chunks.get(next++);
+                    pending.add(executor.submit(new ChunkTask(sessions, targetPaths, chunk[0], chunk[1], projection,
+                                                              strictNode)));
+                }
+                List<SVNLogEntry> entries = await(pending.removeFirst());
+                for (SVNLogEntry entry : entries) {
+                    if (handler != null) {
+                        handler.handleLogEntry(entry);
+                    }
+                    count++;
+                }
+            }
+            return count;
+        } finally {
+            /**
+             * 出错提前结束时仍在执行的分段任务在结束后自己归还会话, 见 ChunkTask
+             */
+            executor.shutdownNow();
+            for (SVNRepository repository : sessions.close()) {
+                dispose(repository, false);
+            }
+        }
+    }
+
+    /**
+     * 把版本区间按 chunkSize 切段, 段的顺序和段内方向都与请求的方向一致
+     */
+    private List<long[]> split(long startRevision, long endRevision) {
+        List<long[]> chunks = new ArrayList<long[]>();
+        if (startRevision <= endRevision) {
+            for (long from = startRevision; from <= endRevision; from += myChunkSize) {
+                chunks.add(new long[] { from, Math.min(from + myChunkSize - 1, endRevision) });
+            }
+        } else {
+            for (long from = startRevision; from >= endRevision; from -= myChunkSize) {
+                chunks.add(new long[] { from, Math.max(from - myChunkSize + 1, endRevision) });
+            }
+        }
+        return chunks;
+    }
+
+    private List<SVNLogEntry> await(Future<List<SVNLogEntry>> future) throws SVNException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SVNCancelException();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof SVNException) {
+                throw (SVNException) e.getCause();
+            }
+            SVNErrorMessage err = SVNErrorMessage.create(SVNErrorCode.UNKNOWN, "error while fetching log of ''{0}''",
+                                                         myURL);
+            throw new SVNException(err, e.getCause());
+        }
+    }
+
+    /**
+     * 归还或关闭会话; broken 为 true 表示会话使用中出错, 不再放回 pool
+     */
+    private void dispose(SVNRepository repository, boolean broken) {
+        if (myPool == null) {
+            repository.closeSession();
+        } else if (broken) {
+            myPool.invalidate(repository);
+        } else {
+            myPool.release(repository);
+        }
+    }
+
+    private SVNRepository createSession() throws SVNException {
+        if (myPool != null) {
+            return myPool.borrow(myURL, myUserName, myPassword);
+        }
+        SVNRepository repository = SVNRepositoryFactory.create(myURL);
+        repository.setAuthenticationManager(myAuthManager);
+        return repository;
+    }
+
+    /**
+     * 空闲会话队列; 关闭后放回的会话由放回的线程自己归还, 不会遗留在队列中
+     */
+    private static class SessionQueue {
+
+        private LinkedList<SVNRepository> myRepositories = new LinkedList<SVNRepository>();
+        private boolean myIsClosed;
+
+        synchronized SVNRepository poll() {
+            return myRepositories.poll();
+        }
+
+        /**
+         * @return 队列已关闭时返回 false, 会话由调用方处理
+         */
+        synchronized boolean offer(SVNRepository repository) {
+            if (myIsClosed) {
+                return false;
+            }
+            myRepositories.add(repository);
+            return true;
+        }
+
+        synchronized List<SVNRepository> close() {
+            myIsClosed = true;
+            List<SVNRepository> repositories = new ArrayList<SVNRepository>(myRepositories);
+            myRepositories.clear();
+            return repositories;
+        }
+    }
+
+    /**
+     * 拉取一个分段; 会话用完放回队列, 同时最多只有 sessionCount 个任务在执行, 所以最多创建 sessionCount 个会话
+     */
+    private class ChunkTask implements Callable<List<SVNLogEntry>> {
+
+        private SessionQueue mySessions;
+        private String[] myTargetPaths;
+        private long myStartRevision;
+        private long myEndRevision;
+        private LogProjection myProjection;
+        private boolean myStrictNode;
+
+        ChunkTask(SessionQueue sessions, String[] targetPaths, long startRevision,
+                  long endRevision, LogProjection projection, boolean strictNode){
+            mySessions = sessions;
+            myTargetPaths = targetPaths;
+            myStartRevision = startRevision;
+            myEndRevision = endRevision;
+            myProjection = projection;
+            myStrictNode = strictNode;
+        }
+
+        @Override
+        public List<SVNLogEntry> call() throws SVNException {
+            SVNRepository repository = mySessions.poll();
+            if (repository == null) {
+                repository = createSession();
+            }
+            boolean broken = false;
+            try {
+                final List<SVNLogEntry> entries = new ArrayList<SVNLogEntry>();
+                repository.log(myTargetPaths, myStartRevision, myEndRevision, myProjection.isChangedPaths(),
+                               myStrictNode, 0, false, myProjection.getRevisionProperties(),
+                               new ISVNLogEntryHandler() {
+
+                                   @Override
+                                   public void handleLogEntry(SVNLogEntry logEntry) throws SVNException {
+                                       entries.add(logEntry);
+                                   }
+                               });
+                return entries;
+            } catch (SVNException e) {
+                if (e.getErrorMessage().getErrorCode() == SVNErrorCode.FS_NOT_FOUND) {
+                    logger.debug("no {} in [{}, {}], skipped", myURL, myStartRevision, myEndRevision);
+                    return new ArrayList<SVNLogEntry>();
+                }
+                broken = true;
+                throw e;
+            } finally {
+                if (broken || !mySessions.offer(repository)) {
+                    dispose(repository, broken);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,556 @@
+/**
+ * <pre>
+ * Copyright (C), 2026, 杭州共道科技
+ * FileName: SvnLogCache
+ * Author:   LiHaiQing
+ * Date:     2026/10/19 14:05
+ * Description: svn日志本地缓存
+ * History:
+ * <author>          <time>          <version>          <desc>
+ * 作者姓名           修改时间           版本号              描述
+ * </pre>
+ */
+package com.snoopy.subversion.log;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.tmatesoft.svn.core.ISVNLogEntryHandler;
+import org.tmatesoft.svn.core.SVNErrorCode;
+import org.tmatesoft.svn.core.SVNErrorMessage;
+import org.tmatesoft.svn.core.SVNException;
+import org.tmatesoft.svn.core.SVNLogEntry;
+import org.tmatesoft.svn.core.SVNLogEntryPath;
+import org.tmatesoft.svn.core.SVNNodeKind;
+import org.tmatesoft.svn.core.SVNProperties;
+import org.tmatesoft.svn.core.SVNRevisionProperty;
+import org.tmatesoft.svn.core.SVNURL;
+import org.tmatesoft.svn.core.internal.util.SVNDate;
+import org.tmatesoft.svn.core.io.SVNRepository;
+
+/**
+ * <pre>
+ * 按仓库 UUID 在本地保存整个仓库(根路径)的提交日志, 已提交的版本不会再变, 所以文件只追加不修改.
+ *
+ * 文件格式(大端):
+ *  header : "SVNLOGC1" + int uuid长度 + uuid(UTF-8)
+ *  record : int 记录长度(不含自身) + long revision + long date(毫秒, 无日期为 Long.MIN_VALUE)
+ *           + string author + string message + int changedPathCount
+ *           + changedPathCount * (char type + byte kind + string path + string copyPath + long copyRevision)
+ *  string : int 字节数(null 为 -1) + UTF-8 字节
+ *
+ * 读取时整个文件以只读方式映射进内存, 按 revision -> offset 的索引直接定位记录;
+ * refresh 只拉取 (最后缓存的版本, getLatestRevision()] 之间的日志并追加在文件尾部.
+ * 多个进程共用同一个缓存目录时, 追加期间持有文件锁, 拿到锁后会先把其它进程追加的记录纳入索引;
+ * 文件锁属于整个进程, 同一进程内打开同一文件的多个 SvnLogCache 在取文件锁之前先按文件互斥.
+ * 不完整的尾部记录只在持有文件锁时截掉, 否则可能是其它进程正在追加的记录.
+ *
+ * 缓存中保存的是仓库根的日志, 查询某个路径时按 changed paths 过滤:
+ * 路径自身或其子路径有变动的版本, 以及祖先路径被添加/删除/替换的版本. 不追溯复制来源的历史.
+ *
+ *  SvnLogCache cache = SvnLogCache.open(SvnLogCache.getDefaultDirectory(), repository);
+ *  cache.refresh(repository);
+ *  cache.log(repository.getRepositoryPath(""), 0, -1, 0, handler);
+ * </pre>
+ *
+ * @ClassName: SvnLogCache.java
+ * @author: LiHaiQing
+ * @date: 2026/10/19 14:05
+ * @version V1.0.0
+ */
+public class SvnLogCache implements Closeable {
+
+    private static Logger logger = LoggerFactory.getLogger(SvnLogCache.class);
+
+    private static final byte[] MAGIC = "SVNLOGC1".getBytes(StandardCharsets.US_ASCII);
+
+    /**
+     * 缺口超过这个版本数时改用 ParallelLogFetcher 多会话拉取
+     */
+    private static final long PARALLEL_THRESHOLD = 10000;
+    private static final int PARALLEL_SESSIONS = 4;
+    private static final long PARALLEL_CHUNK_SIZE = 2000;
+
+    /**
+     * 缓存文件的绝对路径 -> 进程内的刷新锁, FileChannel.lock 在同一进程内重复获取会抛 OverlappingFileLockException
+     */
+    private static final Map<String, Object> REFRESH_LOCKS = new HashMap<String, Object>();
+
+    private File myFile;
+    private String myUUID;
+    private RandomAccessFile myRandomAccessFile;
+    private FileChannel myChannel;
+    private MappedByteBuffer myBuffer;
+    /**
+     * 已纳入索引的文件长度, 即最后一条完整记录的结尾
+     */
+    private long myIndexedLength;
+    private long myHeaderLength;
+    /**
+     * 下标为 revision, 值为记录在文件中的偏移, 没有缓存的版本为 -1
+     */
+    private long[] myOffsets = new long[0];
+    private long myLastRevision = -1;
+
+    private SvnLogCache(File file, String uuid){
+        myFile = file;
+        myUUID = uuid;
+    }
+
+    /**
+     * 默认缓存目录: ${user.home}/.svnkit/log-cache
+     */
+    public static File getDefaultDirectory() {
+        return new File(System.getProperty("user.home"), ".svnkit" + File.separator + "log-cache");
+    }
+
+    /**
+     * 打开(不存在则创建) repository 所在仓库的缓存文件 directory/uuid.log, 不会拉取日志. <br>
+     */
+    public static SvnLogCache open(File directory, SVNRepository repository) throws SVNException {
+        return open(directory, repository.getRepositoryUUID(true));
+    }
+
+    public static SvnLogCache open(File directory, String uuid) throws SVNException {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            SVNErrorMessage err = SVNErrorMessage.create(SVNErrorCode.IO_ERROR,
+                                                         "error: failed to create the log cache directory ''{0}''.",
+                                                         directory);
+            throw new SVNException(err);
+        }
+        SvnLogCache cache = new SvnLogCache(new File(directory, uuid + ".log"), uuid);
+        try {
+            cache.load();
+        } catch (IOException e) {
+            cache.close();
+            SVNErrorMessage err = SVNErrorMessage.create(SVNErrorCode.IO_ERROR, "error: cannot open log cache ''{0}''",
+                                                         cache.myFile);
+            throw new SVNException(err, e);
+        }
+        return cache;
+    }
+
+    public String getRepositoryUUID() {
+        return myUUID;
+    }
+
+    /**
+     * 最后缓存的版本号, 空缓存为 -1
+     */
+    public synchronized long getLastRevision() {
+        return myLastRevision;
+    }
+
+    /**
+     * 把 (最后缓存的版本, HEAD] 的日志追加到缓存, repository 可以指向仓库内任意路径. <br>
+     *
+     * @return 刷新后最后缓存的版本号
+     */
+    public synchronized long refresh(SVNRepository repository) throws SVNException {
+        if (!myUUID.equals(repository.getRepositoryUUID(true))) {
+            SVNErrorMessage err = SVNErrorMessage.create(SVNErrorCode.RA_UUID_MISMATCH,
+                                                         "log cache ''{0}'' does not belong to ''{1}''", myFile,
+                                                         repository.getLocation());
+            throw new SVNException(err);
+        }
+        long latestRevision = repository.getLatestRevision();
+        if (latestRevision <= myLastRevision) {
+            return myLastRevision;
+        }
+        synchronized (getRefreshLock(myFile)) {
+            FileLock lock = null;
+            try {
+                lock = myChannel.lock();
+                /**
+                 * 其它进程或同一进程内的其它实例可能已经追加过
+                 */
+                index(true);
+                if (latestRevision > myLastRevision) {
+                    fetch(repository, myLastRevision + 1, latestRevision);
+                }
+            } catch (IOException e) {
+                SVNErrorMessage err = SVNErrorMessage.create(SVNErrorCode.IO_ERROR,
+                                                             "error: cannot append to log cache ''{0}''", myFile);
+                throw new SVNException(err, e);
+            } finally {
+                if (lock != null) {
+                    try {
+                        lock.release();
+                    } catch (IOException e) {
+                        logger.warn("failed to release lock of {}", myFile, e);
+                    }
+                }
+            }
+        }
+        return myLastRevision;
+    }
+
+    private static Object getRefreshLock(File file) {
+        String path = file.getAbsolutePath();
+        synchronized (REFRESH_LOCKS) {
+            Object lock = REFRESH_LOCKS.get(path);
+            if (lock == null) {
+                lock = new Object();
+                REFRESH_LOCKS.put(path, lock);
+            }
+            return lock;
+        }
+    }
+
+    /**
+     * 从缓存中读取 path 的日志, 不访问服务器. path 为仓库内的绝对路径(以 '/' 开头),
+     * startRevision 大于 endRevision 时倒序返回, 负数的版本号表示最后缓存的版本, limit 小于等于 0 表示不限制. <br>
+     *
+     * @return 交给 handler 的条数
+     */
+    public synchronized long log(String path, long startRevision, long endRevision, long limit,
+                                 ISVNLogEntryHandler handler) throws SVNException {
+        return log(path, startRevision, endRevision, limit, LogProjection.FULL, handler);
+    }
+
+    /**
+     * 同 log(path, startRevision, endRevision, limit, handler), 只解码 projection 要求的字段.
+     * 缓存中只有 svn:author, svn:date, svn:log 三个版本属性. <br>
+     *
+     * @return 交给 handler 的条数
+     */
+    public synchronized long log(String path, long startRevision, long endRevision, long limit,
+                                 LogProjection projection, ISVNLogEntryHandler handler) throws SVNException {
+        if (myLastRevision < 0) {
+            return 0;
+        }
+        startRevision = startRevision < 0 ? myLastRevision : Math.min(startRevision, myLastRevision);
+        endRevision = endRevision < 0 ? myLastRevision : Math.min(endRevision, myLastRevision);
+        String target = normalize(path);
+        long step = startRevision <= endRevision ? 1 : -1;
+        long count = 0;
+        for (long revision = startRevision; revision != endRevision + step; revision += step) {
+            SVNLogEntry entry = readEntry(revision, target, projection);
+            if (entry == null) {
+                continue;
+            }
+            if (handler != null) {
+                handler.handleLogEntry(entry);
+            }
+            if (++count == limit) {
+                break;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * 读取一个版本的完整日志(包括所有 changed paths), 未缓存返回 null
+     */
+    public synchronized SVNLogEntry getEntry(long revision) {
+        return readEntry(revision, "/", LogProjection.FULL);
+    }
+
+    /**
+     * 解码一条记录; 没有缓存或者与 target 无关时返回 null.
+     * 不需要的字符串只跳过不解码, target 为根且不要 changed paths 时整段 changed paths 都不读.
+     */
+    private SVNLogEntry readEntry(long revision, String target, LogProjection projection) {
+        if (revision < 0 || revision >= myOffsets.length || myOffsets[(int) revision] < 0) {
+            return null;
+        }
+        ByteBuffer record = myBuffer.duplicate();
+        record.position((int) myOffsets[(int) revision] + 4);
+        long entryRevision = record.getLong();
+        long time = record.getLong();
+        String author = projection.includes(SVNRevisionProperty.AUTHOR) ? readString(record) : skipString(record);
+        String message = projection.includes(SVNRevisionProperty.LOG) ? readString(record) : skipString(record);
+        Map<String, SVNLogEntryPath> changedPaths = Collections.emptyMap();
+        boolean filter = !"/".equals(target);
+        if (projection.isChangedPaths() || filter) {
+            int pathCount = record.getInt();
+            changedPaths = new LinkedHashMap<String, SVNLogEntryPath>(pathCount * 2);
+            for (int i = 0; i < pathCount; i++) {
+                char type = record.getChar();
+                SVNNodeKind kind = toKind(record.get());
+                String changedPath = readString(record);
+                String copyPath = readString(record);
+                long copyRevision = record.getLong();
+                changedPaths.put(changedPath, new SVNLogEntryPath(changedPath, type, copyPath, copyRevision, kind));
+            }
+            if (filter && !affects(changedPaths, target)) {
+                return null;
+            }
+        }
+        SVNProperties revisionProperties = new SVNProperties();
+        if (author != null) {
+            revisionProperties.put(SVNRevisionProperty.AUTHOR, author);
+        }
+        if (time != Long.MIN_VALUE && projection.includes(SVNRevisionProperty.DATE)) {
+            revisionProperties.put(SVNRevisionProperty.DATE, SVNDate.formatDate(new Date(time)));
+        }
+        if (message != null) {
+            revisionProperties.put(SVNRevisionProperty.LOG, message);
+        }
+        return new SVNLogEntry(projection.isChangedPaths() ? changedPaths
+                                                           : Collections.<String, SVNLogEntryPath> emptyMap(),
+                               entryRevision, revisionProperties, false);
+    }
+
+    @Override
+    public synchronized void close() {
+        myBuffer = null;
+        if (myRandomAccessFile != null) {
+            try {
+                myRandomAccessFile.close();
+            } catch (IOException e) {
+                logger.warn("failed to close {}", myFile, e);
+            }
+            myRandomAccessFile = null;
+            myChannel = null;
+        }
+    }
+
+    private void load() throws IOException {
+        myRandomAccessFile = new RandomAccessFile(myFile, "rw");
+        myChannel = myRandomAccessFile.getChannel();
+        byte[] uuid = myUUID.getBytes(StandardCharsets.UTF_8);
+        myHeaderLength = MAGIC.length + 4 + uuid.length;
+        if (myChannel.size() == 0) {
+            ByteBuffer header = ByteBuffer.allocate((int) myHeaderLength);
+            header.put(MAGIC).putInt(uuid.length).put(uuid).flip();
+            while (header.hasRemaining()) {
+                myChannel.write(header, myHeaderLength - header.remaining());
+            }
+        }
+        ByteBuffer header = ByteBuffer.allocate((int) myHeaderLength);
+        myChannel.read(header, 0);
+        header.flip();
+        byte[] magic = new byte[MAGIC.length];
+        if (header.remaining() < myHeaderLength) {
+            throw new IOException("bad log cache header: " + myFile);
+        }
+        header.get(magic);
+        byte[] storedUUID = new byte[Math.max(0, Math.min(header.getInt(), header.remaining()))];
+        header.get(storedUUID);
+        if (!Arrays.equals(magic, MAGIC) || !Arrays.equals(storedUUID, uuid)) {
+            throw new IOException("bad log cache header: " + myFile);
+        }
+        myIndexedLength = myHeaderLength;
+        index(false);
+    }
+
+    /**
+     * 把 myIndexedLength 之后的完整记录纳入索引并重新映射文件.
+     * 末尾不完整的记录只有 truncate 为 true(持有文件锁)时才截掉, 这时它只能是写入时被杀的进程留下的;
+     * 否则只是不纳入索引, 它可能是其它进程正在追加的记录.
+     */
+    private void index(boolean truncate) throws IOException {
+        long size = myChannel.size();
+        if (size > Integer.MAX_VALUE) {
+            throw new IOException("log cache is larger than 2GB: " + myFile);
+        }
+        myBuffer = myChannel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        long offset = myIndexedLength;
+        while (offset + 12 <= size) {
+            int length = myBuffer.getInt((int) offset);
+            if (length < 8 || offset + 4 + length > size) {
+                break;
+            }
+            long revision = myBuffer.getLong((int) offset + 4);
+            setOffset(revision, offset);
+            offset += 4 + length;
+        }
+        if (offset < size && truncate) {
+            logger.warn("truncating incomplete record at {} of {}", offset, myFile);
+            myChannel.truncate(offset);
+            myBuffer = myChannel.map(FileChannel.MapMode.READ_ONLY, 0, offset);
+        }
+        myIndexedLength = offset;
+    }
+
+    private void setOffset(long revision, long offset) {
+        if (revision >= myOffsets.length) {
+            int length = (int) Math.max(revision + 1, myOffsets.length * 2L);
+            long[] offsets = Arrays.copyOf(myOffsets, length);
+            Arrays.fill(offsets, myOffsets.length, length, -1);
+            myOffsets = offsets;
+        }
+        myOffsets[(int) revision] = offset;
+        myLastRevision = Math.max(myLastRevision, revision);
+    }
+
+    private void fetch(SVNRepository repository, long startRevision, long endRevision) throws SVNException,
+                                                                                        IOException {
+        SVNURL root = repository.getRepositoryRoot(true);
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final DataOutputStream out = new DataOutputStream(bytes);
+        ISVNLogEntryHandler appender = new ISVNLogEntryHandler() {
+
+            @Override
+            public void handleLogEntry(SVNLogEntry logEntry) throws SVNException {
+                try {
+                    bytes.reset();
+                    out.writeInt(0);
+                    writeEntry(out, logEntry);
+                    out.flush();
+                    byte[] record = bytes.toByteArray();
+                    ByteBuffer.wrap(record).putInt(0, record.length - 4);
+                    append(record, logEntry.getRevision());
+                } catch (IOException e) {
+                    SVNErrorMessage err = SVNErrorMessage.create(SVNErrorCode.IO_ERROR,
+                                                                 "error: cannot append to log cache ''{0}''", myFile);
+                    throw new SVNException(err, e);
+                }
+            }
+        };
+        logger.info("refreshing log cache {} with [{}, {}]", myFile, startRevision, endRevision);
+        try {
+            if (endRevision - startRevision >= PARALLEL_THRESHOLD) {
+                new ParallelLogFetcher(root, repository.getAuthenticationManager(), PARALLEL_SESSIONS,
+                                       PARALLEL_CHUNK_SIZE).log(new String[] { "" }, startRevision, endRevision,
+                                                                true, false, appender);
+            } else {
+                SVNURL location = repository.getLocation();
+                repository.setLocation(root, false);
+                try {
+                    repository.log(new String[] { "" }, startRevision, endRevision, true, false, appender);
+                } finally {
+                    repository.setLocation(location, false);
+                }
+            }
+        } finally {
+            /**
+             * 中途失败时已追加的记录已经进了 myOffsets, 也要映射进来, 否则读取时越过映射的结尾
+             */
+            myBuffer = myChannel.map(FileChannel.MapMode.READ_ONLY, 0, myIndexedLength);
+        }
+    }
+
+    private void append(byte[] record, long revision) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(record);
+        long offset = myIndexedLength;
+        while (buffer.hasRemaining()) {
+            myChannel.write(buffer, offset + buffer.position());
+        }
+        if (offset + record.length > Integer.MAX_VALUE) {
+            throw new IOException("log cache is larger than 2GB: " + myFile);
+        }
+        myIndexedLength = offset + record.length;
+        setOffset(revision, offset);
+    }
+
+    private static void writeEntry(DataOutputStream out, SVNLogEntry logEntry) throws IOException {
+        out.writeLong(logEntry.getRevision());
+        out.writeLong(logEntry.getDate() == null ? Long.MIN_VALUE : logEntry.getDate().getTime());
+        writeString(out, logEntry.getAuthor());
+        writeString(out, logEntry.getMessage());
+        Map<String, SVNLogEntryPath> changedPaths = logEntry.getChangedPaths();
+        out.writeInt(changedPaths == null ? 0 : changedPaths.size());
+        if (changedPaths != null) {
+            for (SVNLogEntryPath entryPath : changedPaths.values()) {
+                out.writeChar(entryPath.getType());
+                out.writeByte(fromKind(entryPath.getKind()));
+                writeString(out, entryPath.getPath());
+                writeString(out, entryPath.getCopyPath());
+                out.writeLong(entryPath.getCopyRevision());
+            }
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static String skipString(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length > 0) {
+            buffer.position(buffer.position() + length);
+        }
+        return null;
+    }
+
+    private static byte fromKind(SVNNodeKind kind) {
+        if (kind == SVNNodeKind.FILE) {
+            return 1;
+        } else if (kind == SVNNodeKind.DIR) {
+            return 2;
+        } else if (kind == SVNNodeKind.NONE) {
+            return 3;
+        }
+        return 0;
+    }
+
+    private static SVNNodeKind toKind(byte kind) {
+        switch (kind) {
+            case 1:
+                return SVNNodeKind.FILE;
+            case 2:
+                return SVNNodeKind.DIR;
+            case 3:
+                return SVNNodeKind.NONE;
+            default:
+                return SVNNodeKind.UNKNOWN;
+        }
+    }
+
+    private static String normalize(String path) {
+        if (path == null || "".equals(path) || "/".equals(path)) {
+            return "/";
+        }
+        path = path.startsWith("/") ? path : "/" + path;
+        return path.endsWith("/") ? path.substring(0, path.length() - 1) : path;
+    }
+
+    /**
+     * path 自身或子路径有变动, 或者祖先路径被添加/删除/替换
+     */
+    private static boolean affects(Map<String, SVNLogEntryPath> changedPaths, String path) {
+        if ("/".equals(path)) {
+            return true;
+        }
+        for (SVNLogEntryPath entryPath : changedPaths.values()) {
+            String changedPath = entryPath.getPath();
+            if (isAncestor(path, changedPath)) {
+                return true;
+            }
+            if (entryPath.getType() != SVNLogEntryPath.TYPE_MODIFIED && isAncestor(changedPath, path)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isAncestor(String ancestor, String path) {
+        return path.equals(ancestor) || "/".equals(ancestor)
+               || (path.startsWith(ancestor) && path.charAt(ancestor.length()) == '/');
+    }
+}
@@ -0,0 +1,212 @@
+/**
+ * <pre>
+ * Copyright (C), 2026, 杭州共道科技
+ * FileName: AbstractOutputSink
+ * Author:   LiHaiQing
+ * Date:     2026/10/19 19:30
+ * Description: 复用字节缓冲区的输出基类
+ * History:
+ * <author>          <time>          <version>          <desc>
+ * 作者姓名           修改时间           版本号              描述
+ * </pre>
+ */
+package com.snoopy.subversion.output;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+import org.tmatesoft.svn.core.SVNErrorCode;
+import org.tmatesoft.svn.core.SVNErrorMessage;
+import org.tmatesoft.svn.core.SVNException;
+
+/**
+ * <pre>
+ * 所有记录直接编码进同一个 byte[] 缓冲区, 缓冲区超过 bufferSize 时才一次性写到底层流,
+ * 不为每条记录拼接 String, 也不经过 System.out 的同步和按行 flush.
+ * 字符串按 UTF-8 逐字符编码进缓冲区, 数字逐位写入, 整个输出过程中只有缓冲区扩容时才分配内存.
+ *
+ * 一条记录总是完整地留在缓冲区里直到写出, 所以子类可以在写完记录后回填记录开头的长度.
+ * </pre>
+ *
+ * @ClassName: AbstractOutputSink.java
+ * @author: LiHaiQing
+ * @date: 2026/10/19 19:30
+ * @version V1.0.0
+ */
+public abstract class AbstractOutputSink implements OutputSink {
+
+    public static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+
+    private OutputStream myOut;
+    private int myBufferSize;
+    protected byte[] myBuffer;
+    protected int myCount;
+
+    protected AbstractOutputSink(OutputStream out, int bufferSize){
+        if (bufferSize < 16) {
+            throw new IllegalArgumentException("bufferSize is too small: " + bufferSize);
+        }
+        myOut = out;
+        myBufferSize = bufferSize;
+        myBuffer = new byte[bufferSize + bufferSize / 4];
+    }
+
+    @Override
+    public void flush() throws SVNException {
+        try {
+            flushBuffer();
+            myOut.flush();
+        } catch (IOException e) {
+            throw ioError(e);
+        }
+    }
+
+    @Override
+    public void close() throws SVNException {
+        try {
+            flushBuffer();
+            myOut.close();
+        } catch (IOException e) {
+            throw ioError(e);
+        }
+    }
+
+    /**
+     * 一条记录写完后调用, 缓冲区满了才写到底层流
+     */
+    protected void endRecord() throws SVNException {
+        if (myCount >= myBufferSize) {
+            try {
+                flushBuffer();
+            } catch (IOException e) {
+                throw ioError(e);
+            }
+        }
+    }
+
+    protected void ensureCapacity(int length) {
+        if (myCount + length > myBuffer.length) {
+            myBuffer = Arrays.copyOf(myBuffer, Math.max(myBuffer.length * 2, myCount + length));
+        }
+    }
+
+    protected void writeByte(int b) {
+        ensureCapacity(1);
+        myBuffer[myCount++] = (byte) b;
+    }
+
+    /**
+     * 只用于 ASCII 常量(字段名等)
+     */
+    protected void writeAscii(String s) {
+        int length = s.length();
+        ensureCapacity(length);
+        for (int i = 0; i < length; i++) {
+            myBuffer[myCount++] = (byte) s.charAt(i);
+        }
+    }
+
+    /**
+     * 十进制写出 value, 不经过 Long.toString
+     */
+    protected void writeDecimal(long value) {
+        ensureCapacity(20);
+        if (value == Long.MIN_VALUE) {
+            writeAscii("-9223372036854775808");
+            return;
+        }
+        if (value < 0) {
+            myBuffer[myCount++] = '-';
+            value = -value;
+        }
+        int start = myCount;
+        do {
+            myBuffer[myCount++] = (byte) ('0' + value % 10);
+            value /= 10;
+        } while (value != 0);
+        for (int i = start, j = myCount - 1; i < j; i++, j--) {
+            byte b = myBuffer[i];
+            myBuffer[i] = myBuffer[j];
+            myBuffer[j] = b;
+        }
+    }
+
+    /**
+     * 把 s 按 UTF-8 编码写进缓冲区
+     */
+    protected void writeUTF8(String s) {
+        writeUTF8(s, 0, s.length());
+    }
+
+    /**
+     * 把 s 的 [start, end) 按 UTF-8 编码写进缓冲区
+     */
+    protected void writeUTF8(String s, int start, int end) {
+        ensureCapacity((end - start) * 3);
+        for (int i = start; i < end; i++) {
+            char c = s.charAt(i);
+            if (c < 0x80) {
+                myBuffer[myCount++] = (byte) c;
+            } else if (c < 0x800) {
+                myBuffer[myCount++] = (byte) (0xC0 | c >> 6);
+                myBuffer[myCount++] = (byte) (0x80 | c & 0x3F);
+            } else if (Character.isHighSurrogate(c) && i + 1 < end && Character.isLowSurrogate(s.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, s.charAt(++i));
+                myBuffer[myCount++] = (byte) (0xF0 | codePoint >> 18);
+                myBuffer[myCount++] = (byte) (0x80 | codePoint >> 12 & 0x3F);
+                myBuffer[myCount++] = (byte) (0x80 | codePoint >> 6 & 0x3F);
+                myBuffer[myCount++] = (byte) (0x80 | codePoint & 0x3F);
+            } else if (Character.isSurrogate(c)) {
+                myBuffer[myCount++] = '?';
+            } else {
+                myBuffer[myCount++] = (byte) (0xE0 | c >> 12);
+                myBuffer[myCount++] = (byte) (0x80 | c >> 6 & 0x3F);
+                myBuffer[myCount++] = (byte) (0x80 | c & 0x3F);
+            }
+        }
+    }
+
+    /**
+     * s 按 writeUTF8 编码后的字节数
+     */
+    protected static int utf8Length(String s) {
+        int length = s.length();
+        int bytes = 0;
+        for (int i = 0; i < length; i++) {
+            char c = s.charAt(i);
+            if (c < 0x80) {
+                bytes++;
+            } else if (c < 0x800) {
+                bytes += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(s.charAt(i + 1))) {
+                bytes += 4;
+                i++;
+            } else if (Character.isSurrogate(c)) {
+                bytes++;
+            } else {
+                bytes += 3;
+            }
+        }
+        return bytes;
+    }
+
+    protected static SVNException ioError(IOException e) {
+        SVNErrorMessage err = SVNErrorMessage.create(SVNErrorCode.IO_ERROR, "error: cannot write output: {0}",
+                                                     e.getMessage());
+        return new SVNException(err, e);
+    }
+
+    private void flushBuffer() throws IOException {
+        if (myCount > 0) {
+            myOut.write(myBuffer, 0, myCount);
+            myCount = 0;
+        }
+        if (myBuffer.length > myBufferSize * 4) {
+            /**
+             * 某条特别大的记录把缓冲区撑大了, 写出后恢复到原来的大小
+             */
+            myBuffer = new byte[myBufferSize + myBufferSize / 4];
+        }
+    }
+}
@@ -0,0 +1,167 @@
+/**
+ * <pre>
+ * Copyright (C), 2026, 杭州共道科技
+ * FileName: BinarySink
+ * Author:   LiHaiQing
+ * Date:     2026/10/19 19:30
+ * Description: 带长度前缀的紧凑二进制输出
+ * History:
+ * <author>          <time>          <version>          <desc>
+ * 作者姓名           修改时间           版本号              描述
+ * </pre>
+ */
+package com.snoopy.subversion.output;
+
+import java.io.File;
+import java.io.OutputStream;
+import java.util.Date;
+import java.util.Map;
+
+import org.tmatesoft.svn.core.SVNDirEntry;
+import org.tmatesoft.svn.core.SVNException;
+import org.tmatesoft.svn.core.SVNLogEntry;
+import org.tmatesoft.svn.core.SVNLogEntryPath;
+import org.tmatesoft.svn.core.SVNNodeKind;
+import org.tmatesoft.svn.core.wc.SVNEvent;
+
+/**
+ * <pre>
+ * 每条记录为 4 字节大端的长度(不含这 4 个字节) + 1 字节记录类型 + 字段, 读取方可以按长度跳过不认识的记录.
+ *
+ *  整数    zigzag 编码的 varint (与 protobuf 的 sint64 相同), -1 和没有的值只占 1 字节
+ *  字符串  varint(UTF-8 字节数 + 1) + UTF-8 字节, null 为单个 0
+ *  日期    毫秒时间戳的整数, null 为 -1
+ *  节点类型 1 字节: 0 none, 1 file, 2 dir, 3 unknown
+ *
+ *  TYPE_DIR_ENTRY  path, kind, size, revision, author, date, hasProperties(1 字节)
+ *  TYPE_LOG_ENTRY  revision, author, date, message, 路径数(整数), 每个路径: action(1 字节), path, kind, copyPath, copyRevision
+ *  TYPE_EVENT      action, path, kind, revision
+ * </pre>
+ *
+ * @ClassName: BinarySink.java
+ * @author: LiHaiQing
+ * @date: 2026/10/19 19:30
+ * @version V1.0.0
+ */
+public class BinarySink extends AbstractOutputSink {
+
+    public static final byte TYPE_DIR_ENTRY = 1;
+    public static final byte TYPE_LOG_ENTRY = 2;
+    public static final byte TYPE_EVENT = 3;
+
+    /**
+     * 当前记录长度字段在缓冲区中的位置
+     */
+    private int myRecordStart;
+
+    public BinarySink(OutputStream out){
+        this(out, DEFAULT_BUFFER_SIZE);
+    }
+
+    public BinarySink(OutputStream out, int bufferSize){
+        super(out, bufferSize);
+    }
+
+    @Override
+    public void writeDirEntry(SVNDirEntry entry) throws SVNException {
+        startRecord(TYPE_DIR_ENTRY);
+        writeString(entry.getRelativePath() != null ? entry.getRelativePath() : entry.getName());
+        writeKind(entry.getKind());
+        writeLong(entry.getSize());
+        writeLong(entry.getRevision());
+        writeString(entry.getAuthor());
+        writeDate(entry.getDate());
+        writeByte(entry.hasProperties() ? 1 : 0);
+        endRecord();
+    }
+
+    @Override
+    public void writeLogEntry(SVNLogEntry entry) throws SVNException {
+        startRecord(TYPE_LOG_ENTRY);
+        writeLong(entry.getRevision());
+        writeString(entry.getAuthor());
+        writeDate(entry.getDate());
+        writeString(entry.getMessage());
+        Map<String, SVNLogEntryPath> changedPaths = entry.getChangedPaths();
+        writeLong(changedPaths == null ? 0 : changedPaths.size());
+        if (changedPaths != null) {
+            for (SVNLogEntryPath path : changedPaths.values()) {
+                writeByte(path.getType());
+                writeString(path.getPath());
+                writeKind(path.getKind());
+                writeString(path.getCopyPath());
+                writeLong(path.getCopyRevision());
+            }
+        }
+        endRecord();
+    }
+
+    @Override
+    public void writeEvent(SVNEvent event) throws SVNException {
+        startRecord(TYPE_EVENT);
+        writeString(event.getAction() == null ? null : event.getAction().toString());
+        File file = event.getFile();
+        writeString(file != null ? file.getPath() : event.getURL() != null ? event.getURL().toString() : null);
+        writeKind(event.getNodeKind());
+        writeLong(event.getRevision());
+        endRecord();
+    }
+
+    @Override
+    protected void endRecord() throws SVNException {
+        int length = myCount - myRecordStart - 4;
+        myBuffer[myRecordStart] = (byte) (length >>> 24);
+        myBuffer[myRecordStart + 1] = (byte) (length >>> 16);
+        myBuffer[myRecordStart + 2] = (byte) (length >>> 8);
+        myBuffer[myRecordStart + 3] = (byte) length;
+        super.endRecord();
+    }
+
+    private void startRecord(byte type) {
+        ensureCapacity(5);
+        myRecordStart = myCount;
+        myCount += 4;
+        myBuffer[myCount++] = type;
+    }
+
+    private void writeLong(long value) {
+        ensureCapacity(10);
+        long zigzag = (value << 1) ^ (value >> 63);
+        while ((zigzag & ~0x7FL) != 0) {
+            myBuffer[myCount++] = (byte) (zigzag & 0x7F | 0x80);
+            zigzag >>>= 7;
+        }
+        myBuffer[myCount++] = (byte) zigzag;
+    }
+
+    private void writeString(String s) {
+        if (s == null) {
+            writeByte(0);
+            return;
+        }
+        int length = utf8Length(s) + 1;
+        ensureCapacity(5);
+        while ((length & ~0x7F) != 0) {
+            myBuffer[myCount++] = (byte) (length & 0x7F | 0x80);
+            length >>>= 7;
+        }
+        myBuffer[myCount++] = (byte) length;
+        writeUTF8(s);
+    }
+
+    private void writeDate(Date date) {
+        writeLong(date == null ? -1 : date.getTime());
+    }
+
+    private void writeKind(SVNNodeKind kind) {
+        if (kind == SVNNodeKind.FILE) {
+            writeByte(1);
+        } else if (kind == SVNNodeKind.DIR) {
+            writeByte(2);
+        } else if (kind == SVNNodeKind.UNKNOWN) {
+            writeByte(3);
+        } else {
+            writeByte(0);
+        }
+    }
+}
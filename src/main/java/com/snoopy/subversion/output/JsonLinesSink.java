@@ -0,0 +1,164 @@
+/**
+ * <pre>
+ * Copyright (C), 2026, 杭州共道科技
+ * FileName: JsonLinesSink
+ * Author:   LiHaiQing
+ * Date:     2026/10/19 19:30
+ * Description: JSON Lines 格式的缓冲输出
+ * History:
+ * <author>          <time>          <version>          <desc>
+ * 作者姓名           修改时间           版本号              描述
+ * </pre>
+ */
+package com.snoopy.subversion.output;
+
+import java.io.File;
+import java.io.OutputStream;
+import java.util.Date;
+import java.util.Map;
+
+import org.tmatesoft.svn.core.SVNDirEntry;
+import org.tmatesoft.svn.core.SVNException;
+import org.tmatesoft.svn.core.SVNLogEntry;
+import org.tmatesoft.svn.core.SVNLogEntryPath;
+import org.tmatesoft.svn.core.SVNNodeKind;
+import org.tmatesoft.svn.core.wc.SVNEvent;
+
+/**
+ * <pre>
+ * 每条记录一行 JSON (UTF-8), 日期为毫秒时间戳, 没有的值为 null:
+ *
+ *  {"type":"entry","path":"trunk/a","kind":"dir","size":0,"revision":4,"author":"li","date":1760860800000,"hasProperties":false}
+ *  {"type":"log","revision":4,"author":"li","date":1760860800000,"message":"...","paths":[{"action":"A","path":"/trunk/a","kind":"dir","copyPath":null,"copyRevision":-1}]}
+ *  {"type":"event","action":"commit_modified","path":"/wc/trunk/a.txt","kind":"file","revision":-1}
+ * </pre>
+ *
+ * @ClassName: JsonLinesSink.java
+ * @author: LiHaiQing
+ * @date: 2026/10/19 19:30
+ * @version V1.0.0
+ */
+public class JsonLinesSink extends AbstractOutputSink {
+
+    private static final byte[] HEX = "0123456789abcdef".getBytes();
+
+    public JsonLinesSink(OutputStream out){
+        this(out, DEFAULT_BUFFER_SIZE);
+    }
+
+    public JsonLinesSink(OutputStream out, int bufferSize){
+        super(out, bufferSize);
+    }
+
+    @Override
+    public void writeDirEntry(SVNDirEntry entry) throws SVNException {
+        writeAscii("{\"type\":\"entry\",\"path\":");
+        writeString(entry.getRelativePath() != null ? entry.getRelativePath() : entry.getName());
+        writeAscii(",\"kind\":");
+        writeString(entry.getKind() == null ? null : entry.getKind().toString());
+        writeAscii(",\"size\":");
+        writeDecimal(entry.getSize());
+        writeAscii(",\"revision\":");
+        writeDecimal(entry.getRevision());
+        writeAscii(",\"author\":");
+        writeString(entry.getAuthor());
+        writeAscii(",\"date\":");
+        writeDate(entry.getDate());
+        writeAscii(entry.hasProperties() ? ",\"hasProperties\":true}\n" : ",\"hasProperties\":false}\n");
+        endRecord();
+    }
+
+    @Override
+    public void writeLogEntry(SVNLogEntry entry) throws SVNException {
+        writeAscii("{\"type\":\"log\",\"revision\":");
+        writeDecimal(entry.getRevision());
+        writeAscii(",\"author\":");
+        writeString(entry.getAuthor());
+        writeAscii(",\"date\":");
+        writeDate(entry.getDate());
+        writeAscii(",\"message\":");
+        writeString(entry.getMessage());
+        writeAscii(",\"paths\":[");
+        Map<String, SVNLogEntryPath> changedPaths = entry.getChangedPaths();
+        if (changedPaths != null) {
+            boolean first = true;
+            for (SVNLogEntryPath path : changedPaths.values()) {
+                writeAscii(first ? "{\"action\":\"" : ",{\"action\":\"");
+                first = false;
+                writeByte(path.getType());
+                writeAscii("\",\"path\":");
+                writeString(path.getPath());
+                writeAscii(",\"kind\":");
+                writeString(path.getKind() == null ? null : path.getKind().toString());
+                writeAscii(",\"copyPath\":");
+                writeString(path.getCopyPath());
+                writeAscii(",\"copyRevision\":");
+                writeDecimal(path.getCopyRevision());
+                writeByte('}');
+            }
+        }
+        writeAscii("]}\n");
+        endRecord();
+    }
+
+    @Override
+    public void writeEvent(SVNEvent event) throws SVNException {
+        writeAscii("{\"type\":\"event\",\"action\":");
+        writeString(event.getAction() == null ? null : event.getAction().toString());
+        writeAscii(",\"path\":");
+        File file = event.getFile();
+        writeString(file != null ? file.getPath() : event.getURL() != null ? event.getURL().toString() : null);
+        writeAscii(",\"kind\":");
+        SVNNodeKind kind = event.getNodeKind();
+        writeString(kind == null ? null : kind.toString());
+        writeAscii(",\"revision\":");
+        writeDecimal(event.getRevision());
+        writeAscii("}\n");
+        endRecord();
+    }
+
+    private void writeDate(Date date) {
+        if (date == null) {
+            writeAscii("null");
+        } else {
+            writeDecimal(date.getTime());
+        }
+    }
+
+    /**
+     * JSON 字符串, 需要转义的字符就地转义, null 写为 null
+     */
+    private void writeString(String s) {
+        if (s == null) {
+            writeAscii("null");
+            return;
+        }
+        writeByte('"');
+        int length = s.length();
+        int start = 0;
+        for (int i = 0; i < length; i++) {
+            char c = s.charAt(i);
+            if (c >= 0x20 && c != '"' && c != '\\') {
+                continue;
+            }
+            writeUTF8(s, start, i);
+            start = i + 1;
+            writeByte('\\');
+            if (c == '"' || c == '\\') {
+                writeByte(c);
+            } else if (c == '\n') {
+                writeByte('n');
+            } else if (c == '\r') {
+                writeByte('r');
+            } else if (c == '\t') {
+                writeByte('t');
+            } else {
+                writeAscii("u00");
+                writeByte(HEX[c >> 4]);
+                writeByte(HEX[c & 0xF]);
+            }
+        }
+        writeUTF8(s, start, length);
+        writeByte('"');
+    }
+}
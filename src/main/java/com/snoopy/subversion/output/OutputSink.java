@@ -0,0 +1,68 @@
+/**
+ * <pre>
+ * Copyright (C), 2026, 杭州共道科技
+ * FileName: OutputSink
+ * Author:   LiHaiQing
+ * Date:     2026/10/19 19:30
+ * Description: 目录条目、日志和事件的输出接口
+ * History:
+ * <author>          <time>          <version>          <desc>
+ * 作者姓名           修改时间           版本号              描述
+ * </pre>
+ */
+package com.snoopy.subversion.output;
+
+import org.tmatesoft.svn.core.SVNDirEntry;
+import org.tmatesoft.svn.core.SVNException;
+import org.tmatesoft.svn.core.SVNLogEntry;
+import org.tmatesoft.svn.core.wc.SVNEvent;
+
+/**
+ * <pre>
+ * 代替 System.out.println 输出目录条目、日志和 working copy 事件.
+ * 实现不是线程安全的, 输出是缓冲的, 用完必须 close (或至少 flush).
+ *
+ * 现有实现:
+ *  JsonLinesSink  每条记录一行 JSON
+ *  BinarySink     带长度前缀的紧凑二进制记录
+ *
+ *  OutputSink sink = OutputSinks.create("json", System.out);
+ *  try {
+ *      DisplayRepositoryTree.listEntries(repository, "", sink);
+ *  } finally {
+ *      sink.close();
+ *  }
+ * </pre>
+ *
+ * @ClassName: OutputSink.java
+ * @author: LiHaiQing
+ * @date: 2026/10/19 19:30
+ * @version V1.0.0
+ */
+public interface OutputSink {
+
+    /**
+     * 输出一个目录条目, 路径取 getRelativePath(), 没有时取 getName()
+     */
+    void writeDirEntry(SVNDirEntry entry) throws SVNException;
+
+    /**
+     * 输出一条日志, 包括 changed paths (如果有)
+     */
+    void writeLogEntry(SVNLogEntry entry) throws SVNException;
+
+    /**
+     * 输出一个 working copy 操作事件(提交、更新、添加等)
+     */
+    void writeEvent(SVNEvent event) throws SVNException;
+
+    /**
+     * 把缓冲的记录写到底层流并 flush
+     */
+    void flush() throws SVNException;
+
+    /**
+     * flush 并关闭底层流
+     */
+    void close() throws SVNException;
+}
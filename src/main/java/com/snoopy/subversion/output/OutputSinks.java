@@ -0,0 +1,76 @@
+/**
+ * <pre>
+ * Copyright (C), 2026, 杭州共道科技
+ * FileName: OutputSinks
+ * Author:   LiHaiQing
+ * Date:     2026/10/19 19:30
+ * Description: 按格式名创建 OutputSink
+ * History:
+ * <author>          <time>          <version>          <desc>
+ * 作者姓名           修改时间           版本号              描述
+ * </pre>
+ */
+package com.snoopy.subversion.output;
+
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * <pre>
+ * 格式名: "json" 为 JsonLinesSink, "binary" 为 BinarySink.
+ * out 为 System.out 时直接写标准输出的文件描述符, 绕开 PrintStream 的同步和自动 flush,
+ * 关闭 sink 时不会关闭标准输出.
+ *
+ *  OutputSink sink = OutputSinks.create("binary", System.out);
+ * </pre>
+ *
+ * @ClassName: OutputSinks.java
+ * @author: LiHaiQing
+ * @date: 2026/10/19 19:30
+ * @version V1.0.0
+ */
+public class OutputSinks {
+
+    private OutputSinks(){
+    }
+
+    public static OutputSink create(String format, OutputStream out) {
+        if (out == System.out) {
+            out = openStandardOutput();
+        }
+        if ("json".equalsIgnoreCase(format)) {
+            return new JsonLinesSink(out);
+        } else if ("binary".equalsIgnoreCase(format)) {
+            return new BinarySink(out);
+        }
+        throw new IllegalArgumentException("unknown output format: " + format);
+    }
+
+    /**
+     * 直接写标准输出文件描述符的流, 关闭时只 flush, 不关闭标准输出. <br>
+     */
+    public static OutputStream openStandardOutput() {
+        /**
+         * System.out 里可能还有没 flush 的内容, 先写出去保证顺序
+         */
+        System.out.flush();
+        return new FilterOutputStream(new FileOutputStream(FileDescriptor.out)) {
+
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                this.out.write(b, off, len);
+            }
+
+            @Override
+            public void close() throws IOException {
+                /**
+                 * 不关闭标准输出
+                 */
+                flush();
+            }
+        };
+    }
+}
@@ -0,0 +1,433 @@
+/**
+ * <pre>
+ * Copyright (C), 2026, 杭州共道科技
+ * FileName: SvnSessionPool
+ * Author:   LiHaiQing
+ * Date:     2026/10/19 16:40
+ * Description: SVNRepository会话池
+ * History:
+ * <author>          <time>          <version>          <desc>
+ * 作者姓名           修改时间           版本号              描述
+ * </pre>
+ */
+package com.snoopy.subversion.pool;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.tmatesoft.svn.core.SVNCancelException;
+import org.tmatesoft.svn.core.SVNErrorCode;
+import org.tmatesoft.svn.core.SVNErrorMessage;
+import org.tmatesoft.svn.core.SVNException;
+import org.tmatesoft.svn.core.SVNURL;
+import org.tmatesoft.svn.core.auth.ISVNAuthenticationManager;
+import org.tmatesoft.svn.core.internal.io.dav.DAVRepositoryFactory;
+import org.tmatesoft.svn.core.internal.io.fs.FSRepositoryFactory;
+import org.tmatesoft.svn.core.internal.io.svn.SVNRepositoryFactoryImpl;
+import org.tmatesoft.svn.core.io.SVNRepository;
+import org.tmatesoft.svn.core.io.SVNRepositoryFactory;
+import org.tmatesoft.svn.core.wc.SVNWCUtil;
+
+/**
+ * <pre>
+ * 复用已经建立连接并通过认证的 SVNRepository 会话, 短小的读操作不必每次都重新握手.
+ *
+ * - 会话按 (协议://主机:端口, 用户名, 密码) 分组, 借出时优先选仓库根包含目标 URL 的空闲会话,
+ *   再用 setLocation 切换到目标 URL, 同一仓库内切换不会断开连接;
+ * - 每个主机同时存在的会话(空闲加借出)不超过 maxSessionsPerHost, 满了以后 borrow 等待归还;
+ * - SVNRepository 不可重入, 一个会话借出后归还前不会再借给别人, 归还不是借出状态的会话会抛 IllegalStateException;
+ * - 空闲超过 validateAfterMillis 的会话借出前先 testConnection(), 失败则丢弃重建;
+ *   空闲超过 maxIdleMillis 的会话在下次访问该主机时关闭.
+ *
+ *  SVNRepository repository = SvnSessionPool.getInstance().borrow(url, name, password);
+ *  try {
+ *      repository.getFile(path, -1, properties, out);
+ *  } finally {
+ *      SvnSessionPool.getInstance().release(repository);
+ *  }
+ *
+ * 会话在使用中出错(连接断开等)时用 invalidate 代替 release, 会话会被关闭而不是放回池中.
+ * </pre>
+ *
+ * @ClassName: SvnSessionPool.java
+ * @author: LiHaiQing
+ * @date: 2026/10/19 16:40
+ * @version V1.0.0
+ */
+public class SvnSessionPool {
+
+    private static Logger logger = LoggerFactory.getLogger(SvnSessionPool.class);
+
+    public static final int DEFAULT_MAX_SESSIONS_PER_HOST = 8;
+    public static final long DEFAULT_VALIDATE_AFTER_MILLIS = 30 * 1000L;
+    public static final long DEFAULT_MAX_IDLE_MILLIS = 5 * 60 * 1000L;
+    public static final long DEFAULT_BORROW_TIMEOUT_MILLIS = 60 * 1000L;
+
+    private int myMaxSessionsPerHost;
+    private long myValidateAfterMillis;
+    private long myMaxIdleMillis;
+    private long myBorrowTimeoutMillis;
+
+    /**
+     * 分组 -> 空闲会话, 最近归还的在队首
+     */
+    private Map<PoolKey, Deque<IdleSession>> myIdleSessions = new HashMap<PoolKey, Deque<IdleSession>>();
+    /**
+     * 主机 -> 会话总数(空闲加借出)
+     */
+    private Map<String, Integer> myHostSessionCounts = new HashMap<String, Integer>();
+    private Map<SVNRepository, PoolKey> myBorrowedSessions = new IdentityHashMap<SVNRepository, PoolKey>();
+    private boolean myIsClosed;
+
+    public static SvnSessionPool getInstance() {
+        return Single.INSTANCE.getInstance();
+    }
+
+    enum Single {
+                 // 单例
+                 INSTANCE;
+
+        private SvnSessionPool single = new SvnSessionPool(DEFAULT_MAX_SESSIONS_PER_HOST,
+                                                           DEFAULT_VALIDATE_AFTER_MILLIS, DEFAULT_MAX_IDLE_MILLIS,
+                                                           DEFAULT_BORROW_TIMEOUT_MILLIS);
+
+        public SvnSessionPool getInstance() {
+            return single;
+        }
+    }
+
+    public SvnSessionPool(int maxSessionsPerHost, long validateAfterMillis, long maxIdleMillis,
+                          long borrowTimeoutMillis){
+        if (maxSessionsPerHost < 1) {
+            throw new IllegalArgumentException("maxSessionsPerHost must be positive");
+        }
+        myMaxSessionsPerHost = maxSessionsPerHost;
+        myValidateAfterMillis = validateAfterMillis;
+        myMaxIdleMillis = maxIdleMillis;
+        myBorrowTimeoutMillis = borrowTimeoutMillis;
+        setupLibrary();
+    }
+
+    public int getMaxSessionsPerHost() {
+        return myMaxSessionsPerHost;
+    }
+
+    /**
+     * 借出一个指向 url 的会话, 用完必须 release 或 invalidate. <br>
+     */
+    public SVNRepository borrow(SVNURL url, String userName, String password) throws SVNException {
+        PoolKey key = new PoolKey(url, userName, password);
+        long deadline = System.currentTimeMillis() + myBorrowTimeoutMillis;
+        while (true) {
+            SVNRepository repository = null;
+            boolean create = false;
+            boolean validate = false;
+            /**
+             * 要关闭的过期会话, 关闭可能要等网络, 在锁外进行, 以免阻塞其它借还
+             */
+            List<SVNRepository> discarded = new ArrayList<SVNRepository>();
+            try {
+                synchronized (this) {
+                    if (myIsClosed) {
+                        throw new IllegalStateException("session pool is closed");
+                    }
+                    evictExpired(key.myHost, discarded);
+                    IdleSession idle = takeIdle(key, url);
+                    if (idle != null) {
+                        repository = idle.myRepository;
+                        myBorrowedSessions.put(repository, key);
+                        validate = System.currentTimeMillis() - idle.myReleaseTime >= myValidateAfterMillis;
+                    } else if (getHostSessionCount(key.myHost) < myMaxSessionsPerHost) {
+                        myHostSessionCounts.put(key.myHost, getHostSessionCount(key.myHost) + 1);
+                        create = true;
+                    } else {
+                        waitForRelease(url, deadline, discarded);
+                        continue;
+                    }
+                }
+            } finally {
+                closeSessions(discarded);
+            }
+            if (create) {
+                try {
+                    repository = SVNRepositoryFactory.create(url);
+                    repository.setAuthenticationManager(createAuthenticationManager(userName, password));
+                } catch (SVNException e) {
+                    synchronized (this) {
+                        decrementHostSessionCount(key.myHost);
+                        notifyAll();
+                    }
+                    throw e;
+                }
+                synchronized (this) {
+                    myBorrowedSessions.put(repository, key);
+                }
+                return repository;
+            }
+            if (validate) {
+                /**
+                 * 空闲较久的会话, 在锁外检测连接是否还可用
+                 */
+                try {
+                    repository.testConnection();
+                } catch (SVNException e) {
+                    logger.debug("discarding stale session to {}: {}", url, e.getMessage());
+                    invalidate(repository);
+                    continue;
+                }
+            }
+            return relocate(repository, url);
+        }
+    }
+
+    /**
+     * 归还会话, 会话保持连接放入空闲队列; 池已关闭时在锁外关闭会话
+     */
+    public void release(SVNRepository repository) {
+        synchronized (this) {
+            PoolKey key = myBorrowedSessions.remove(repository);
+            if (key == null) {
+                throw new IllegalStateException("session is not borrowed from this pool: " + repository.getLocation());
+            }
+            if (!myIsClosed) {
+                Deque<IdleSession> idleSessions = myIdleSessions.get(key);
+                if (idleSessions == null) {
+                    idleSessions = new ArrayDeque<IdleSession>();
+                    myIdleSessions.put(key, idleSessions);
+                }
+                idleSessions.addFirst(new IdleSession(repository, System.currentTimeMillis()));
+                notifyAll();
+                return;
+            }
+            decrementHostSessionCount(key.myHost);
+            notifyAll();
+        }
+        repository.closeSession();
+    }
+
+    /**
+     * 关闭并丢弃一个借出的会话, 用于会话使用中出错的情况
+     */
+    public void invalidate(SVNRepository repository) {
+        PoolKey key;
+        synchronized (this) {
+            key = myBorrowedSessions.remove(repository);
+            if (key == null) {
+                throw new IllegalStateException("session is not borrowed from this pool: " + repository.getLocation());
+            }
+            decrementHostSessionCount(key.myHost);
+            notifyAll();
+        }
+        repository.closeSession();
+    }
+
+    /**
+     * 关闭所有空闲会话, 借出中的会话在归还时关闭
+     */
+    public void close() {
+        List<SVNRepository> idleRepositories = new ArrayList<SVNRepository>();
+        synchronized (this) {
+            myIsClosed = true;
+            for (Map.Entry<PoolKey, Deque<IdleSession>> entry : myIdleSessions.entrySet()) {
+                for (IdleSession idle : entry.getValue()) {
+                    idleRepositories.add(idle.myRepository);
+                    decrementHostSessionCount(entry.getKey().myHost);
+                }
+            }
+            myIdleSessions.clear();
+            notifyAll();
+        }
+        closeSessions(idleRepositories);
+    }
+
+    private static void closeSessions(List<SVNRepository> repositories) {
+        for (SVNRepository repository : repositories) {
+            repository.closeSession();
+        }
+    }
+
+    private IdleSession takeIdle(PoolKey key, SVNURL url) {
+        Deque<IdleSession> idleSessions = myIdleSessions.get(key);
+        if (idleSessions == null || idleSessions.isEmpty()) {
+            return null;
+        }
+        /**
+         * 优先选仓库根包含 url 的会话, setLocation 时不需要重新连接
+         */
+        for (Iterator<IdleSession> iterator = idleSessions.iterator(); iterator.hasNext();) {
+            IdleSession idle = iterator.next();
+            if (isAncestor(getCachedRepositoryRoot(idle.myRepository), url)) {
+                iterator.remove();
+                return idle;
+            }
+        }
+        return idleSessions.pollFirst();
+    }
+
+    /**
+     * 会话已知的仓库根, 不访问服务器, 未知时为 null
+     */
+    private static SVNURL getCachedRepositoryRoot(SVNRepository repository) {
+        try {
+            return repository.getRepositoryRoot(false);
+        } catch (SVNException e) {
+            return null;
+        }
+    }
+
+    private static boolean isAncestor(SVNURL ancestor, SVNURL url) {
+        if (ancestor == null) {
+            return false;
+        }
+        String ancestorPath = ancestor.toString();
+        String path = url.toString();
+        return path.equals(ancestorPath)
+               || (path.startsWith(ancestorPath) && path.charAt(ancestorPath.length()) == '/');
+    }
+
+    private SVNRepository relocate(SVNRepository repository, SVNURL url) throws SVNException {
+        if (!url.equals(repository.getLocation())) {
+            try {
+                repository.setLocation(url, false);
+            } catch (SVNException e) {
+                invalidate(repository);
+                throw e;
+            }
+        }
+        return repository;
+    }
+
+    /**
+     * 把空闲过久的会话移出池, 放进 discarded 由调用方在锁外关闭
+     */
+    private void evictExpired(String host, List<SVNRepository> discarded) {
+        long now = System.currentTimeMillis();
+        for (Map.Entry<PoolKey, Deque<IdleSession>> entry : myIdleSessions.entrySet()) {
+            if (!entry.getKey().myHost.equals(host)) {
+                continue;
+            }
+            for (Iterator<IdleSession> iterator = entry.getValue().iterator(); iterator.hasNext();) {
+                IdleSession idle = iterator.next();
+                if (now - idle.myReleaseTime >= myMaxIdleMillis) {
+                    iterator.remove();
+                    discarded.add(idle.myRepository);
+                    decrementHostSessionCount(host);
+                }
+            }
+        }
+    }
+
+    /**
+     * 该主机的会话数已满, 若有其它账号的空闲会话则移出一个(放进 discarded 由调用方在锁外关闭)腾出名额, 否则等待归还
+     */
+    private void waitForRelease(SVNURL url, long deadline, List<SVNRepository> discarded) throws SVNException {
+        String host = PoolKey.getHost(url);
+        for (Map.Entry<PoolKey, Deque<IdleSession>> entry : myIdleSessions.entrySet()) {
+            if (entry.getKey().myHost.equals(host) && !entry.getValue().isEmpty()) {
+                discarded.add(entry.getValue().pollLast().myRepository);
+                decrementHostSessionCount(host);
+                return;
+            }
+        }
+        long timeout = deadline - System.currentTimeMillis();
+        if (timeout <= 0) {
+            SVNErrorMessage err = SVNErrorMessage.create(SVNErrorCode.CANCELLED,
+                                                         "timed out waiting for a free session to ''{0}''", host);
+            throw new SVNCancelException(err);
+        }
+        try {
+            wait(timeout);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SVNCancelException();
+        }
+    }
+
+    private int getHostSessionCount(String host) {
+        Integer count = myHostSessionCounts.get(host);
+        return count == null ? 0 : count;
+    }
+
+    private void decrementHostSessionCount(String host) {
+        int count = getHostSessionCount(host) - 1;
+        if (count <= 0) {
+            myHostSessionCounts.remove(host);
+        } else {
+            myHostSessionCounts.put(host, count);
+        }
+    }
+
+    private static ISVNAuthenticationManager createAuthenticationManager(String userName, String password) {
+        return SVNWCUtil.createDefaultAuthenticationManager(userName, password == null ? null
+                                                                                       : password.toCharArray());
+    }
+
+    /**
+     * Initializes the library to work with a repository via different protocols.
+     */
+    private static void setupLibrary() {
+        // For using over http:// and https://
+        DAVRepositoryFactory.setup();
+        // For using over svn:// and svn+xxx://
+        SVNRepositoryFactoryImpl.setup();
+        // For using over file:///
+        FSRepositoryFactory.setup();
+    }
+
+    private static class IdleSession {
+
+        private SVNRepository myRepository;
+        private long myReleaseTime;
+
+        IdleSession(SVNRepository repository, long releaseTime){
+            myRepository = repository;
+            myReleaseTime = releaseTime;
+        }
+    }
+
+    private static class PoolKey {
+
+        private String myHost;
+        private String myUserName;
+        private String myPassword;
+
+        PoolKey(SVNURL url, String userName, String password){
+            myHost = getHost(url);
+            myUserName = userName;
+            myPassword = password;
+        }
+
+        static String getHost(SVNURL url) {
+            return url.getProtocol() + "://" + url.getHost() + ":" + url.getPort();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof PoolKey)) {
+                return false;
+            }
+            PoolKey key = (PoolKey) o;
+            return myHost.equals(key.myHost) && equals(myUserName, key.myUserName)
+                   && equals(myPassword, key.myPassword);
+        }
+
+        @Override
+        public int hashCode() {
+            int hash = myHost.hashCode();
+            hash = hash * 31 + (myUserName == null ? 0 : myUserName.hashCode());
+            return hash * 31 + (myPassword == null ? 0 : myPassword.hashCode());
+        }
+
+        private static boolean equals(String a, String b) {
+            return a == null ? b == null : a.equals(b);
+        }
+    }
+}
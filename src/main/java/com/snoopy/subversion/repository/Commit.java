@@ -12,6 +12,7 @@
 package com.snoopy.subversion.repository;
 
 import java.io.ByteArrayInputStream;
+import java.io.File;
 
 import org.tmatesoft.svn.core.SVNCommitInfo;
 import org.tmatesoft.svn.core.SVNErrorCode;
@@ -29,6 +30,9 @@ import org.tmatesoft.svn.core.io.SVNRepositoryFactory;
 import org.tmatesoft.svn.core.io.diff.SVNDeltaGenerator;
 import org.tmatesoft.svn.core.wc.SVNWCUtil;
 
+import com.snoopy.subversion.commit.BulkCommitBuilder;
+import com.snoopy.subversion.file.FileContentCache;
+
 /**
  *<pre>
  * This is an example of how to commit several types of changes to a repository:
@@ -96,6 +100,10 @@ import org.tmatesoft.svn.core.wc.SVNWCUtil;
  */
 public class Commit {
 
+    /**
+     * args[0] - optional local directory committed as a whole into "generated"
+     * after the examples, in a single transaction.
+     */
     public static void main(String[] args) {
         /**
          * Initialize the library. It must be done before calling any 
@@ -107,7 +115,7 @@ public class Commit {
          * Run commit example and process error if any.
          */
         try {
-            commitExample();
+            commitExample(args != null && args.length >= 1 ? args[0] : null);
         } catch (SVNException e) {
             SVNErrorMessage err = e.getErrorMessage();
             /**
@@ -123,7 +131,7 @@ public class Commit {
         System.exit(0);
     }
 
-    private static void commitExample() throws SVNException {
+    private static void commitExample(String generatedDirectory) throws SVNException {
         /**
          * URL that points to repository. 
          */
@@ -267,6 +275,35 @@ public class Commit {
         commitInfo = deleteDir(editor, "test2");
         System.out.println("The copied directory was deleted: " + commitInfo);
         
+        /**
+         * Commit a whole local tree, e.g. generated sources, in one transaction.
+         * BulkCommitBuilder walks the directory in sorted path order, opens and
+         * closes each repository directory once and streams every file through
+         * SVNDeltaGenerator, so neither the number of files nor their sizes are
+         * limited by memory. Files that already exist are replaced.
+         * 
+         * Unlike modifyFile() above, the caller usually does not hold the old contents
+         * of a file. The base cache keeps the contents of every committed file keyed by
+         * path, revision and checksum, so the next commit sends a real binary delta
+         * against it: editing one line of a huge file uploads a few kilobytes, and
+         * files whose contents did not change are skipped. It has a directory of its
+         * own: opening a cache trims it to the size given by that caller, so sharing
+         * the directory with the smaller cache of DisplayFile would drop the bases.
+         */
+        if (generatedDirectory != null) {
+            FileContentCache baseCache = FileContentCache.open(BulkCommitBuilder.getDefaultBaseCacheDirectory(), 1L << 30);
+            try {
+                BulkCommitBuilder builder = new BulkCommitBuilder(repository, "generated tree committed");
+                builder.setBaseCache(baseCache);
+                builder.addTree("generated", new File(generatedDirectory));
+                commitInfo = builder.commit();
+                System.out.println("The generated tree was committed: " + commitInfo + " (" + builder.getAddedFiles() 
+                        + " files added, " + builder.getChangedFiles() + " files changed, " + builder.getDeltaBytes() + " bytes sent)");
+            } finally {
+                baseCache.close();
+            }
+        }
+        
         latestRevision = repository.getLatestRevision();
         System.out.println("Repository latest revision (after committing): " + latestRevision);
     }
@@ -11,29 +11,30 @@
  */
 package com.snoopy.subversion.repository;
 
-import java.io.ByteArrayOutputStream;
-import java.io.IOException;
+import java.io.OutputStream;
 import java.util.Iterator;
 
 import org.tmatesoft.svn.core.SVNException;
 import org.tmatesoft.svn.core.SVNNodeKind;
 import org.tmatesoft.svn.core.SVNProperties;
-import org.tmatesoft.svn.core.SVNProperty;
 import org.tmatesoft.svn.core.SVNURL;
-import org.tmatesoft.svn.core.auth.ISVNAuthenticationManager;
 import org.tmatesoft.svn.core.internal.io.dav.DAVRepositoryFactory;
 import org.tmatesoft.svn.core.internal.io.fs.FSRepositoryFactory;
 import org.tmatesoft.svn.core.internal.io.svn.SVNRepositoryFactoryImpl;
 import org.tmatesoft.svn.core.io.SVNRepository;
-import org.tmatesoft.svn.core.io.SVNRepositoryFactory;
-import org.tmatesoft.svn.core.wc.SVNWCUtil;
+
+import com.snoopy.subversion.file.FileContentCache;
+import com.snoopy.subversion.file.FileContentHandler;
+import com.snoopy.subversion.file.MimeTypeProbe;
+import com.snoopy.subversion.pool.SvnSessionPool;
 
 /**
  * <pre>
  * This example shows how to fetch a file and its properties from the repository
- * at the latest (HEAD) revision . If the file is a text (either it has no
- * svn:mime-type property at all or if has and the property value is text/-like)
- * its contents as well as properties will be displayed in the console,
+ * at the latest (HEAD) revision . If the file is a text (either it has an
+ * svn:mime-type property whose value is text/-like or it has no such property
+ * and its first few KB look like a text) its contents as well as properties
+ * will be displayed in the console,
  * otherwise - only properties. 
  * As an example here's a part of one of the
  * program layouts (for the default url and file path used in the program):
@@ -107,12 +108,18 @@ public class DisplayFile {
         SVNRepository repository = null;
         try {
             /**
-             * Creates an instance of SVNRepository to work with the repository.
-             * All user's requests to the repository are relative to the
-             * repository location used to create this SVNRepository.
+             * Borrows an SVNRepository to work with the repository from the
+             * session pool. All user's requests to the repository are relative
+             * to the repository location the session was borrowed for.
              * SVNURL is a wrapper for URL strings that refer to repository locations.
+             * 
+             * User's authentication information (name/password) is part of the
+             * pool key: a session that was already connected and authenticated
+             * with the same credentials is reused, so short read operations skip
+             * the connection handshake. A borrowed session must be given back with
+             * SvnSessionPool.release(..) and is never shared between two callers.
              */
-            repository = SVNRepositoryFactory.create(SVNURL.parseURIEncoded(url));
+            repository = SvnSessionPool.getInstance().borrow(SVNURL.parseURIEncoded(url), name, password);
         } catch (SVNException svne) {
             /**
              * Perhaps a malformed URL is the cause of this exception
@@ -123,33 +130,6 @@ public class DisplayFile {
             System.exit(1);
         }
 
-        /**
-         * User's authentication information (name/password) is provided via  an 
-         * ISVNAuthenticationManager  instance.  SVNWCUtil  creates  a   default 
-         * authentication manager given user's name and password.
-         * 
-         * Default authentication manager first attempts to use provided user name 
-         * and password and then falls back to the credentials stored in the 
-         * default Subversion credentials storage that is located in Subversion 
-         * configuration area. If you'd like to use provided user name and password 
-         * only you may use BasicAuthenticationManager class instead of default 
-         * authentication manager:
-         * 
-         *  authManager = new BasicAuthenticationsManager(userName, userPassword);
-         *  
-         * You may also skip this point - anonymous access will be used. 
-         */
-        ISVNAuthenticationManager authManager = SVNWCUtil.createDefaultAuthenticationManager(name, password);
-        repository.setAuthenticationManager(authManager);
-
-        /**
-         * This Map will be used to get the file properties. Each Map key is a
-         * property name and the value associated with the key is the property
-         * value.
-         */
-        SVNProperties fileProperties = new SVNProperties();
-        ByteArrayOutputStream baos = new ByteArrayOutputStream();
-
         try {
             /**
              * Checks up if the specified path really corresponds to a file. If
@@ -167,55 +147,71 @@ public class DisplayFile {
                 System.exit(1);
             }
             /**
-             * Gets the contents and properties of the file located at filePath
-             * in the repository at the latest revision (which is meant by a
-             * negative revision number).
+             * Gets the properties of the file located at filePath in the
+             * repository at the latest revision (which is meant by a negative
+             * revision number) and finds out whether the file is a text.
+             * 
+             * If the file has an svn:mime-type property its value decides;
+             * otherwise only the first few KB of the contents are read and
+             * sniffed the same way 'svn add' does (see MimeTypeProbe), so a
+             * large binary file is never downloaded just to learn that it
+             * can not be displayed.
+             * 
+             * When the file is a text the handler below is called with its
+             * properties and the contents are displayed by the same transfer
+             * that was sniffed: the file is downloaded once and the session
+             * stays connected.
+             * 
+             * The contents are not collected in memory: they are streamed
+             * straight into System.out, so a file of any size is displayed
+             * with constant memory.
+             * 
+             * Committed file contents never change, so they are kept in a
+             * local cache addressed by their checksum (see FileContentCache):
+             * a file that was read before, at this or any other path and
+             * revision with the same contents, is not downloaded again.
              */
-            repository.getFile(filePath, -1, fileProperties, baos);
-
+            FileContentCache contentCache = FileContentCache.open(FileContentCache.getDefaultDirectory(),
+                    256L << 20);
+            MimeTypeProbe.Result probe;
+            try {
+                MimeTypeProbe mimeTypeProbe = new MimeTypeProbe(repository);
+                mimeTypeProbe.setContentCache(contentCache);
+                probe = mimeTypeProbe.probe(filePath, -1, new FileContentHandler() {
+                    @Override
+                    public OutputStream handleProperties(String path, long revision, SVNProperties properties) {
+                        displayProperties(properties);
+                        System.out.println("File contents:");
+                        System.out.println();
+                        return System.out;
+                    }
+                });
+            } finally {
+                contentCache.close();
+            }
+            if (probe.isText()) {
+                /**
+                 * Already displayed by the handler
+                 */
+            } else if (probe.isSniffed()) {
+                displayProperties(probe.getProperties());
+                System.out
+                        .println("File contents can not be displayed in the console since they look like a binary file.");
+            } else {
+                displayProperties(probe.getProperties());
+                System.out
+                        .println("File contents can not be displayed in the console since the mime-type property says that it's not a kind of a text file.");
+            }
+            System.out.flush();
         } catch (SVNException svne) {
+            /**
+             * The session may be broken, so it is closed instead of being
+             * given back to the pool
+             */
+            SvnSessionPool.getInstance().invalidate(repository);
             System.err.println("error while fetching the file contents and properties: " + svne.getMessage());
             System.exit(1);
         }
-
-        /**
-         * Here the SVNProperty class is used to get the value of the
-         * svn:mime-type property (if any). SVNProperty is used to facilitate
-         * the work with versioned properties.
-         */
-        String mimeType = fileProperties.getStringValue(SVNProperty.MIME_TYPE);
-
-        /**
-         * SVNProperty.isTextMimeType(..) method checks up the value of the mime-type
-         * file property and says if the file is a text (true) or not (false).
-         */
-        boolean isTextType = SVNProperty.isTextMimeType(mimeType);
-
-        Iterator iterator = fileProperties.nameSet().iterator();
-        /**
-         * Displays file properties.
-         */
-        while (iterator.hasNext()) {
-            String propertyName = (String) iterator.next();
-            String propertyValue = fileProperties.getStringValue(propertyName);
-            System.out.println("File property: " + propertyName + "="
-                    + propertyValue);
-        }
-        /**
-         * Displays the file contents in the console if the file is a text.
-         */
-        if (isTextType) {
-            System.out.println("File contents:");
-            System.out.println();
-            try {
-                baos.writeTo(System.out);
-            } catch (IOException ioe) {
-                ioe.printStackTrace();
-            }
-        } else {
-            System.out
-                    .println("File contents can not be displayed in the console since the mime-type property says that it's not a kind of a text file.");
-        }
         /**
          * Gets the latest revision number of the repository
          */
@@ -223,15 +219,30 @@ public class DisplayFile {
         try {
             latestRevision = repository.getLatestRevision();
         } catch (SVNException svne) {
+            SvnSessionPool.getInstance().invalidate(repository);
             System.err.println("error while fetching the latest repository revision: " + svne.getMessage());
             System.exit(1);
         }
         System.out.println("");
         System.out.println("---------------------------------------------");
         System.out.println("Repository latest revision: " + latestRevision);
+        SvnSessionPool.getInstance().release(repository);
         System.exit(0);
     }
 
+    /**
+     * Displays file properties.
+     */
+    private static void displayProperties(SVNProperties fileProperties) {
+        Iterator iterator = fileProperties.nameSet().iterator();
+        while (iterator.hasNext()) {
+            String propertyName = (String) iterator.next();
+            String propertyValue = fileProperties.getStringValue(propertyName);
+            System.out.println("File property: " + propertyName + "="
+                    + propertyValue);
+        }
+    }
+
     /**
      * Initializes the library to work with a repository via 
      * different protocols.
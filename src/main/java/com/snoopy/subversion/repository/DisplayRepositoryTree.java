@@ -14,17 +14,22 @@ package com.snoopy.subversion.repository;
 import java.util.Collection;
 import java.util.Iterator;
 
+import org.tmatesoft.svn.core.ISVNDirEntryHandler;
 import org.tmatesoft.svn.core.SVNDirEntry;
 import org.tmatesoft.svn.core.SVNException;
 import org.tmatesoft.svn.core.SVNNodeKind;
 import org.tmatesoft.svn.core.SVNURL;
-import org.tmatesoft.svn.core.auth.ISVNAuthenticationManager;
 import org.tmatesoft.svn.core.internal.io.dav.DAVRepositoryFactory;
 import org.tmatesoft.svn.core.internal.io.fs.FSRepositoryFactory;
 import org.tmatesoft.svn.core.internal.io.svn.SVNRepositoryFactoryImpl;
 import org.tmatesoft.svn.core.io.SVNRepository;
-import org.tmatesoft.svn.core.io.SVNRepositoryFactory;
-import org.tmatesoft.svn.core.wc.SVNWCUtil;
+
+import com.snoopy.subversion.output.OutputSink;
+import com.snoopy.subversion.pool.SvnSessionPool;
+import com.snoopy.subversion.tree.ParallelTreeLister;
+import com.snoopy.subversion.tree.ReportTreeLister;
+import com.snoopy.subversion.tree.TreeSnapshot;
+import com.snoopy.subversion.tree.TreeSnapshots;
 
 /**
  * <pre>
@@ -92,12 +97,18 @@ public class DisplayRepositoryTree {
         SVNRepository repository = null;
         try {
             /**
-             * Creates an instance of SVNRepository to work with the repository.
-             * All user's requests to the repository are relative to the
-             * repository location used to create this SVNRepository.
+             * Borrows an SVNRepository to work with the repository from the
+             * session pool. All user's requests to the repository are relative
+             * to the repository location the session was borrowed for.
              * SVNURL is a wrapper for URL strings that refer to repository locations.
+             * 
+             * User's authentication information (name/password) is part of the
+             * pool key: a session that was already connected and authenticated
+             * with the same credentials is reused, so short read operations skip
+             * the connection handshake. A borrowed session must be given back with
+             * SvnSessionPool.release(..) and is never shared between two callers.
              */
-            repository = SVNRepositoryFactory.create(SVNURL.parseURIEncoded(url));
+            repository = SvnSessionPool.getInstance().borrow(SVNURL.parseURIEncoded(url), name, password);
         } catch (SVNException svne) {
             /**
              * Perhaps a malformed URL is the cause of this exception
@@ -108,25 +119,6 @@ public class DisplayRepositoryTree {
             System.exit(1);
         }
 
-        /**
-         * User's authentication information (name/password) is provided via  an 
-         * ISVNAuthenticationManager  instance.  SVNWCUtil  creates  a   default 
-         * authentication manager given user's name and password.
-         * 
-         * Default authentication manager first attempts to use provided user name 
-         * and password and then falls back to the credentials stored in the 
-         * default Subversion credentials storage that is located in Subversion 
-         * configuration area. If you'd like to use provided user name and password 
-         * only you may use BasicAuthenticationManager class instead of default 
-         * authentication manager:
-         * 
-         *  authManager = new BasicAuthenticationsManager(userName, userPassword);
-         *  
-         * You may also skip this point - anonymous access will be used. 
-         */
-        ISVNAuthenticationManager authManager = SVNWCUtil.createDefaultAuthenticationManager(name, password);
-        repository.setAuthenticationManager(authManager);
-
         try {
             /**
              * Checks up if the specified path/to/repository part of the URL
@@ -162,6 +154,7 @@ public class DisplayRepositoryTree {
              */
             listEntries(repository, "");
         } catch (SVNException svne) {
+            SvnSessionPool.getInstance().invalidate(repository);
             System.err.println("error while listing entries: "
                 + svne.getMessage());
             System.exit(1);
@@ -173,6 +166,7 @@ public class DisplayRepositoryTree {
         try {
             latestRevision = repository.getLatestRevision();
         } catch (SVNException svne) {
+            SvnSessionPool.getInstance().invalidate(repository);
             System.err
                 .println("error while fetching the latest repository revision: "
                     + svne.getMessage());
@@ -181,6 +175,7 @@ public class DisplayRepositoryTree {
         System.out.println("");
         System.out.println("---------------------------------------------");
         System.out.println("Repository latest revision: " + latestRevision);
+        SvnSessionPool.getInstance().release(repository);
         System.exit(0);
     }
 
@@ -248,4 +243,87 @@ public class DisplayRepositoryTree {
             }
         }
     }
+
+    /**
+     * Parallel alternative to listEntries(repository, path): directories are
+     * requested by a ParallelTreeLister that fans getDir calls out over up to
+     * parallelism sessions borrowed from the session pool. The tree is listed
+     * at one revision and printed in the same depth-first order and format,
+     * with entries of a directory sorted by name.
+     */
+    public static void listEntries(SVNURL url, String name, String password, int parallelism)
+        throws SVNException {
+        new ParallelTreeLister(SvnSessionPool.getInstance(), name, password, parallelism).list(url, -1,
+            new ISVNDirEntryHandler() {
+                @Override
+                public void handleDirEntry(SVNDirEntry entry) throws SVNException {
+                    System.out.println("/" + entry.getRelativePath() + " (author: '" + entry.getAuthor()
+                        + "'; revision: " + entry.getRevision() + "; date: " + entry.getDate() + ")");
+                }
+            });
+    }
+
+    /**
+     * Single round trip alternative to listEntries(repository, path): the
+     * whole tree at the latest revision is received in one status report
+     * (see ReportTreeLister) instead of one getDir request per directory.
+     * Entries are printed depth-first with entries of a directory sorted by
+     * name.
+     */
+    public static void listEntriesByReport(SVNRepository repository) throws SVNException {
+        new ReportTreeLister().list(repository, -1, new ISVNDirEntryHandler() {
+            @Override
+            public void handleDirEntry(SVNDirEntry entry) throws SVNException {
+                System.out.println("/" + entry.getRelativePath() + " (author: '" + entry.getAuthor()
+                    + "'; revision: " + entry.getRevision() + "; date: " + entry.getDate() + ")");
+            }
+        });
+    }
+
+    /**
+     * Lists the tree at path from an in-memory snapshot when one has been
+     * built up to the latest revision (see TreeSnapshots), without a single
+     * getDir request; otherwise falls back to listEntries(repository, path).
+     * Entries are printed depth-first with entries of a directory sorted by
+     * name.
+     */
+    public static void listEntries(SVNRepository repository, String path, TreeSnapshots snapshots)
+        throws SVNException {
+        TreeSnapshot snapshot = snapshots.getSnapshot(repository.getLatestRevision());
+        if (snapshot == null) {
+            listEntries(repository, path);
+            return;
+        }
+        snapshot.list(repository.getRepositoryRoot(true), repository.getRepositoryPath(path), true,
+            new ISVNDirEntryHandler() {
+                @Override
+                public void handleDirEntry(SVNDirEntry entry) throws SVNException {
+                    System.out.println("/" + (path.equals("") ? "" : path + "/") + entry.getRelativePath()
+                        + " (author: '" + entry.getAuthor() + "'; revision: " + entry.getRevision()
+                        + "; date: " + entry.getDate() + ")");
+                }
+            });
+    }
+
+    /**
+     * Same recursive walk as listEntries(repository, path), but every entry is
+     * written to a buffered OutputSink (JSON lines or binary records, see
+     * OutputSinks) instead of being formatted into a String and printed with
+     * System.out.println. The caller flushes or closes the sink.
+     */
+    public static void listEntries(SVNRepository repository, String path, OutputSink sink)
+        throws SVNException {
+        Collection entries = repository.getDir(path, -1, null,
+            (Collection)null);
+        Iterator iterator = entries.iterator();
+        while (iterator.hasNext()) {
+            SVNDirEntry entry = (SVNDirEntry)iterator.next();
+            String entryPath = path.equals("") ? entry.getName() : path + "/" + entry.getName();
+            entry.setRelativePath(entryPath);
+            sink.writeDirEntry(entry);
+            if (entry.getKind() == SVNNodeKind.DIR) {
+                listEntries(repository, entryPath, sink);
+            }
+        }
+    }
 }
\ No newline at end of file
@@ -13,7 +13,13 @@ package com.snoopy.subversion.repository;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedList;
+import java.util.Map;
 
 import org.tmatesoft.svn.core.SVNCommitInfo;
 import org.tmatesoft.svn.core.SVNDepth;
@@ -21,12 +27,15 @@ import org.tmatesoft.svn.core.SVNErrorCode;
 import org.tmatesoft.svn.core.SVNErrorMessage;
 import org.tmatesoft.svn.core.SVNException;
 import org.tmatesoft.svn.core.SVNNodeKind;
+import org.tmatesoft.svn.core.SVNProperties;
+import org.tmatesoft.svn.core.SVNProperty;
 import org.tmatesoft.svn.core.SVNURL;
 import org.tmatesoft.svn.core.SVNPropertyValue;
 import org.tmatesoft.svn.core.auth.ISVNAuthenticationManager;
 import org.tmatesoft.svn.core.internal.io.dav.DAVRepositoryFactory;
 import org.tmatesoft.svn.core.internal.io.fs.FSRepositoryFactory;
 import org.tmatesoft.svn.core.internal.io.svn.SVNRepositoryFactoryImpl;
+import org.tmatesoft.svn.core.internal.util.SVNDate;
 import org.tmatesoft.svn.core.io.ISVNEditor;
 import org.tmatesoft.svn.core.io.ISVNReporter;
 import org.tmatesoft.svn.core.io.ISVNReporterBaton;
@@ -34,8 +43,19 @@ import org.tmatesoft.svn.core.io.SVNRepository;
 import org.tmatesoft.svn.core.io.SVNRepositoryFactory;
 import org.tmatesoft.svn.core.io.diff.SVNDeltaProcessor;
 import org.tmatesoft.svn.core.io.diff.SVNDiffWindow;
+import org.tmatesoft.svn.core.internal.wc.SVNFileUtil;
 import org.tmatesoft.svn.core.wc.SVNWCUtil;
 
+import com.snoopy.subversion.export.ArchiveSink;
+import com.snoopy.subversion.export.ArchiveSinks;
+import com.snoopy.subversion.export.ArchiveSizeResolver;
+import com.snoopy.subversion.export.ChecksumOutputStream;
+import com.snoopy.subversion.export.ContentChecksumResolver;
+import com.snoopy.subversion.export.ContentStore;
+import com.snoopy.subversion.export.ExportMarker;
+import com.snoopy.subversion.export.ParallelFileWriter;
+import com.snoopy.subversion.export.PathFilter;
+
 /**
  * <pre>
  * This example program export contents of the repository directory into file system using
@@ -68,6 +88,22 @@ import org.tmatesoft.svn.core.wc.SVNWCUtil;
  *    this example ISVNEditor implementation (ExportEditor) creates files and directories corresponding to those
  *    in the repository.
  *
+ * An export directory remembers the exported location and revision in a marker file (see ExportMarker).
+ * Running the example again on the same directory reports the directory as being at that revision, so
+ * the server only sends the adds, deletes and deltas needed to reach the latest revision.
+ *
+ * Given an archive file name (.zip, .tar, .tar.gz) as the first argument - or "-" and a
+ * format to write to the standard output - the contents are streamed straight into the
+ * archive instead, and nothing is written to the local file system.
+ *
+ * Include and exclude globs restrict the export to a part of the tree. Their literal paths
+ * are turned into depths of the report (see PathFilter), so the server does not send the
+ * excluded subtrees at all; the editor drops whatever the wildcards leave over.
+ *
+ * Given a content store directory, file contents are written into the store once per
+ * checksum and the exported files are hard links to them (see ContentStore), so many
+ * exports of similar revisions take about the disk space of one.
+ *
  * </pre>
  * @ClassName:  Export.java
  * @author: LiHaiQing
@@ -76,6 +112,16 @@ import org.tmatesoft.svn.core.wc.SVNWCUtil;
  */
 public class Export {
     
+    /**
+     * args[0] - optional archive file to export into, "-" for the standard output,
+     * args[1] - optional archive format ("zip", "tar", "tar.gz"), by default taken
+     * from the archive file name,
+     * args[2] - optional comma separated globs to include, e.g. "src/**,pom.xml",
+     * args[3] - optional comma separated globs to exclude, e.g. "src/test/resources,docs/*.pdf",
+     * args[4] - optional content store directory shared by exports.
+     * 
+     * Pass "" for the arguments that are not used, e.g. as args[0] to export into a directory.
+     */
     public static void main(String[] args) {
         /**
          * Initialize the library. It must be done before calling any 
@@ -87,7 +133,12 @@ public class Export {
          * Run export example and process error if any.
          */
         try {
-            exportExample();
+            String archivePath = args != null && args.length >= 1 && args[0].length() > 0 ? args[0] : null;
+            String archiveFormat = args != null && args.length >= 2 && args[1].length() > 0 ? args[1] : null;
+            PathFilter filter = new PathFilter(args != null && args.length >= 3 ? Arrays.asList(args[2].split(",")) : null, 
+                    args != null && args.length >= 4 ? Arrays.asList(args[3].split(",")) : null);
+            String storePath = args != null && args.length >= 5 && args[4].length() > 0 ? args[4] : null;
+            exportExample(archivePath, archiveFormat, filter, storePath);
         } catch (SVNException e) {
             SVNErrorMessage err = e.getErrorMessage();
             /**
@@ -103,7 +154,7 @@ public class Export {
         System.exit(0);
     }
 
-    private static void exportExample() throws SVNException {
+    private static void exportExample(String archivePath, String archiveFormat, PathFilter filter, String storePath) throws SVNException {
 
         SVNURL url = SVNURL.parseURIEncoded("http://svn.svnkit.com/repos/svnkit/trunk/doc");
         String userName = "foo";
@@ -111,13 +162,29 @@ public class Export {
         
         /**
          * Prepare filesystem directory (export destination).
+         * 
+         * An existing directory is only accepted if it is a complete export of the
+         * same URL; it is then moved incrementally from the exported revision.
          */
         File exportDir = new File("export");
-        if (exportDir.exists()) {
-            SVNErrorMessage err = SVNErrorMessage.create(SVNErrorCode.IO_ERROR, "Path ''{0}'' already exists", exportDir);
-            throw new SVNException(err);
+        ExportMarker marker = null;
+        if (archivePath != null) {
+            /**
+             * Exporting into an archive, no directory is needed.
+             */
+        } else if (exportDir.exists()) {
+            marker = ExportMarker.read(exportDir);
+            if (marker == null || !marker.isComplete() || !url.equals(marker.getURL())) {
+                SVNErrorMessage err = SVNErrorMessage.create(SVNErrorCode.IO_ERROR, "Path ''{0}'' already exists and is not a complete export of ''{1}''", exportDir, url);
+                throw new SVNException(err);
+            }
+            if (!filter.toString().equals(marker.getFilter())) {
+                SVNErrorMessage err = SVNErrorMessage.create(SVNErrorCode.IO_ERROR, "Path ''{0}'' was exported with other filters: {1}", exportDir, marker.getFilter());
+                throw new SVNException(err);
+            }
+        } else {
+            exportDir.mkdirs();
         }
-        exportDir.mkdirs();
 
         /**
          * Create an instance of SVNRepository class. This class is the main entry point 
@@ -166,15 +233,52 @@ public class Export {
          * Get latest repository revision. We will export repository contents at this very revision.
          */
         long latestRevision = repository.getLatestRevision();
+        if (archivePath != null) {
+            exportToArchive(repository, authManager, latestRevision, archivePath, archiveFormat, filter);
+            return;
+        }
+        String repositoryUUID = repository.getRepositoryUUID(true);
+        if (marker != null) {
+            if (!repositoryUUID.equals(marker.getRepositoryUUID())) {
+                SVNErrorMessage err = SVNErrorMessage.create(SVNErrorCode.RA_UUID_MISMATCH, "Path ''{0}'' was exported from another repository", exportDir);
+                throw new SVNException(err);
+            }
+            if (marker.getRevision() == latestRevision) {
+                System.out.println("Export is up to date at revision: " + latestRevision);
+                return;
+            }
+        }
+        
+        /**
+         * The filter's literal paths become the depths of the reported paths. For an
+         * incremental export they describe the directory as exported, so they are taken
+         * at the exported revision. A path that only appears in the latest revision cannot
+         * be reported as present in the directory and needs a new export.
+         */
+        Map<String, SVNDepth> reportDepths = filter.getReportDepths(repository, marker == null ? latestRevision : marker.getRevision());
+        if (marker != null) {
+            Map<String, SVNDepth> latestDepths = filter.getReportDepths(repository, latestRevision);
+            if (!reportDepths.entrySet().containsAll(latestDepths.entrySet())) {
+                SVNErrorMessage err = SVNErrorMessage.create(SVNErrorCode.IO_ERROR, "Filtered paths of ''{0}'' changed since revision {1}, export into a new directory", exportDir, marker.getRevision());
+                throw new SVNException(err);
+            }
+            /**
+             * Until the update completes the directory is somewhere between the two
+             * revisions and must not be used as the base of another incremental export.
+             */
+            ExportMarker.write(exportDir, url, repositoryUUID, marker.getRevision(), false, filter.toString());
+        }
         
         /**
          * Create reporterBaton. This class is responsible for reporting 'wc state' to the server.
          * 
-         * In this example it will always report that working copy is empty to receive update
+         * For a new export it reports that working copy is empty to receive update
          * instructions that are sufficient to create complete directories hierarchy and get full
-         * files contents.
+         * files contents. For an existing export it reports the exported revision, and the
+         * server only sends the changes between that revision and the latest one.
          */
-        ISVNReporterBaton reporterBaton = new ExportReporterBaton(latestRevision);
+        ISVNReporterBaton reporterBaton = marker == null ? new ExportReporterBaton(latestRevision, true, reportDepths)
+                : new ExportReporterBaton(marker.getRevision(), false, reportDepths);
         
         /**
          * Create editor. This class will process update instructions received from the server and 
@@ -182,8 +286,48 @@ public class Export {
          * 
          * As we've reported 'emtpy working copy', server will only send 'addDir/addFile' instructions
          * and will never ask our editor implementation to modify a file or directory properties. 
+         * For an incremental export it also sends 'deleteEntry' and 'openFile' with deltas
+         * against the previously exported file contents.
+         * 
+         * The editor does not touch the disk itself: it only hands reconstructed file contents
+         * to a ParallelFileWriter, whose writer threads create directories and write files in
+         * parallel. At most 64M of contents are queued; when the disk falls behind the editor
+         * waits, and so does the server stream. The writer threads gather the contents in
+         * direct buffers and write them through file channels, so a small file costs a single
+         * write; directories are created in batches.
+         * 
+         * With a content store the contents go to the store instead, and only the contents
+         * the store does not have yet are written. The checksum of a large file is asked from
+         * a second session before its contents arrive, so a known large file is not written
+         * at all.
+         */
+        ParallelFileWriter fileWriter = null;
+        SVNRepository checksumRepository = null;
+        ContentStore contentStore = null;
+        ExportEditor exportEditor;
+        if (storePath != null) {
+            final SVNRepository checksumSession = SVNRepositoryFactory.create(url);
+            checksumSession.setAuthenticationManager(authManager);
+            checksumRepository = checksumSession;
+            contentStore = ContentStore.open(new File(storePath), new ContentChecksumResolver() {
+                @Override
+                public String getChecksum(String path) throws SVNException {
+                    SVNProperties properties = new SVNProperties();
+                    checksumSession.getFile(path, latestRevision, properties, null);
+                    return properties.getStringValue(SVNProperty.CHECKSUM);
+                }
+            });
+            exportEditor = new ExportEditor(exportDir, contentStore);
+        } else {
+            fileWriter = new ParallelFileWriter(4, 64L << 20);
+            exportEditor = new ExportEditor(exportDir, fileWriter);
+        }
+        /**
+         * Every received file is checked against the MD5 sent by the server. The digest
+         * is computed while the contents are queued, so this costs no extra disk reads.
          */
-        ISVNEditor exportEditor = new ExportEditor(exportDir);
+        exportEditor.setVerifyChecksums(true);
+        exportEditor.setPathFilter(filter);
         
         /**
          * Now ask SVNKit to perform generic 'update' operation using our reporter and editor.
@@ -193,35 +337,142 @@ public class Export {
          * - revision from which we would like to export
          * - null as "target" name, to perform export from the URL SVNRepository was created for, 
          *   not from some child directory.
+         * - UNKNOWN depth, so that the depths reported for each path are respected
          * - reporterBaton
          * - exportEditor.  
          */
-        repository.update(latestRevision, null, true, reporterBaton, exportEditor);
+        try {
+            repository.update(latestRevision, null, SVNDepth.UNKNOWN, false, reporterBaton, exportEditor);
+        } finally {
+            /**
+             * Stops the writer threads if the update failed before closeEdit.
+             */
+            if (fileWriter != null) {
+                fileWriter.abort();
+            }
+            if (checksumRepository != null) {
+                checksumRepository.closeSession();
+            }
+            /**
+             * Releases the shared lock that keeps ContentStore.prune from
+             * deleting contents while they are being linked.
+             */
+            if (contentStore != null) {
+                contentStore.close();
+            }
+        }
         
+        ExportMarker.write(exportDir, url, repositoryUUID, latestRevision, true, filter.toString());
         System.out.println("Exported revision: " + latestRevision);
+        System.out.println("Verified " + exportEditor.getVerifiedFiles() + " files in " + exportEditor.getVerifyTime() + " ms");
+        if (fileWriter != null) {
+            System.out.println("Written " + fileWriter.getWrittenFiles() + " files (" + fileWriter.getWrittenBytes() + " bytes) with " 
+                    + fileWriter.getWriteCalls() + " writes");
+        }
+        if (contentStore != null) {
+            System.out.println("Content store: " + contentStore.getStoredFiles() + " files (" + contentStore.getStoredBytes() + " bytes) written, " 
+                    + contentStore.getDeduplicatedBytes() + " bytes already stored");
+        }
     }
 
     /**
-     * ReporterBaton implementation that always reports 'empty wc' state.
+     * Exports the repository contents at revision straight into an archive: each
+     * file becomes an archive entry while its contents arrive from the server.
+     */
+    private static void exportToArchive(SVNRepository repository, ISVNAuthenticationManager authManager,
+            final long revision, String archivePath, String archiveFormat, PathFilter filter) throws SVNException {
+        boolean toStandardOutput = "-".equals(archivePath);
+        String format = archiveFormat != null ? archiveFormat : ArchiveSinks.getFormat(archivePath);
+        if (format == null) {
+            SVNErrorMessage err = SVNErrorMessage.create(SVNErrorCode.BAD_FILENAME, "Unknown archive format of ''{0}''", archivePath);
+            throw new SVNException(err);
+        }
+        /**
+         * A tar header holds the file size and precedes the contents, while the
+         * editor never tells the size. Small files are buffered in memory; for a
+         * large file the size is asked from a second session, which is free while
+         * the first one is busy with the update.
+         */
+        final SVNRepository sizeRepository = SVNRepositoryFactory.create(repository.getLocation());
+        sizeRepository.setAuthenticationManager(authManager);
+        ArchiveSizeResolver sizeResolver = new ArchiveSizeResolver() {
+            @Override
+            public long getSize(String path) throws SVNException {
+                return sizeRepository.info(path, revision).getSize();
+            }
+        };
+        /**
+         * The exported paths are printed to the standard error when the archive
+         * itself goes to the standard output.
+         */
+        PrintStream log = toStandardOutput ? System.err : System.out;
+        File archiveFile = toStandardOutput ? null : new File(archivePath);
+        OutputStream out = null;
+        ExportEditor exportEditor;
+        boolean exported = false;
+        try {
+            ISVNReporterBaton reporterBaton = new ExportReporterBaton(revision, true, filter.getReportDepths(repository, revision));
+            out = toStandardOutput ? System.out : SVNFileUtil.openFileForWriting(archiveFile);
+            exportEditor = new ExportEditor(ArchiveSinks.create(format, out, sizeResolver), log);
+            exportEditor.setVerifyChecksums(true);
+            exportEditor.setPathFilter(filter);
+            repository.update(revision, null, SVNDepth.UNKNOWN, false, reporterBaton, exportEditor);
+            exported = true;
+        } finally {
+            sizeRepository.closeSession();
+            if (archiveFile != null) {
+                SVNFileUtil.closeFile(out);
+                /**
+                 * A half-written archive is not left behind to look like a
+                 * complete one.
+                 */
+                if (!exported && out != null && !archiveFile.delete()) {
+                    log.println("failed to delete " + archiveFile);
+                }
+            }
+        }
+        log.println("Exported revision: " + revision);
+        log.println("Verified " + exportEditor.getVerifiedFiles() + " files in " + exportEditor.getVerifyTime() + " ms");
+    }
+
+    /**
+     * ReporterBaton implementation that reports 'empty wc' state, or a complete
+     * 'wc' at the previously exported revision. A filtered export reports each
+     * path with its own depth.
      */
     private static class ExportReporterBaton implements ISVNReporterBaton {
 
         private long exportRevision;
+        private boolean startEmpty;
+        private Map<String, SVNDepth> depths;
         
         public ExportReporterBaton(long revision){
+            this(revision, true, Collections.singletonMap("", SVNDepth.INFINITY));
+        }
+
+        /**
+         * depths - reported paths in parent-first order, with "" for the root.
+         */
+        public ExportReporterBaton(long revision, boolean empty, Map<String, SVNDepth> depths){
             exportRevision = revision;
+            startEmpty = empty;
+            this.depths = depths;
         }
         @Override
         public void report(ISVNReporter reporter) throws SVNException {
             try {
                 /**
-                 * Here empty working copy is reported.
+                 * Here empty working copy (or the complete working copy at exportRevision)
+                 * is reported.
                  * 
                  * ISVNReporter includes methods that allows to report mixed-rev working copy
                  * and even let server know that some files or directories are locally missing or
                  * locked. 
                  */
-                reporter.setPath("", null, exportRevision, SVNDepth.INFINITY, true);
+                for (Map.Entry<String, SVNDepth> entry : depths.entrySet()) {
+                    SVNDepth depth = entry.getValue();
+                    reporter.setPath(entry.getKey(), null, exportRevision, depth, startEmpty && depth != SVNDepth.EXCLUDE);
+                }
                 
                 /*
                  * Don't forget to finish the report!
@@ -230,6 +481,11 @@ public class Export {
             } catch (SVNException svne) {
                 reporter.abortReport();
                 System.out.println("Report failed.");
+                /**
+                 * The update has to fail as well, or a partial export would be
+                 * taken for a complete one.
+                 */
+                throw svne;
             }
         }
     }
@@ -237,17 +493,71 @@ public class Export {
     /**
      * ISVNEditor implementation that will add directories and files into the target directory
      * accordingly to update instructions sent by the server. 
+     * 
+     * Without a file writer all disk writes happen synchronously on the editor thread; with a
+     * ParallelFileWriter the editor only enqueues directories and file contents. With an
+     * ArchiveSink nothing is written to the local file system at all: directories and files
+     * become archive entries as they arrive.
      */
     private static class ExportEditor implements ISVNEditor {
         
         private File myRootDirectory;
         private SVNDeltaProcessor myDeltaProcessor;
+        private ParallelFileWriter myFileWriter;
+        private ContentStore myContentStore;
+        private boolean myHasContents;
+        private File myOpenedFile;
+        private File myTempFile;
+        private ChecksumOutputStream myChecksumStream;
+        private boolean myVerifyChecksums;
+        private int myVerifiedFiles;
+        private long myVerifyNanos;
+        private ArchiveSink myArchive;
+        private PrintStream myLog;
+        private long myExportTime = System.currentTimeMillis();
+        private long myFileTime;
+        private boolean myExecutable;
+        private PathFilter myPathFilter;
+        private LinkedList<String> myOpenDirs = new LinkedList<String>();
+        private LinkedList<String> myPendingDirs = new LinkedList<String>();
+        private int mySkippedDirs;
+        private boolean mySkippedFile;
         
         /**
          * root - the local directory where the node tree is to be exported into.
          */
         public ExportEditor(File root) {
+            this(root, (ParallelFileWriter) null);
+        }
+
+        /**
+         * fileWriter - writes directories and files in the background, may be null.
+         */
+        public ExportEditor(File root, ParallelFileWriter fileWriter) {
+            this(root, fileWriter, null, null, System.out);
+        }
+
+        /**
+         * contentStore - stores each file contents once, the exported files are links to it.
+         */
+        public ExportEditor(File root, ContentStore contentStore) {
+            this(root, null, contentStore, null, System.out);
+        }
+
+        /**
+         * archive - the archive the node tree is to be exported into, 
+         * log - where to print the exported paths.
+         */
+        public ExportEditor(ArchiveSink archive, PrintStream log) {
+            this(null, null, null, archive, log);
+        }
+
+        private ExportEditor(File root, ParallelFileWriter fileWriter, ContentStore contentStore, ArchiveSink archive, PrintStream log) {
             myRootDirectory = root;
+            myFileWriter = fileWriter;
+            myContentStore = contentStore;
+            myArchive = archive;
+            myLog = log;
             /*
              * Utility class that will help us to transform 'deltas' sent by the 
              * server to the new file contents.  
@@ -255,6 +565,39 @@ public class Export {
             myDeltaProcessor = new SVNDeltaProcessor();
         }
 
+        /**
+         * When enabled, the MD5 of every received file is computed while its contents
+         * are written and compared with the checksum the server sends in closeFile.
+         * No file is read back from the disk. Files updated by an incremental export
+         * are always verified, as they are built from the local copy.
+         */
+        public void setVerifyChecksums(boolean verify) {
+            myVerifyChecksums = verify;
+        }
+
+        /**
+         * Number of files whose checksum was verified.
+         */
+        public int getVerifiedFiles() {
+            return myVerifiedFiles;
+        }
+
+        /**
+         * Time spent computing and comparing checksums, in milliseconds.
+         */
+        public long getVerifyTime() {
+            return myVerifyNanos / 1000000;
+        }
+
+        /**
+         * Paths rejected by the filter are skipped, together with everything below
+         * a skipped directory. The report already keeps the server from sending the
+         * subtrees the filter names literally; this catches what the wildcards match.
+         */
+        public void setPathFilter(PathFilter filter) {
+            myPathFilter = filter == null || filter.isEmpty() ? null : filter;
+        }
+
         /**
          * Server reports revision to which application of the further 
          * instructions will update working copy to.
@@ -268,6 +611,7 @@ public class Export {
          */
         @Override
         public void openRoot(long revision) throws SVNException {
+            myOpenDirs.addLast("");
         }
         
         /**
@@ -280,14 +624,57 @@ public class Export {
          */
         @Override
         public void addDir(String path, String copyFromPath, long copyFromRevision) throws SVNException {
+            if (enterDirectory(path, false)) {
+                createDirectory(path);
+            }
+        }
+
+        /**
+         * Decides what to do with an added or opened directory and returns true when
+         * it has to be created now. A directory that only leads to included paths is
+         * created when the first of them arrives, so that filtered out parts of the
+         * tree do not leave empty directories behind. A directory that can contain
+         * no included path is skipped with everything below it.
+         */
+        private boolean enterDirectory(String path, boolean opened) throws SVNException {
+            if (mySkippedDirs > 0 || (myPathFilter != null && !myPathFilter.accepts(path) && !myPathFilter.mayContain(path))) {
+                mySkippedDirs++;
+                return false;
+            }
+            myOpenDirs.addLast(path);
+            if (opened && myArchive == null && new File(myRootDirectory, path).isDirectory()) {
+                return false;
+            }
+            if (myPathFilter != null && !myPathFilter.accepts(path)) {
+                myPendingDirs.addLast(path);
+                return false;
+            }
+            createPendingDirectories();
+            return true;
+        }
+
+        private void createPendingDirectories() throws SVNException {
+            while (!myPendingDirs.isEmpty()) {
+                createDirectory(myPendingDirs.removeFirst());
+            }
+        }
+
+        private void createDirectory(String path) throws SVNException {
+            if (myArchive != null) {
+                myArchive.addDirectory(path, myExportTime);
+                myLog.println("dir added: " + path);
+                return;
+            }
             File newDir = new File(myRootDirectory, path);
-            if (!newDir.exists()) {
+            if (myFileWriter != null) {
+                myFileWriter.mkdirs(newDir);
+            } else if (!newDir.exists()) {
                 if (!newDir.mkdirs()) {
                     SVNErrorMessage err = SVNErrorMessage.create(SVNErrorCode.IO_ERROR, "error: failed to add the directory ''{0}''.", newDir);
                     throw new SVNException(err);
                 }
             }
-            System.out.println("dir added: " + path);
+            myLog.println("dir added: " + path);
         }
         
         /**
@@ -295,12 +682,15 @@ public class Export {
          * to modify this directory properties or to process other files and directories 
          * inside this directory. 
          * 
-         * In case of export this method will never be called because we reported 
-         * that our 'working copy' is empty and so server knows that there are
-         * no 'existing' directories. 
+         * In case of a new export this method is only called for the directories a filtered
+         * export reports, which do not exist yet. In case of an incremental export the
+         * directory already exists and nothing has to be done. 
          */
         @Override
         public void openDir(String path, long revision) throws SVNException {
+            if (enterDirectory(path, true)) {
+                createDirectory(path);
+            }
         }
 
         /**
@@ -327,11 +717,34 @@ public class Export {
          */
         @Override
         public void addFile(String path, String copyFromPath, long copyFromRevision) throws SVNException {
+            myHasContents = false;
+            myOpenedFile = null;
+            mySkippedFile = isFiltered(path);
+            if (mySkippedFile) {
+                return;
+            }
+            createPendingDirectories();
+            if (myArchive != null) {
+                /**
+                 * The entry is written when the contents start to arrive; until then
+                 * the committed date and svn:executable may still be received.
+                 */
+                myFileTime = myExportTime;
+                myExecutable = false;
+                return;
+            }
             File file = new File(myRootDirectory, path);
             if (file.exists()) {
                 SVNErrorMessage err = SVNErrorMessage.create(SVNErrorCode.IO_ERROR, "error: exported file ''{0}'' already exists!", file);
                 throw new SVNException(err);
             }
+            if (myFileWriter != null || myContentStore != null) {
+                /**
+                 * The file is created by a writer thread or linked from the content
+                 * store together with its contents.
+                 */
+                return;
+            }
             try {
                 file.createNewFile();
             } catch (IOException e) {
@@ -344,12 +757,24 @@ public class Export {
          * Called when there is an existing files that has to be 'opened' either 
          * to modify file contents or properties.
          * 
-         * In case of export this method will never be called because we reported 
+         * In case of a new export this method will never be called because we reported 
          * that our 'working copy' is empty and so server knows that there are
-         * no 'existing' files. 
+         * no 'existing' files. In case of an incremental export the previously
+         * exported file is the base the server sends its delta against.
          */
         @Override
         public void openFile(String path, long revision) throws SVNException {
+            myHasContents = false;
+            myOpenedFile = null;
+            mySkippedFile = isFiltered(path);
+            if (mySkippedFile) {
+                return;
+            }
+            myOpenedFile = new File(myRootDirectory, path);
+            if (!myOpenedFile.isFile()) {
+                SVNErrorMessage err = SVNErrorMessage.create(SVNErrorCode.IO_ERROR, "error: exported file ''{0}'' is missing", myOpenedFile);
+                throw new SVNException(err);
+            }
         }
 
         /**
@@ -357,9 +782,20 @@ public class Export {
          * In this example we skip this instruction, but 'real' export operation
          * may inspect 'svn:eol-style' or 'svn:mime-type' property values to 
          * transfor file contents propertly after receiving.
+         * 
+         * Archive entries take their time from the committed date and their mode
+         * from svn:executable when those arrive before the contents.
          */
         @Override
         public void changeFileProperty(String path, String name, SVNPropertyValue property) throws SVNException {
+            if (myArchive == null || property == null || mySkippedFile) {
+                return;
+            }
+            if (SVNProperty.COMMITTED_DATE.equals(name)) {
+                myFileTime = SVNDate.parseDate(property.getString()).getTime();
+            } else if (SVNProperty.EXECUTABLE.equals(name)) {
+                myExecutable = true;
+            }
 		}
 
         /**
@@ -371,7 +807,52 @@ public class Export {
          */
         @Override
         public void applyTextDelta(String path, String baseChecksum) throws SVNException {
-            myDeltaProcessor.applyTextDelta((File) null, new File(myRootDirectory, path), false);
+            if (mySkippedFile) {
+                return;
+            }
+            myHasContents = true;
+            myChecksumStream = null;
+            InputStream base = SVNFileUtil.DUMMY_IN;
+            OutputStream target;
+            if (myArchive != null) {
+                /**
+                 * textDeltaEnd closes the entry stream, which ends the entry.
+                 */
+                target = myArchive.openFile(path, myFileTime, myExecutable);
+            } else if (myOpenedFile != null) {
+                /**
+                 * The new contents are built next to the exported file from its old
+                 * contents and replace it in closeFile. This is done on the editor
+                 * thread even with a file writer, since the base must be read before
+                 * the file is replaced. The checksum is always verified in closeFile, so a
+                 * locally modified export is detected instead of silently corrupted.
+                 */
+                myTempFile = new File(myOpenedFile.getParentFile(), myOpenedFile.getName() + ".svn-tmp");
+                base = SVNFileUtil.openFileForReading(myOpenedFile);
+                target = SVNFileUtil.openFileForWriting(myTempFile);
+            } else if (myFileWriter != null) {
+                /**
+                 * The reconstructed contents go to the writer queue; textDeltaEnd closes the
+                 * stream, which ends the file.
+                 */
+                target = myFileWriter.openFile(new File(myRootDirectory, path));
+            } else if (myContentStore != null) {
+                /**
+                 * The file is linked to the stored contents when textDeltaEnd closes the stream.
+                 */
+                target = myContentStore.openFile(path, new File(myRootDirectory, path));
+            } else {
+                target = SVNFileUtil.openFileForWriting(new File(myRootDirectory, path));
+            }
+            /**
+             * The digest is updated with every window written to the target, so
+             * verification needs no second pass over the file.
+             */
+            if (myVerifyChecksums || myOpenedFile != null) {
+                myChecksumStream = new ChecksumOutputStream(target);
+                target = myChecksumStream;
+            }
+            myDeltaProcessor.applyTextDelta(base, target, false);
         }
 
         /**
@@ -381,6 +862,9 @@ public class Export {
          */
         @Override
         public OutputStream textDeltaChunk(String path, SVNDiffWindow diffWindow)   throws SVNException {
+            if (mySkippedFile) {
+                return SVNFileUtil.DUMMY_OUT;
+            }
             return myDeltaProcessor.textDeltaChunk(diffWindow);
         }
         
@@ -389,6 +873,9 @@ public class Export {
          */
         @Override
         public void textDeltaEnd(String path) throws SVNException {
+            if (mySkippedFile) {
+                return;
+            }
             myDeltaProcessor.textDeltaEnd();
         }
         
@@ -398,7 +885,69 @@ public class Export {
          */
         @Override
         public void closeFile(String path, String textChecksum) throws SVNException {
-            System.out.println("file added: " + path);
+            if (mySkippedFile) {
+                mySkippedFile = false;
+                return;
+            }
+            if (myOpenedFile != null) {
+                File file = myOpenedFile;
+                myOpenedFile = null;
+                if (!myHasContents) {
+                    return;
+                }
+                String checksum = myChecksumStream.getChecksum();
+                if (!verifyChecksum(textChecksum)) {
+                    SVNFileUtil.deleteFile(myTempFile);
+                    SVNErrorMessage err = SVNErrorMessage.create(SVNErrorCode.CHECKSUM_MISMATCH, "error: checksum mismatch for ''{0}'', the export was modified locally", file);
+                    throw new SVNException(err);
+                }
+                if (myContentStore != null) {
+                    myContentStore.addFile(myTempFile, checksum, file);
+                } else {
+                    SVNFileUtil.rename(myTempFile, file);
+                }
+                myLog.println("file updated: " + path);
+                return;
+            }
+            if ((myFileWriter != null || myContentStore != null || myArchive != null) && !myHasContents) {
+                /**
+                 * No delta is sent for an empty file.
+                 */
+                try {
+                    if (myArchive != null) {
+                        myArchive.openFile(path, myFileTime, myExecutable).close();
+                    } else if (myContentStore != null) {
+                        myContentStore.openFile(path, new File(myRootDirectory, path)).close();
+                    } else {
+                        myFileWriter.openFile(new File(myRootDirectory, path)).close();
+                    }
+                } catch (IOException e) {
+                    SVNErrorMessage err = SVNErrorMessage.create(SVNErrorCode.IO_ERROR, "error: cannot create new  file ''{0}''", path);
+                    throw new SVNException(err, e);
+                }
+            }
+            if (myHasContents && !verifyChecksum(textChecksum)) {
+                SVNErrorMessage err = SVNErrorMessage.create(SVNErrorCode.CHECKSUM_MISMATCH, "error: checksum mismatch for ''{0}'', the received contents are corrupted", path);
+                throw new SVNException(err);
+            }
+            myLog.println("file added: " + path);
+        }
+
+        /**
+         * Compares the digest computed while the contents were written with the
+         * checksum sent by the server. Passes when nothing was computed or the
+         * server sent no checksum.
+         */
+        private boolean verifyChecksum(String textChecksum) {
+            if (myChecksumStream == null || textChecksum == null || textChecksum.length() == 0) {
+                return true;
+            }
+            long start = System.nanoTime();
+            boolean verified = textChecksum.equals(myChecksumStream.getChecksum());
+            myVerifyNanos += myChecksumStream.getDigestNanos() + System.nanoTime() - start;
+            myVerifiedFiles++;
+            myChecksumStream = null;
+            return verified;
         }
 
         /**
@@ -407,14 +956,44 @@ public class Export {
          */
         @Override
         public void closeDir() throws SVNException {
+            if (mySkippedDirs > 0) {
+                mySkippedDirs--;
+                return;
+            }
+            String path = myOpenDirs.removeLast();
+            if (!myPendingDirs.isEmpty() && myPendingDirs.getLast().equals(path)) {
+                /**
+                 * Nothing below it was included, the directory is not created.
+                 */
+                myPendingDirs.removeLast();
+            }
+        }
+
+        /**
+         * Whether the file at path is dropped by the filter, either itself or
+         * as a part of a skipped directory.
+         */
+        private boolean isFiltered(String path) {
+            return mySkippedDirs > 0 || (myPathFilter != null && !myPathFilter.accepts(path));
         }
 
         /**
          * Insturcts to delete an entry in the 'working copy'. Of course will not be 
-         * called during export operation. 
+         * called during a new export; during an incremental export the exported
+         * file or directory is removed. 
          */
         @Override
         public void deleteEntry(String path, long revision) throws SVNException {
+            if (mySkippedDirs > 0 || (myPathFilter != null && !myPathFilter.accepts(path) && !myPathFilter.mayContain(path))) {
+                return;
+            }
+            File entry = new File(myRootDirectory, path);
+            SVNFileUtil.deleteAll(entry, true);
+            if (entry.exists()) {
+                SVNErrorMessage err = SVNErrorMessage.create(SVNErrorCode.IO_ERROR, "error: cannot delete ''{0}''", entry);
+                throw new SVNException(err);
+            }
+            myLog.println("deleted: " + path);
         }
         
         /**
@@ -440,6 +1019,19 @@ public class Export {
          */
         @Override
         public SVNCommitInfo closeEdit() throws SVNException {
+            /**
+             * Waits until the writer threads have written everything, so that
+             * a failed write is reported as a failed export.
+             */
+            if (myFileWriter != null) {
+                myFileWriter.close();
+            }
+            /**
+             * Writes the end of the archive.
+             */
+            if (myArchive != null) {
+                myArchive.close();
+            }
             return null;
         }
         
@@ -449,6 +1041,9 @@ public class Export {
          */
         @Override
         public void abortEdit() throws SVNException {
+            if (myFileWriter != null) {
+                myFileWriter.abort();
+            }
         }
 
     }
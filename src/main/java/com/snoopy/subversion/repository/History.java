@@ -11,21 +11,26 @@
  */
 package com.snoopy.subversion.repository;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Iterator;
 import java.util.Set;
 
+import org.tmatesoft.svn.core.ISVNLogEntryHandler;
 import org.tmatesoft.svn.core.SVNException;
 import org.tmatesoft.svn.core.SVNLogEntry;
 import org.tmatesoft.svn.core.SVNLogEntryPath;
 import org.tmatesoft.svn.core.SVNURL;
-import org.tmatesoft.svn.core.auth.ISVNAuthenticationManager;
 import org.tmatesoft.svn.core.internal.io.dav.DAVRepositoryFactory;
 import org.tmatesoft.svn.core.internal.io.fs.FSRepositoryFactory;
 import org.tmatesoft.svn.core.internal.io.svn.SVNRepositoryFactoryImpl;
 import org.tmatesoft.svn.core.io.SVNRepository;
-import org.tmatesoft.svn.core.io.SVNRepositoryFactory;
-import org.tmatesoft.svn.core.wc.SVNWCUtil;
+
+import com.snoopy.subversion.log.LogProjection;
+import com.snoopy.subversion.log.SvnLogCache;
+import com.snoopy.subversion.output.OutputSink;
+import com.snoopy.subversion.output.OutputSinks;
+import com.snoopy.subversion.pool.SvnSessionPool;
 
 /**
  * <pre>
@@ -67,7 +72,8 @@ public class History {
     /**
      * args parameter is used to obtain a repository location URL, a start
      * revision number, an end revision number, user's account name & password
-     * to authenticate him to the server.
+     * to authenticate him to the server, an optional output format and an
+     * optional log projection.
      */
     public static void main(String[] args) {
         /**
@@ -78,6 +84,8 @@ public class History {
         String password = "anonymous";
         long startRevision = 0;
         long endRevision = -1;//HEAD (the latest) revision
+        String format = null;//print in the human readable form below
+        LogProjection projection = LogProjection.FULL;//all changed paths and revision properties
         /**
          * Initializes the library (it must be done before ever using the
          * library itself)
@@ -108,18 +116,43 @@ public class History {
              * Obtains a password
              */
             password = (args.length >= 5) ? args[4] : password;
+            /**
+             * Obtains an output format: "json" (one JSON object per line) or
+             * "binary" (length-prefixed records), see OutputSinks
+             */
+            format = (args.length >= 6) ? args[5] : format;
+            /**
+             * Obtains a log projection: "full", "summary" (author, date and
+             * log message without changed paths) or "timeline" (only the
+             * date), see LogProjection. Fields left out are not decoded from
+             * the cache.
+             */
+            if (args.length >= 7) {
+                try {
+                    projection = LogProjection.forName(args[6]);
+                } catch (IllegalArgumentException e) {
+                    System.err.println("error: " + e.getMessage());
+                    System.exit(1);
+                }
+            }
         }
 
         SVNRepository repository = null;
         
         try {
             /**
-             * Creates an instance of SVNRepository to work with the repository.
-             * All user's requests to the repository are relative to the
-             * repository location used to create this SVNRepository.
+             * Borrows an SVNRepository to work with the repository from the
+             * session pool. All user's requests to the repository are relative
+             * to the repository location the session was borrowed for.
              * SVNURL is a wrapper for URL strings that refer to repository locations.
+             * 
+             * User's authentication information (name/password) is part of the
+             * pool key: a session that was already connected and authenticated
+             * with the same credentials is reused, so short read operations skip
+             * the connection handshake. A borrowed session must be given back with
+             * SvnSessionPool.release(..) and is never shared between two callers.
              */
-            repository = SVNRepositoryFactory.create(SVNURL.parseURIEncoded(url));
+            repository = SvnSessionPool.getInstance().borrow(SVNURL.parseURIEncoded(url), name, password);
         } catch (SVNException svne) {
             /**
              * Perhaps a malformed URL is the cause of this exception.
@@ -130,76 +163,70 @@ public class History {
             System.exit(1);
         }
 
-        /**
-         * User's authentication information (name/password) is provided via  an 
-         * ISVNAuthenticationManager  instance.  SVNWCUtil  creates  a   default 
-         * authentication manager given user's name and password.
-         * 
-         * Default authentication manager first attempts to use provided user name 
-         * and password and then falls back to the credentials stored in the 
-         * default Subversion credentials storage that is located in Subversion 
-         * configuration area. If you'd like to use provided user name and password 
-         * only you may use BasicAuthenticationManager class instead of default 
-         * authentication manager:
-         * 
-         *  authManager = new BasicAuthenticationsManager(userName, userPassword);
-         *  
-         * You may also skip this point - anonymous access will be used. 
-         */
-        ISVNAuthenticationManager authManager = SVNWCUtil.createDefaultAuthenticationManager(name, password);
-        repository.setAuthenticationManager(authManager);
-
         /**
          * Gets the latest revision number of the repository
          */
         try {
             endRevision = repository.getLatestRevision();
         } catch (SVNException svne) {
+            SvnSessionPool.getInstance().invalidate(repository);
             System.err.println("error while fetching the latest repository revision: " + svne.getMessage());
             System.exit(1);
         }
 
-        Collection logEntries = null;
+        final Collection<SVNLogEntry> logEntries = new ArrayList<SVNLogEntry>();
+        /**
+         * With an output format the entries are not collected but written
+         * straight to a buffered sink as they are read from the cache.
+         */
+        final OutputSink sink = (format != null) ? OutputSinks.create(format, System.out) : null;
+        SvnLogCache logCache = null;
         try {
             /**
-             * Collects SVNLogEntry objects for all revisions in the range
-             * defined by its start and end points [startRevision, endRevision].
-             * For each revision commit information is represented by
-             * SVNLogEntry.
-             * 
-             * the 1st parameter (targetPaths - an array of path strings) is set
-             * when restricting the [startRevision, endRevision] range to only
-             * those revisions when the paths in targetPaths were changed.
-             * 
-             * the 2nd parameter if non-null - is a user's Collection that will
-             * be filled up with found SVNLogEntry objects; it's just another
-             * way to reach the scope.
+             * Committed revisions never change, so the log is served from a
+             * local cache kept per repository UUID (see SvnLogCache). refresh()
+             * only asks the server for the revisions after the last cached one
+             * up to the latest revision; the cached entries are then filtered
+             * by the path of the repository location.
              * 
-             * startRevision, endRevision - to define a range of revisions you are
-             * interested in; by default in this program - startRevision=0, endRevision=
-             * the latest (HEAD) revision of the repository.
-             * 
-             * the 5th parameter - a boolean flag changedPath - if true then for
-             * each revision a corresponding SVNLogEntry will contain a map of
-             * all paths which were changed in that revision.
+             * For each revision commit information is represented by
+             * SVNLogEntry, the same way SVNRepository.log(..) with changedPath
+             * set to true does: all changed paths, the author, the date and the
+             * log message.
              * 
-             * the 6th parameter - a boolean flag strictNode - if false and a
-             * changed path is a copy (branch) of an existing one in the repository
-             * then the history for its origin will be traversed; it means the 
-             * history of changes of the target URL (and all that there's in that 
-             * URL) will include the history of the origin path(s).
-             * Otherwise if strictNode is true then the origin path history won't be
-             * included.
+             * Unlike SVNRepository.log(..) with strictNode set to false, the
+             * history of the origin of a copied path is not traversed.
              * 
-             * The return value is a Collection filled up with SVNLogEntry Objects.
+             * The projection trims the entries the same way the
+             * revisionProperties and changedPath parameters of
+             * SVNRepository.log(..) do.
              */
-            logEntries = repository.log(new String[] {""}, null,
-                    startRevision, endRevision, true, true);
-
+            logCache = SvnLogCache.open(SvnLogCache.getDefaultDirectory(), repository);
+            logCache.refresh(repository);
+            logCache.log(repository.getRepositoryPath(""), startRevision, endRevision, 0, projection,
+                    new ISVNLogEntryHandler() {
+                        @Override
+                        public void handleLogEntry(SVNLogEntry logEntry) throws SVNException {
+                            if (sink != null) {
+                                sink.writeLogEntry(logEntry);
+                            } else {
+                                logEntries.add(logEntry);
+                            }
+                        }
+                    });
+            if (sink != null) {
+                sink.close();
+            }
         } catch (SVNException svne) {
+            SvnSessionPool.getInstance().invalidate(repository);
             System.out.println("error while collecting log information for '"
                     + url + "': " + svne.getMessage());
             System.exit(1);
+        } finally {
+            if (logCache != null) {
+                logCache.close();
+            }
+            SvnSessionPool.getInstance().release(repository);
         }
         for (Iterator entries = logEntries.iterator(); entries.hasNext();) {
             /**
@@ -0,0 +1,246 @@
+/**
+ * <pre>
+ * Copyright (C), 2026, 杭州共道科技
+ * FileName: ParallelTreeLister
+ * Author:   LiHaiQing
+ * Date:     2026/10/19 17:30
+ * Description: 多会话并行递归列出svn目录树
+ * History:
+ * <author>          <time>          <version>          <desc>
+ * 作者姓名           修改时间           版本号              描述
+ * </pre>
+ */
+package com.snoopy.subversion.tree;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.Semaphore;
+
+import org.tmatesoft.svn.core.ISVNDirEntryHandler;
+import org.tmatesoft.svn.core.SVNCancelException;
+import org.tmatesoft.svn.core.SVNDirEntry;
+import org.tmatesoft.svn.core.SVNErrorCode;
+import org.tmatesoft.svn.core.SVNErrorMessage;
+import org.tmatesoft.svn.core.SVNException;
+import org.tmatesoft.svn.core.SVNNodeKind;
+import org.tmatesoft.svn.core.SVNURL;
+import org.tmatesoft.svn.core.io.SVNRepository;
+
+import com.snoopy.subversion.pool.SvnSessionPool;
+
+/**
+ * <pre>
+ * DisplayRepositoryTree.listEntries 的并行版本: 每个目录的 getDir 是一个 fork/join 任务,
+ * 子目录任务 fork 出去由空闲线程窃取执行, 各自从 SvnSessionPool 借会话, 同一时刻最多
+ * parallelism 个 getDir 在进行.
+ *
+ * 输出顺序是确定的: 与 listEntries 一样深度优先, 同一目录内按名称排序.
+ * 调用线程按这个顺序等待各目录的结果并依次交给 handler, 前面的目录返回后就开始输出,
+ * 不必等整棵树拉完. 整棵树在同一个版本上列出, revision 为负数时先取一次 HEAD.
+ *
+ * handler 收到的 SVNDirEntry 的 getRelativePath() 为相对于 url 的路径.
+ *
+ *  new ParallelTreeLister(SvnSessionPool.getInstance(), name, password, 8).list(url, -1, handler);
+ * </pre>
+ *
+ * @ClassName: ParallelTreeLister.java
+ * @author: LiHaiQing
+ * @date: 2026/10/19 17:30
+ * @version V1.0.0
+ */
+public class ParallelTreeLister {
+
+    private SvnSessionPool myPool;
+    private String myUserName;
+    private String myPassword;
+    private int myParallelism;
+
+    public ParallelTreeLister(SvnSessionPool pool, String userName, String password, int parallelism){
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("parallelism must be positive");
+        }
+        myPool = pool;
+        myUserName = userName;
+        myPassword = password;
+        myParallelism = Math.min(parallelism, pool.getMaxSessionsPerHost());
+    }
+
+    /**
+     * 递归列出 url 下的所有条目. <br>
+     *
+     * @return 交给 handler 的条目数
+     */
+    public long list(SVNURL url, long revision, ISVNDirEntryHandler handler) throws SVNException {
+        if (revision < 0) {
+            SVNRepository repository = myPool.borrow(url, myUserName, myPassword);
+            try {
+                revision = repository.getLatestRevision();
+            } finally {
+                myPool.release(repository);
+            }
+        }
+        ForkJoinPool forkJoinPool = new ForkJoinPool(myParallelism);
+        try {
+            DirectoryTask root = new DirectoryTask(new Listing(url, revision, new Semaphore(myParallelism)), "");
+            forkJoinPool.execute(root);
+            return emit(root, "", handler);
+        } finally {
+            forkJoinPool.shutdownNow();
+        }
+    }
+
+    /**
+     * 按深度优先顺序输出, 遇到子目录时等待它的任务完成
+     */
+    private long emit(DirectoryTask task, String path, ISVNDirEntryHandler handler) throws SVNException {
+        DirectoryNode node = await(task);
+        long count = 0;
+        int child = 0;
+        for (SVNDirEntry entry : node.myEntries) {
+            String entryPath = "".equals(path) ? entry.getName() : path + "/" + entry.getName();
+            entry.setRelativePath(entryPath);
+            if (handler != null) {
+                handler.handleDirEntry(entry);
+            }
+            count++;
+            if (entry.getKind() == SVNNodeKind.DIR) {
+                count += emit(node.myChildren.get(child++), entryPath, handler);
+            }
+        }
+        return count;
+    }
+
+    private DirectoryNode await(DirectoryTask task) throws SVNException {
+        try {
+            return task.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SVNCancelException();
+        } catch (ExecutionException e) {
+            for (Throwable cause = e.getCause(); cause != null; cause = cause.getCause()) {
+                if (cause instanceof SVNException) {
+                    throw (SVNException) cause;
+                }
+            }
+            SVNErrorMessage err = SVNErrorMessage.create(SVNErrorCode.UNKNOWN, "error while listing ''{0}''",
+                                                         task.myPath);
+            throw new SVNException(err, e.getCause());
+        }
+    }
+
+    /**
+     * 一次 list 调用共享的参数
+     */
+    private static class Listing {
+
+        private SVNURL myURL;
+        private long myRevision;
+        private Semaphore myInFlight;
+
+        Listing(SVNURL url, long revision, Semaphore inFlight){
+            myURL = url;
+            myRevision = revision;
+            myInFlight = inFlight;
+        }
+    }
+
+    private static class DirectoryNode {
+
+        private List<SVNDirEntry> myEntries;
+        /**
+         * 与 myEntries 中的目录一一对应
+         */
+        private List<DirectoryTask> myChildren = new ArrayList<DirectoryTask>();
+
+        DirectoryNode(List<SVNDirEntry> entries){
+            myEntries = entries;
+        }
+    }
+
+    private class DirectoryTask extends RecursiveTask<DirectoryNode> {
+
+        private static final long serialVersionUID = 1L;
+
+        private Listing myListing;
+        private String myPath;
+
+        DirectoryTask(Listing listing, String path){
+            myListing = listing;
+            myPath = path;
+        }
+
+        @Override
+        protected DirectoryNode compute() {
+            List<SVNDirEntry> entries;
+            try {
+                entries = getDir();
+            } catch (SVNException e) {
+                throw new ListingException(e);
+            }
+            Collections.sort(entries, new Comparator<SVNDirEntry>() {
+
+                @Override
+                public int compare(SVNDirEntry o1, SVNDirEntry o2) {
+                    return o1.getName().compareTo(o2.getName());
+                }
+            });
+            DirectoryNode node = new DirectoryNode(entries);
+            for (SVNDirEntry entry : entries) {
+                if (entry.getKind() == SVNNodeKind.DIR) {
+                    DirectoryTask child = new DirectoryTask(myListing,
+                                                            "".equals(myPath) ? entry.getName() : myPath + "/"
+                                                                                                 + entry.getName());
+                    child.fork();
+                    node.myChildren.add(child);
+                }
+            }
+            return node;
+        }
+
+        @SuppressWarnings("unchecked")
+        private List<SVNDirEntry> getDir() throws SVNException {
+            try {
+                myListing.myInFlight.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new SVNCancelException();
+            }
+            try {
+                SVNRepository repository = myPool.borrow(myListing.myURL, myUserName, myPassword);
+                Collection<SVNDirEntry> entries;
+                try {
+                    entries = repository.getDir(myPath, myListing.myRevision, null, (Collection<SVNDirEntry>) null);
+                } catch (SVNException e) {
+                    /**
+                     * 连接类错误的会话不再放回池中
+                     */
+                    if (e.getErrorMessage().getErrorCode().getCategory() == SVNErrorCode.RA_CATEGORY) {
+                        myPool.invalidate(repository);
+                    } else {
+                        myPool.release(repository);
+                    }
+                    throw e;
+                }
+                myPool.release(repository);
+                return new ArrayList<SVNDirEntry>(entries);
+            } finally {
+                myListing.myInFlight.release();
+            }
+        }
+    }
+
+    private static class ListingException extends RuntimeException {
+
+        private static final long serialVersionUID = 1L;
+
+        ListingException(SVNException cause){
+            super(cause);
+        }
+    }
+}
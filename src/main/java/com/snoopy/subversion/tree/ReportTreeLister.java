@@ -0,0 +1,258 @@
+/**
+ * <pre>
+ * Copyright (C), 2026, 杭州共道科技
+ * FileName: ReportTreeLister
+ * Author:   LiHaiQing
+ * Date:     2026/10/19 18:20
+ * Description: 一次status报告列出整个svn目录树
+ * History:
+ * <author>          <time>          <version>          <desc>
+ * 作者姓名           修改时间           版本号              描述
+ * </pre>
+ */
+package com.snoopy.subversion.tree;
+
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.tmatesoft.svn.core.ISVNDirEntryHandler;
+import org.tmatesoft.svn.core.SVNCommitInfo;
+import org.tmatesoft.svn.core.SVNDepth;
+import org.tmatesoft.svn.core.SVNDirEntry;
+import org.tmatesoft.svn.core.SVNException;
+import org.tmatesoft.svn.core.SVNNodeKind;
+import org.tmatesoft.svn.core.SVNProperty;
+import org.tmatesoft.svn.core.SVNPropertyValue;
+import org.tmatesoft.svn.core.SVNURL;
+import org.tmatesoft.svn.core.internal.util.SVNDate;
+import org.tmatesoft.svn.core.internal.wc.SVNFileUtil;
+import org.tmatesoft.svn.core.io.ISVNEditor;
+import org.tmatesoft.svn.core.io.ISVNReporter;
+import org.tmatesoft.svn.core.io.ISVNReporterBaton;
+import org.tmatesoft.svn.core.io.SVNRepository;
+import org.tmatesoft.svn.core.io.diff.SVNDiffWindow;
+
+/**
+ * <pre>
+ * 与 DisplayRepositoryTree.listEntries 逐个目录 getDir 不同, 这里只和服务器进行一次会话:
+ * 像 Export 一样报告一个空的 'working copy', 但调用的是 SVNRepository.status(.., SVNDepth.INFINITY, ..),
+ * 服务器只发送目录结构(addDir/addFile)和条目属性(svn:entry:committed-rev 等), 不发送文件内容.
+ * 高延迟的链路上 O(目录数) 次往返变成一次.
+ *
+ * 条目在整个报告处理完后按深度优先、同一目录内按名称排序的顺序交给 handler,
+ * 与 ParallelTreeLister 的顺序相同. status 不提供文件大小, SVNDirEntry.getSize() 为 -1.
+ *
+ *  new ReportTreeLister().list(repository, -1, handler);
+ * </pre>
+ *
+ * @ClassName: ReportTreeLister.java
+ * @author: LiHaiQing
+ * @date: 2026/10/19 18:20
+ * @version V1.0.0
+ */
+public class ReportTreeLister {
+
+    /**
+     * 递归列出 repository 所在位置下的所有条目, revision 为负数表示 HEAD. <br>
+     *
+     * @return 交给 handler 的条目数
+     */
+    public long list(SVNRepository repository, long revision, ISVNDirEntryHandler handler) throws SVNException {
+        if (revision < 0) {
+            revision = repository.getLatestRevision();
+        }
+        TreeEditor editor = new TreeEditor();
+        repository.status(revision, null, SVNDepth.INFINITY, new EmptyReporterBaton(revision), editor);
+        return emit(editor.myRoot, "", repository.getLocation(), repository.getRepositoryRoot(true), handler);
+    }
+
+    private long emit(Node node, String path, SVNURL url, SVNURL root, ISVNDirEntryHandler handler)
+                                                                                                   throws SVNException {
+        long count = 0;
+        for (Node child : node.myChildren.values()) {
+            String childPath = "".equals(path) ? child.myName : path + "/" + child.myName;
+            SVNURL childURL = url.appendPath(childPath, false);
+            SVNDirEntry entry = new SVNDirEntry(childURL, root, child.myName, child.myKind, -1,
+                                                child.myHasProperties, child.myRevision, child.myDate,
+                                                child.myAuthor);
+            entry.setRelativePath(childPath);
+            if (handler != null) {
+                handler.handleDirEntry(entry);
+            }
+            count++;
+            if (child.myChildren != null) {
+                count += emit(child, childPath, url, root, handler);
+            }
+        }
+        return count;
+    }
+
+    private static class Node {
+
+        private String myName;
+        private SVNNodeKind myKind;
+        private long myRevision = -1;
+        private Date myDate;
+        private String myAuthor;
+        private boolean myHasProperties;
+        /**
+         * 文件为 null
+         */
+        private Map<String, Node> myChildren;
+
+        Node(String name, SVNNodeKind kind){
+            myName = name;
+            myKind = kind;
+            if (kind == SVNNodeKind.DIR) {
+                myChildren = new TreeMap<String, Node>();
+            }
+        }
+
+        void setProperty(String name, SVNPropertyValue value) {
+            if (value == null) {
+                return;
+            }
+            if (SVNProperty.COMMITTED_REVISION.equals(name)) {
+                myRevision = Long.parseLong(value.getString());
+            } else if (SVNProperty.COMMITTED_DATE.equals(name)) {
+                myDate = SVNDate.parseDate(value.getString());
+            } else if (SVNProperty.LAST_AUTHOR.equals(name)) {
+                myAuthor = value.getString();
+            } else if (SVNProperty.isRegularProperty(name)) {
+                myHasProperties = true;
+            }
+        }
+    }
+
+    /**
+     * 报告空的 'working copy', 服务器会把整棵树作为新增发送过来
+     */
+    private static class EmptyReporterBaton implements ISVNReporterBaton {
+
+        private long myRevision;
+
+        EmptyReporterBaton(long revision){
+            myRevision = revision;
+        }
+
+        @Override
+        public void report(ISVNReporter reporter) throws SVNException {
+            try {
+                reporter.setPath("", null, myRevision, SVNDepth.INFINITY, true);
+                reporter.finishReport();
+            } catch (SVNException svne) {
+                reporter.abortReport();
+                throw svne;
+            }
+        }
+    }
+
+    /**
+     * 只记录新增的目录、文件以及它们的条目属性, 不处理任何文件内容
+     */
+    private static class TreeEditor implements ISVNEditor {
+
+        private Node myRoot = new Node("", SVNNodeKind.DIR);
+        private List<Node> myDirectories = new ArrayList<Node>();
+        private Node myFile;
+
+        @Override
+        public void targetRevision(long revision) throws SVNException {
+        }
+
+        @Override
+        public void openRoot(long revision) throws SVNException {
+            myDirectories.add(myRoot);
+        }
+
+        @Override
+        public void addDir(String path, String copyFromPath, long copyFromRevision) throws SVNException {
+            Node dir = add(path, SVNNodeKind.DIR);
+            myDirectories.add(dir);
+        }
+
+        @Override
+        public void openDir(String path, long revision) throws SVNException {
+            myDirectories.add(add(path, SVNNodeKind.DIR));
+        }
+
+        @Override
+        public void changeDirProperty(String name, SVNPropertyValue value) throws SVNException {
+            myDirectories.get(myDirectories.size() - 1).setProperty(name, value);
+        }
+
+        @Override
+        public void closeDir() throws SVNException {
+            myDirectories.remove(myDirectories.size() - 1);
+        }
+
+        @Override
+        public void addFile(String path, String copyFromPath, long copyFromRevision) throws SVNException {
+            myFile = add(path, SVNNodeKind.FILE);
+        }
+
+        @Override
+        public void openFile(String path, long revision) throws SVNException {
+            myFile = add(path, SVNNodeKind.FILE);
+        }
+
+        @Override
+        public void changeFileProperty(String path, String name, SVNPropertyValue value) throws SVNException {
+            myFile.setProperty(name, value);
+        }
+
+        @Override
+        public void closeFile(String path, String textChecksum) throws SVNException {
+            myFile = null;
+        }
+
+        @Override
+        public void applyTextDelta(String path, String baseChecksum) throws SVNException {
+        }
+
+        @Override
+        public OutputStream textDeltaChunk(String path, SVNDiffWindow diffWindow) throws SVNException {
+            return SVNFileUtil.DUMMY_OUT;
+        }
+
+        @Override
+        public void textDeltaEnd(String path) throws SVNException {
+        }
+
+        @Override
+        public void deleteEntry(String path, long revision) throws SVNException {
+        }
+
+        @Override
+        public void absentDir(String path) throws SVNException {
+        }
+
+        @Override
+        public void absentFile(String path) throws SVNException {
+        }
+
+        @Override
+        public SVNCommitInfo closeEdit() throws SVNException {
+            return null;
+        }
+
+        @Override
+        public void abortEdit() throws SVNException {
+        }
+
+        private Node add(String path, SVNNodeKind kind) {
+            Node parent = myDirectories.get(myDirectories.size() - 1);
+            String name = path.substring(path.lastIndexOf('/') + 1);
+            Node node = parent.myChildren.get(name);
+            if (node == null) {
+                node = new Node(name, kind);
+                parent.myChildren.put(name, node);
+            }
+            return node;
+        }
+    }
+}
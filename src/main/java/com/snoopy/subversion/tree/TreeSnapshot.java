@@ -0,0 +1,262 @@
+/**
+ * <pre>
+ * Copyright (C), 2026, 杭州共道科技
+ * FileName: TreeSnapshot
+ * Author:   LiHaiQing
+ * Date:     2026/10/19 18:50
+ * Description: 某个版本的不可变svn目录树快照
+ * History:
+ * <author>          <time>          <version>          <desc>
+ * 作者姓名           修改时间           版本号              描述
+ * </pre>
+ */
+package com.snoopy.subversion.tree;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.tmatesoft.svn.core.ISVNDirEntryHandler;
+import org.tmatesoft.svn.core.SVNDirEntry;
+import org.tmatesoft.svn.core.SVNErrorCode;
+import org.tmatesoft.svn.core.SVNErrorMessage;
+import org.tmatesoft.svn.core.SVNException;
+import org.tmatesoft.svn.core.SVNLogEntryPath;
+import org.tmatesoft.svn.core.SVNNodeKind;
+import org.tmatesoft.svn.core.SVNURL;
+
+/**
+ * <pre>
+ * TreeSnapshots 中一个版本的整棵仓库目录树, 不可变, 可以在多个线程间共享.
+ * 相邻版本的快照共享所有没有变化的子树, 所以 diff 只需要走到两边不是同一个节点对象的地方,
+ * 代价与变动的路径数成正比, 而不是与树的大小成正比.
+ *
+ * 快照里没有文件大小, list 交给 handler 的 SVNDirEntry.getSize() 为 -1.
+ *
+ *  TreeSnapshot snapshot = snapshots.getSnapshot(revision);
+ *  snapshot.list(repository.getRepositoryRoot(true), "/trunk", true, handler);
+ *  List&lt;SVNLogEntryPath&gt; changes = snapshots.getSnapshot(revision - 10).diff(snapshot);
+ * </pre>
+ *
+ * @ClassName: TreeSnapshot.java
+ * @author: LiHaiQing
+ * @date: 2026/10/19 18:50
+ * @version V1.0.0
+ */
+public class TreeSnapshot {
+
+    private TreeSnapshots mySnapshots;
+    private long myRevision;
+    private Node myRoot;
+
+    TreeSnapshot(TreeSnapshots snapshots, long revision, Node root){
+        mySnapshots = snapshots;
+        myRevision = revision;
+        myRoot = root;
+    }
+
+    public long getRevision() {
+        return myRevision;
+    }
+
+    /**
+     * path (仓库内的绝对路径) 的节点类型, 不存在为 SVNNodeKind.NONE
+     */
+    public SVNNodeKind checkPath(String path) {
+        Node node = find(myRoot, path);
+        return node == null ? SVNNodeKind.NONE : node.myKind;
+    }
+
+    /**
+     * 列出目录 path (仓库内的绝对路径) 下的条目, recursive 时深度优先递归, 同一目录内按名称排序.
+     * handler 收到的 SVNDirEntry 的 getRelativePath() 为相对于 path 的路径. <br>
+     *
+     * @return 交给 handler 的条目数
+     */
+    public long list(SVNURL repositoryRoot, String path, boolean recursive, ISVNDirEntryHandler handler)
+                                                                                                          throws SVNException {
+        Node node = find(myRoot, path);
+        if (node == null || node.myKind != SVNNodeKind.DIR) {
+            SVNErrorMessage err = SVNErrorMessage.create(SVNErrorCode.FS_NOT_DIRECTORY,
+                                                         "''{0}'' is not a directory in revision {1}", path,
+                                                         String.valueOf(myRevision));
+            throw new SVNException(err);
+        }
+        return list(node, repositoryRoot.appendPath(path, false), repositoryRoot, "", recursive, handler);
+    }
+
+    /**
+     * 从当前快照到 to 的变动, 按路径排序, 路径为仓库内的绝对路径.
+     * 'A'/'D'/'R' 只报告新增/删除/替换的子树的根, 不展开其下的条目; 'M' 为节点自身被修改(文件内容或属性),
+     * 目录只因为下面有变动不算修改. 比较时遇到两边是同一个节点对象的子树直接跳过. <br>
+     */
+    public List<SVNLogEntryPath> diff(TreeSnapshot to) {
+        List<SVNLogEntryPath> changes = new ArrayList<SVNLogEntryPath>();
+        diff(myRoot, to.myRoot, "", changes);
+        return changes;
+    }
+
+    private long list(Node directory, SVNURL url, SVNURL root, String path, boolean recursive,
+                      ISVNDirEntryHandler handler) throws SVNException {
+        long count = 0;
+        for (Node child : directory.myChildren) {
+            String childPath = "".equals(path) ? child.myName : path + "/" + child.myName;
+            SVNDirEntry entry = new SVNDirEntry(url.appendPath(childPath, false), root, child.myName,
+                                                child.myKind, -1, false, child.myRevision,
+                                                mySnapshots.getDate(child.myRevision),
+                                                mySnapshots.getAuthor(child.myRevision));
+            entry.setRelativePath(childPath);
+            if (handler != null) {
+                handler.handleDirEntry(entry);
+            }
+            count++;
+            if (recursive && child.myKind == SVNNodeKind.DIR) {
+                count += list(child, url, root, childPath, recursive, handler);
+            }
+        }
+        return count;
+    }
+
+    private static void diff(Node from, Node to, String path, List<SVNLogEntryPath> changes) {
+        if (from == to) {
+            return;
+        }
+        String changedPath = "".equals(path) ? "/" : path;
+        if (from.myKind != to.myKind || from.myAddedRevision != to.myAddedRevision) {
+            changes.add(new SVNLogEntryPath(changedPath, SVNLogEntryPath.TYPE_REPLACED, null, -1, to.myKind));
+            return;
+        }
+        if (from.myChangedRevision != to.myChangedRevision) {
+            changes.add(new SVNLogEntryPath(changedPath, SVNLogEntryPath.TYPE_MODIFIED, null, -1, to.myKind));
+        }
+        if (to.myKind != SVNNodeKind.DIR) {
+            return;
+        }
+        Node[] left = from.myChildren;
+        Node[] right = to.myChildren;
+        int i = 0;
+        int j = 0;
+        while (i < left.length || j < right.length) {
+            int compare = i == left.length ? 1 : j == right.length ? -1 : left[i].myName.compareTo(right[j].myName);
+            if (compare < 0) {
+                changes.add(new SVNLogEntryPath(path + "/" + left[i].myName, SVNLogEntryPath.TYPE_DELETED, null, -1,
+                                                left[i].myKind));
+                i++;
+            } else if (compare > 0) {
+                changes.add(new SVNLogEntryPath(path + "/" + right[j].myName, SVNLogEntryPath.TYPE_ADDED, null, -1,
+                                                right[j].myKind));
+                j++;
+            } else {
+                diff(left[i], right[j], path + "/" + right[j].myName, changes);
+                i++;
+                j++;
+            }
+        }
+    }
+
+    static Node find(Node root, String path) {
+        Node node = root;
+        for (String name : split(path)) {
+            if (node == null || node.myChildren == null) {
+                return null;
+            }
+            node = node.child(name);
+        }
+        return node;
+    }
+
+    static String[] split(String path) {
+        List<String> names = new ArrayList<String>();
+        for (String name : path.split("/")) {
+            if (name.length() > 0) {
+                names.add(name);
+            }
+        }
+        return names.toArray(new String[names.size()]);
+    }
+
+    /**
+     * 不可变的树节点. 修改一个路径时复制从根到这个路径上的所有节点, 其余子树原样共享.
+     */
+    static final class Node {
+
+        static final Node[] NO_CHILDREN = new Node[0];
+
+        final String myName;
+        final SVNNodeKind myKind;
+        /**
+         * 最后一次变动的版本, 与 svn ls -v 的版本相同: 目录下任何路径变动都会更新目录的版本
+         */
+        final long myRevision;
+        /**
+         * 节点自身最后一次被添加或修改(内容、属性)的版本
+         */
+        final long myChangedRevision;
+        /**
+         * 节点被添加(包括复制和替换)的版本
+         */
+        final long myAddedRevision;
+        /**
+         * 按名称排序, 文件为 null
+         */
+        final Node[] myChildren;
+
+        Node(String name, SVNNodeKind kind, long revision, long changedRevision, long addedRevision,
+             Node[] children){
+            myName = name;
+            myKind = kind;
+            myRevision = revision;
+            myChangedRevision = changedRevision;
+            myAddedRevision = addedRevision;
+            myChildren = kind == SVNNodeKind.DIR ? (children == null ? NO_CHILDREN : children) : null;
+        }
+
+        Node child(String name) {
+            int i = indexOf(name);
+            return i < 0 ? null : myChildren[i];
+        }
+
+        int indexOf(String name) {
+            int low = 0;
+            int high = myChildren.length - 1;
+            while (low <= high) {
+                int middle = (low + high) >>> 1;
+                int compare = myChildren[middle].myName.compareTo(name);
+                if (compare < 0) {
+                    low = middle + 1;
+                } else if (compare > 0) {
+                    high = middle - 1;
+                } else {
+                    return middle;
+                }
+            }
+            return -(low + 1);
+        }
+
+        /**
+         * 复制一个替换(或新增)了子节点 child 的目录; child 为 null 时删除名为 name 的子节点
+         */
+        Node withChild(String name, Node child, long revision) {
+            int i = indexOf(name);
+            Node[] children;
+            if (child == null) {
+                if (i < 0) {
+                    return this;
+                }
+                children = new Node[myChildren.length - 1];
+                System.arraycopy(myChildren, 0, children, 0, i);
+                System.arraycopy(myChildren, i + 1, children, i, children.length - i);
+            } else if (i >= 0) {
+                children = Arrays.copyOf(myChildren, myChildren.length);
+                children[i] = child;
+            } else {
+                i = -(i + 1);
+                children = new Node[myChildren.length + 1];
+                System.arraycopy(myChildren, 0, children, 0, i);
+                children[i] = child;
+                System.arraycopy(myChildren, i, children, i + 1, myChildren.length - i);
+            }
+            return new Node(myName, SVNNodeKind.DIR, revision, myChangedRevision, myAddedRevision, children);
+        }
+    }
+}
@@ -0,0 +1,212 @@
+/**
+ * <pre>
+ * Copyright (C), 2026, 杭州共道科技
+ * FileName: TreeSnapshots
+ * Author:   LiHaiQing
+ * Date:     2026/10/19 18:50
+ * Description: 按版本保存共享子树的svn目录树快照
+ * History:
+ * <author>          <time>          <version>          <desc>
+ * 作者姓名           修改时间           版本号              描述
+ * </pre>
+ */
+package com.snoopy.subversion.tree;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.tmatesoft.svn.core.SVNLogEntry;
+import org.tmatesoft.svn.core.SVNLogEntryPath;
+import org.tmatesoft.svn.core.SVNNodeKind;
+
+import com.snoopy.subversion.log.SvnLogCache;
+import com.snoopy.subversion.tree.TreeSnapshot.Node;
+
+/**
+ * <pre>
+ * 每个版本一棵不可变的(path-copying)路径树: 版本 N 的树由版本 N-1 的树加上版本 N 日志中的
+ * changed paths 得到, 只复制从根到变动路径上的节点, 其余子树与上一个版本共享.
+ * 所以保存所有版本的快照只比保存一棵树多占用 O(变动路径数 * 深度) 的内存,
+ * 取任意已构建版本的快照是 O(1), 两个版本之间的 diff 与变动的路径数成正比.
+ *
+ * 树从 SvnLogCache 构建, 不访问服务器; 日志需要从版本 0 开始连续缓存(SvnLogCache.refresh 总是如此).
+ * 复制(copyfrom)直接引用来源版本快照中的子树.
+ *
+ *  SvnLogCache cache = SvnLogCache.open(SvnLogCache.getDefaultDirectory(), repository);
+ *  cache.refresh(repository);
+ *  TreeSnapshots snapshots = new TreeSnapshots();
+ *  snapshots.update(cache);
+ *  snapshots.getSnapshot(revision).list(repository.getRepositoryRoot(true), "/trunk", true, handler);
+ * </pre>
+ *
+ * @ClassName: TreeSnapshots.java
+ * @author: LiHaiQing
+ * @date: 2026/10/19 18:50
+ * @version V1.0.0
+ */
+public class TreeSnapshots {
+
+    private static Logger logger = LoggerFactory.getLogger(TreeSnapshots.class);
+
+    /**
+     * 下标为 revision
+     */
+    private Node[] myRoots = new Node[0];
+    private Date[] myDates = new Date[0];
+    private String[] myAuthors = new String[0];
+    private long myLastRevision = -1;
+
+    /**
+     * 最后构建的版本号, 还没有构建任何版本为 -1
+     */
+    public synchronized long getLastRevision() {
+        return myLastRevision;
+    }
+
+    /**
+     * 用 cache 中 (最后构建的版本, 最后缓存的版本] 的日志构建快照. <br>
+     *
+     * @return 更新后最后构建的版本号
+     */
+    public synchronized long update(SvnLogCache cache) {
+        long lastRevision = cache.getLastRevision();
+        for (long revision = myLastRevision + 1; revision <= lastRevision; revision++) {
+            SVNLogEntry entry = cache.getEntry(revision);
+            if (entry == null) {
+                logger.warn("revision {} is not in the log cache, snapshots stop at {}", revision, myLastRevision);
+                break;
+            }
+            apply(entry);
+        }
+        return myLastRevision;
+    }
+
+    /**
+     * 版本 revision 的快照, 负数表示最后构建的版本, 还没有构建到这个版本时为 null
+     */
+    public synchronized TreeSnapshot getSnapshot(long revision) {
+        if (revision < 0) {
+            revision = myLastRevision;
+        }
+        if (revision < 0 || revision > myLastRevision) {
+            return null;
+        }
+        return new TreeSnapshot(this, revision, myRoots[(int) revision]);
+    }
+
+    synchronized Date getDate(long revision) {
+        return revision < 0 || revision > myLastRevision ? null : myDates[(int) revision];
+    }
+
+    synchronized String getAuthor(long revision) {
+        return revision < 0 || revision > myLastRevision ? null : myAuthors[(int) revision];
+    }
+
+    private void apply(SVNLogEntry entry) {
+        int revision = (int) entry.getRevision();
+        if (revision != myLastRevision + 1) {
+            throw new IllegalStateException("expected revision " + (myLastRevision + 1) + " but got " + revision);
+        }
+        Node root = revision == 0 ? new Node("", SVNNodeKind.DIR, 0, 0, 0, null) : myRoots[revision - 1];
+        /**
+         * 按路径排序, 保证父路径(例如整个目录的复制)在子路径的修改之前处理
+         */
+        List<SVNLogEntryPath> changedPaths = new ArrayList<SVNLogEntryPath>(entry.getChangedPaths().values());
+        Collections.sort(changedPaths, new Comparator<SVNLogEntryPath>() {
+
+            @Override
+            public int compare(SVNLogEntryPath o1, SVNLogEntryPath o2) {
+                return o1.getPath().compareTo(o2.getPath());
+            }
+        });
+        for (SVNLogEntryPath changedPath : changedPaths) {
+            root = apply(root, changedPath, revision);
+        }
+        if (revision >= myRoots.length) {
+            int length = Math.max(16, myRoots.length * 2);
+            myRoots = Arrays.copyOf(myRoots, length);
+            myDates = Arrays.copyOf(myDates, length);
+            myAuthors = Arrays.copyOf(myAuthors, length);
+        }
+        myRoots[revision] = root;
+        myDates[revision] = entry.getDate();
+        myAuthors[revision] = entry.getAuthor();
+        myLastRevision = revision;
+    }
+
+    private Node apply(Node root, SVNLogEntryPath changedPath, long revision) {
+        String[] names = TreeSnapshot.split(changedPath.getPath());
+        if (names.length == 0) {
+            /**
+             * 只可能是根目录的属性修改
+             */
+            return new Node("", SVNNodeKind.DIR, revision, revision, root.myAddedRevision, root.myChildren);
+        }
+        String name = names[names.length - 1];
+        Node node;
+        switch (changedPath.getType()) {
+        case SVNLogEntryPath.TYPE_DELETED:
+            node = null;
+            break;
+        case SVNLogEntryPath.TYPE_MODIFIED:
+            Node current = TreeSnapshot.find(root, changedPath.getPath());
+            if (current == null) {
+                logger.warn("modified path {} in revision {} is not in the tree", changedPath.getPath(), revision);
+                return root;
+            }
+            node = new Node(name, current.myKind, revision, revision, current.myAddedRevision, current.myChildren);
+            break;
+        default:
+            node = added(name, changedPath, revision);
+        }
+        return put(root, names, 0, node, revision);
+    }
+
+    /**
+     * 'A' 或 'R' 的新节点: 有复制来源时引用来源版本快照中的子树
+     */
+    private Node added(String name, SVNLogEntryPath changedPath, long revision) {
+        if (changedPath.getCopyPath() != null && changedPath.getCopyRevision() >= 0
+            && changedPath.getCopyRevision() < revision) {
+            Node source = TreeSnapshot.find(myRoots[(int) changedPath.getCopyRevision()], changedPath.getCopyPath());
+            if (source != null) {
+                return new Node(name, source.myKind, revision, revision, revision, source.myChildren);
+            }
+            logger.warn("copy source {}@{} of {} is not in the tree", changedPath.getCopyPath(),
+                        changedPath.getCopyRevision(), changedPath.getPath());
+        }
+        /**
+         * 旧的服务器不返回节点类型, 先当作文件, 之后有子路径添加进来时 put 会把它变成目录
+         */
+        SVNNodeKind kind = changedPath.getKind() == SVNNodeKind.DIR ? SVNNodeKind.DIR : SVNNodeKind.FILE;
+        return new Node(name, kind, revision, revision, revision, null);
+    }
+
+    /**
+     * 把 names[index..] 指向的节点替换为 node(为 null 时删除), 返回复制后的 directory
+     */
+    private Node put(Node directory, String[] names, int index, Node node, long revision) {
+        if (directory.myKind != SVNNodeKind.DIR) {
+            directory = new Node(directory.myName, SVNNodeKind.DIR, directory.myRevision,
+                                 directory.myChangedRevision, directory.myAddedRevision, null);
+        }
+        String name = names[index];
+        if (index == names.length - 1) {
+            return directory.withChild(name, node, revision);
+        }
+        Node child = directory.child(name);
+        if (child == null) {
+            if (node == null) {
+                return directory;
+            }
+            child = new Node(name, SVNNodeKind.DIR, revision, revision, revision, null);
+        }
+        return directory.withChild(name, put(child, names, index + 1, node, revision), revision);
+    }
+}
@@ -14,19 +14,26 @@ package com.snoopy.utils;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
 import com.snoopy.subversion.handler.*;
+import com.snoopy.subversion.log.DatedRevisionIndex;
+import com.snoopy.subversion.log.LogProjection;
+import com.snoopy.subversion.log.SvnLogCache;
+import com.snoopy.subversion.pool.SvnSessionPool;
 import org.apache.commons.io.FileUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.tmatesoft.svn.core.*;
-import org.tmatesoft.svn.core.auth.ISVNAuthenticationManager;
 import org.tmatesoft.svn.core.internal.io.dav.DAVRepositoryFactory;
 import org.tmatesoft.svn.core.internal.io.fs.FSRepositoryFactory;
 import org.tmatesoft.svn.core.internal.io.svn.SVNRepositoryFactoryImpl;
 import org.tmatesoft.svn.core.internal.wc.DefaultSVNOptions;
 import org.tmatesoft.svn.core.io.SVNRepository;
-import org.tmatesoft.svn.core.io.SVNRepositoryFactory;
 import org.tmatesoft.svn.core.wc.*;
 
 /**
@@ -62,16 +69,34 @@ public class SvnUtil {
     private static ISVNEventHandler myCommitEventHandler;
     private static ISVNEventHandler myUpdateEventHandler;
     private static ISVNEventHandler myWCEventHandler;
+    /**
+     * url -> 打开的时间索引, 一直保持打开, 查询早于已索引的最后日期的时间点时不访问服务器
+     */
+    private static final Map<String, DatedRevisionIndex> ourDatedRevisionIndexes = new HashMap<String, DatedRevisionIndex>();
 
     /**
      * 获取svn历史版本<br>
+     * 日志从本地缓存(按仓库UUID保存)读取, 每次只向服务器拉取缓存之后新提交的版本
      * 
      * @Title: getSvnHistory
      * @author LiHaiQing
      * @param: [url, name, password, startRevision, endRevision, limit]
      */
-    public void getSvnHistory(String url, String name, String password, Long startRevision, Long endRevision,
-                              Long limit) {
+    public List<SVNLogEntry> getSvnHistory(String url, String name, String password, Long startRevision,
+                                           Long endRevision, Long limit) {
+        return getSvnHistory(url, name, password, startRevision, endRevision, limit, LogProjection.FULL);
+    }
+
+    /**
+     * 获取svn历史版本, 只返回projection要求的changed paths和版本属性<br>
+     * 例如时间线只需要LogProjection.TIMELINE(版本号和日期)
+     *
+     * @Title: getSvnHistory
+     * @author LiHaiQing
+     * @param: [url, name, password, startRevision, endRevision, limit, projection]
+     */
+    public List<SVNLogEntry> getSvnHistory(String url, String name, String password, Long startRevision,
+                                           Long endRevision, Long limit, LogProjection projection) {
         if (startRevision == null || startRevision < 0) {
             startRevision = 0L;
         }
@@ -82,33 +107,112 @@ public class SvnUtil {
 
         setupLibrary();
 
+        final List<SVNLogEntry> logEntries = new ArrayList<SVNLogEntry>();
         SVNRepository repository = null;
         try {
-            repository = SVNRepositoryFactory.create(SVNURL.parseURIEncoded(url));
+            // 从会话池借出已认证的会话, 用完归还
+            repository = SvnSessionPool.getInstance().borrow(SVNURL.parseURIEncoded(url), name, password);
         } catch (SVNException svnException) {
             logger.error("error while creating an SVNRepository for the location {} :{}", url,
                          svnException.getMessage());
+            return logEntries;
         }
-        ISVNAuthenticationManager authManager = SVNWCUtil.createDefaultAuthenticationManager(name,
-                                                                                             password.toCharArray());
-        repository.setAuthenticationManager(authManager);
 
+        SvnLogCache logCache = null;
+        boolean failed = false;
         try {
+            logCache = SvnLogCache.open(SvnLogCache.getDefaultDirectory(), repository);
             // Gets the latest revision number of the repository
-            endRevision = repository.getLatestRevision();
+            endRevision = logCache.refresh(repository);
+            logCache.log(repository.getRepositoryPath(""), startRevision, endRevision, limit == null ? 0 : limit,
+                         projection, new ISVNLogEntryHandler() {
+
+                             @Override
+                             public void handleLogEntry(SVNLogEntry logEntry) throws SVNException {
+                                 logEntries.add(logEntry);
+                             }
+                         });
         } catch (SVNException svnException) {
-            logger.error("error while fetching the latest repository revision: {}", svnException.getMessage());
+            failed = true;
+            logger.error("error while collecting log information for  {} :{}", url, svnException.getMessage());
+        } finally {
+            if (logCache != null) {
+                logCache.close();
+            }
+            releaseSession(repository, failed);
         }
-        try {
-            repository.log(new String[] { "" }, startRevision, endRevision, true, true, limit,
-                           new ISVNLogEntryHandler() {
+        return logEntries;
+    }
 
-                               @Override
-                               public void handleLogEntry(SVNLogEntry logEntry) throws SVNException {
-                               }
-                           });
+    /**
+     * 获取指定时间点的svn版本号(与svn的{date}版本相同)<br>
+     * 本地时间索引按url保持打开, 时间点早于已索引的最后一个版本的日期时直接在本地二分查找;
+     * 否则先增量刷新索引再查找, 出错时返回-1
+     *
+     * @Title: getDatedRevision
+     * @author LiHaiQing
+     * @param: [url, name, password, date]
+     */
+    public long getDatedRevision(String url, String name, String password, Date date) {
+        setupLibrary();
+        DatedRevisionIndex index;
+        synchronized (ourDatedRevisionIndexes) {
+            index = ourDatedRevisionIndexes.get(url);
+        }
+        if (index != null) {
+            Date lastDate = index.getLastDate();
+            // 之后的版本的提交时间都不早于lastDate, 结果不会因为refresh而改变
+            if (lastDate != null && date.before(lastDate)) {
+                return index.getDatedRevision(date);
+            }
+        }
+        SVNRepository repository = null;
+        try {
+            // 从会话池借出已认证的会话, 用完归还
+            repository = SvnSessionPool.getInstance().borrow(SVNURL.parseURIEncoded(url), name, password);
         } catch (SVNException svnException) {
-            logger.error("error while collecting log information for  {} :{}", url, svnException.getMessage());
+            logger.error("error while creating an SVNRepository for the location {} :{}", url,
+                         svnException.getMessage());
+            return -1;
+        }
+        boolean failed = false;
+        try {
+            if (index == null) {
+                index = openDatedRevisionIndex(url, repository);
+            }
+            index.refresh(repository);
+            return index.getDatedRevision(date);
+        } catch (SVNException svnException) {
+            failed = true;
+            logger.error("error while resolving the revision at {} for {} :{}", date, url, svnException.getMessage());
+            return -1;
+        } finally {
+            releaseSession(repository, failed);
+        }
+    }
+
+    /**
+     * 归还借出的会话; 使用中出过错的会话可能连接已经断开, 关闭丢弃而不放回池中
+     */
+    private static void releaseSession(SVNRepository repository, boolean failed) {
+        if (failed) {
+            SvnSessionPool.getInstance().invalidate(repository);
+        } else {
+            SvnSessionPool.getInstance().release(repository);
+        }
+    }
+
+    private static DatedRevisionIndex openDatedRevisionIndex(String url, SVNRepository repository) throws SVNException {
+        DatedRevisionIndex index = DatedRevisionIndex.open(SvnLogCache.getDefaultDirectory(), repository);
+        synchronized (ourDatedRevisionIndexes) {
+            DatedRevisionIndex opened = ourDatedRevisionIndexes.get(url);
+            if (opened != null) {
+                // 其它线程先打开了
+                index.close();
+                return opened;
+            }
+            ourDatedRevisionIndexes.put(url, index);
+            return index;
         }
     }
 